@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.3"   // src/jmh/java benchmarks: gradle jmh
 }
 
 group = "org.example"
@@ -28,9 +29,23 @@ dependencies {
     implementation("com.google.api-client:google-api-client:2.7.0")
     implementation("com.google.oauth-client:google-oauth-client-jetty:1.34.1")
     implementation("com.google.apis:google-api-services-sheets:v4-rev20220927-2.0.0")
+    implementation("com.google.apis:google-api-services-drive:v3-rev20240123-2.0.0")
 }
 
 
+tasks.withType<JavaCompile> {
+    options.release.set(21)   // virtual threads (ApiExecutor)
+}
+
 tasks.test {
     useJUnitPlatform()
 }
+
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")              // allocation rate (gc.alloc.rate.norm = bytes per operation)
+    resultFormat.set("JSON")         // build/results/jmh/results.json, kept as the baseline
+    // Forks and iterations are set per class: StartupBenchmark needs a fresh JVM per measurement, the others one fork
+    // Pick benchmarks with -PjmhIncludes=Roster
+    (project.findProperty("jmhIncludes") as String?)?.let { includes.set(listOf(it)) }
+}
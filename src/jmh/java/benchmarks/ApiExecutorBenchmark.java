@@ -0,0 +1,89 @@
+package benchmarks;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.gmail.Gmail;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Gmail messages.get calls fanned out through ApiExecutor.submit against an in-memory transport that answers
+ * at once, so the quota limiter and the executor are all that is measured.
+ *
+ * Scores are requests per second. With quota=published the Gmail bucket keeps its 250 units/s, and messages.get
+ * costs 5 units, so the expected ceiling is 50 requests/s: the score shows how close the executor gets to the
+ * quota. With quota=unlimited the bucket is opened up and the score is the overhead ceiling of the execution
+ * layer itself (initializer, metrics, virtual threads). Run with "gradle jmh -PjmhIncludes=ApiExecutor".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ApiExecutorBenchmark {
+
+    private static final int FAN_OUT = 50;
+
+    private static final String MESSAGE_JSON = "{\"id\":\"m1\",\"threadId\":\"t1\",\"labelIds\":[\"INBOX\",\"UNREAD\"],"
+            + "\"snippet\":\"My order has not arrived yet\",\"payload\":{\"headers\":["
+            + "{\"name\":\"From\",\"value\":\"Customer <customer@example.net>\"},"
+            + "{\"name\":\"Subject\",\"value\":\"Order #100001 missing\"},"
+            + "{\"name\":\"Date\",\"value\":\"Mon, 5 Oct 2026 09:30:00 +0000\"}]}}";
+
+    @Param({"published", "unlimited"})
+    public String quota;
+
+    private Gmail gmail;
+
+    @Setup
+    public void setUp() throws Throwable {
+        BotMethods.GMAIL_QUOTA_RATE.invokeExact(quota.equals("published") ? 250.0 : 1e12);
+
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() {
+                        return new MockLowLevelHttpResponse().setContentType("application/json").setContent(MESSAGE_JSON);
+                    }
+                };
+            }
+        };
+        HttpRequestInitializer noCredential = request -> { };
+        gmail = new Gmail.Builder(transport, GsonFactory.getDefaultInstance(),
+                (HttpRequestInitializer) BotMethods.API_INITIALIZER.invokeExact(noCredential))
+                .setApplicationName("benchmark")
+                .build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FAN_OUT)
+    public Object fanOutMessagesGet() throws Throwable {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[FAN_OUT];
+        for (int i = 0; i < FAN_OUT; i++)
+            futures[i] = (CompletableFuture<?>) BotMethods.API_SUBMIT.invokeExact(
+                    (AbstractGoogleClientRequest<?>) gmail.users().messages().get("me", "m" + i));
+        return CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,162 @@
+package benchmarks;
+
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.sheets.v4.Sheets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Local Sheets hot paths over a roster as values.get returns it (row 1 is the header, cells are Strings, trailing
+ * empty cells are missing): displayAllStudents (the real method, over a synthetic roster of the same size),
+ * searchByName matching and generateReport's statistics (summarizeRoster is the single pass writeReport makes;
+ * summarizeScores the same engine over a score column).
+ *
+ * Scores are per full pass over the roster, except the RosterIndex lookups, which are per lookup in microseconds;
+ * linearSearch is the scan searchByName used before the index, for comparison. Run with "gradle jmh -PjmhIncludes=Roster".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RosterBenchmark {
+
+    private static final String[] FIRST = {"Ada", "Alan", "Grace", "Edsger", "Barbara", "Donald", "Frances", "John"};
+    private static final String[] LAST = {"Lovelace", "Turing", "Hopper", "Dijkstra", "Liskov", "Knuth", "Allen", "Smith"};
+    private static final String[] GRADES = {"A", "B", "C", "D", "F"};
+
+    @Param({"100000"})
+    public int rows;
+
+    private List<List<Object>> roster;
+    private List<List<Object>> scores;            // column D below the header, one cell per row
+    private Object index;                         // RosterIndex over the roster
+    private Sheets sheets;                        // over a synthetic roster of the same size
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        roster = new ArrayList<>(rows + 1);
+        scores = new ArrayList<>(rows);
+        roster.add(List.of("Name", "Student ID", "Grade", "Score", "Notes"));
+
+        for (int i = 0; i < rows; i++) {
+            String name = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)] + " " + i;
+            String score = (random.nextInt(50) == 0) ? "" : String.valueOf(40 + random.nextInt(61));
+
+            List<Object> row = new ArrayList<>(5);
+            row.add(name);
+            row.add(String.valueOf(100000 + i));
+            row.add(GRADES[random.nextInt(GRADES.length)]);
+            row.add(score);
+            if (random.nextInt(4) == 0)
+                row.add("needs follow-up on assignment " + random.nextInt(12));
+            roster.add(row);
+
+            scores.add(score.isEmpty() ? List.of() : List.of(score));
+        }
+        try {
+            index = (Object) BotMethods.NEW_ROSTER_INDEX.invokeExact(roster);
+
+            // displayAllStudents reads through RosterCache, so it gets an in-memory spreadsheet and Drive to check
+            HttpTransport transport = (HttpTransport) BotMethods.Startup.NEW_SYNTHETIC_TRANSPORT.invokeExact("rows=" + rows);
+            HttpRequestInitializer noCredential = request -> { };
+            sheets = new Sheets.Builder(transport, GsonFactory.getDefaultInstance(), noCredential)
+                    .setApplicationName("benchmark").build();
+            BotMethods.USE_DRIVE.invokeExact(new Drive.Builder(transport, GsonFactory.getDefaultInstance(), noCredential)
+                    .setApplicationName("benchmark").build());
+            BotMethods.SET_SPREADSHEET_ID.invokeExact("synthetic-roster");
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+
+        // The table is printed; keep it out of the benchmark output
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    /* SheetsBot.displayAllStudents itself: one Drive version check, a RosterCache hit, then the printed table */
+    @Benchmark
+    public void displayAllStudents() throws Throwable {
+        BotMethods.DISPLAY_ALL_STUDENTS.invokeExact(sheets);
+    }
+
+    /* The old searchByName loop: two lowercase copies per row */
+    @Benchmark
+    public int linearSearch() {
+        int found = 0;
+        for (int i = 1; i < roster.size(); i++) {
+            if (roster.get(i).get(0).toString().toLowerCase().contains("Hopper".toLowerCase()))
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public Object buildIndex() throws Throwable {
+        return (Object) BotMethods.NEW_ROSTER_INDEX.invokeExact(roster);
+    }
+
+    /* Selective query: one student's full name */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] searchByName() throws Throwable {
+        return (int[]) BotMethods.INDEX_FIND_BY_NAME.invokeExact(index, "hopper 4242");
+    }
+
+    /* Broad query: about one row in eight matches */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] searchByNameBroad() throws Throwable {
+        return (int[]) BotMethods.INDEX_FIND_BY_NAME.invokeExact(index, "Hopper");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] searchByNameNoMatch() throws Throwable {
+        return (int[]) BotMethods.INDEX_FIND_BY_NAME.invokeExact(index, "Zuse");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int findById() throws Throwable {
+        return (int) BotMethods.INDEX_FIND_BY_ID.invokeExact(index, "142424");
+    }
+
+    @Benchmark
+    public Object summarizeScores() throws Throwable {
+        return (Object) BotMethods.SUMMARIZE_SCORES.invokeExact(scores);
+    }
+
+    @Benchmark
+    public Object summarizeRoster() throws Throwable {
+        return (Object) BotMethods.SUMMARIZE_ROSTER.invokeExact(roster);
+    }
+}
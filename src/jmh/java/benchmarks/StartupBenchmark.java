@@ -0,0 +1,138 @@
+package benchmarks;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.store.FileDataStoreFactory;
+import com.google.api.services.gmail.Gmail;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cold start to the first listed ticket, one measurement per fresh JVM: the stored token is loaded
+ * (GoogleAuthHelper.getCredentials, no consent receiver), the API transport and the Gmail client over ApiExecutor
+ * are built, and HelpDeskBot lists the first page of unread tickets from a synthetic mailbox.
+ *
+ * The stored access token has expired, as it usually has at launch, so it must be refreshed against the token
+ * endpoint: here a local stand-in that answers after tokenLatencyMillis. startup=token-first is the order of
+ * GoogleServices.get(): the token is loaded first and TokenRefresher refreshes it while the transport and client
+ * are built. startup=transport-first is the order before: transport first, and the first request stops to refresh.
+ *
+ * Scores are milliseconds per cold start. Run with "gradle jmh -PjmhIncludes=Startup".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(20)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class StartupBenchmark {
+
+    private static final String USER_ID = "startup";
+    private static final List<String> SCOPES = List.of("https://www.googleapis.com/auth/gmail.modify");
+
+    @Param({"token-first", "transport-first"})
+    public String startup;
+
+    @Param({"150"})
+    public int tokenLatencyMillis;
+
+    private HttpServer tokenEndpoint;
+    private File tokensDirectory;
+    private GoogleClientSecrets clientSecrets;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tokenEndpoint = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        tokenEndpoint.createContext("/token", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(tokenLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"access_token\":\"fresh\",\"expires_in\":3599,\"token_type\":\"Bearer\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        tokenEndpoint.start();
+
+        String endpoint = "http://127.0.0.1:" + tokenEndpoint.getAddress().getPort();
+        clientSecrets = new GoogleClientSecrets().setInstalled(new GoogleClientSecrets.Details()
+                .setClientId("startup-benchmark")
+                .setClientSecret("not-a-secret")
+                .setAuthUri(endpoint + "/auth")
+                .setTokenUri(endpoint + "/token")
+                .setRedirectUris(List.of("http://localhost")));
+
+        // An hour-old token, as left behind by yesterday's run
+        tokensDirectory = Files.createTempDirectory("startup-tokens").toFile();
+        StoredCredential.getDefaultDataStore(new FileDataStoreFactory(tokensDirectory)).set(USER_ID, new StoredCredential()
+                .setAccessToken("expired")
+                .setRefreshToken("refresh")
+                .setExpirationTimeMilliseconds(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+
+        // The listing prints its page; keep it out of the benchmark output
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+        tokenEndpoint.stop(0);
+    }
+
+    @Benchmark
+    public void coldStartToFirstList() throws Throwable {
+        boolean tokenFirst = startup.equals("token-first");
+        HttpTransport transport = tokenFirst ? null : newTransport();
+        Credential credential = (Credential) BotMethods.Startup.GET_CREDENTIALS.invokeExact(
+                (HttpTransport) new NetHttpTransport(), clientSecrets, (List<?>) SCOPES, USER_ID, tokensDirectory);
+        if (tokenFirst) {
+            BotMethods.Startup.START_TOKEN_REFRESHER.invokeExact(credential);
+            transport = newTransport();
+        }
+
+        Gmail gmail = new Gmail.Builder(transport, GsonFactory.getDefaultInstance(),
+                (HttpRequestInitializer) BotMethods.Startup.API_INITIALIZER.invokeExact((HttpRequestInitializer) credential))
+                .setApplicationName("startup-benchmark")
+                .build();
+        BotMethods.Startup.LIST_UNREAD_TICKETS.invokeExact(gmail);
+    }
+
+    private static HttpTransport newTransport() throws Throwable {
+        return (HttpTransport) BotMethods.Startup.NEW_SYNTHETIC_TRANSPORT.invokeExact("messages=500");
+    }
+}
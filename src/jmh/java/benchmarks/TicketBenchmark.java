@@ -0,0 +1,159 @@
+package benchmarks;
+
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Local Gmail hot paths over a 10,000-message inbox: header extraction (Ticket.from), MIME body decoding
+ * (MimeDecoder.decode, as in readTicket) and reply building (ReplyComposer, as in replyToTicket).
+ *
+ * Scores are per message. Run with "gradle jmh -PjmhIncludes=Ticket"; the gc profiler adds allocation per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TicketBenchmark {
+
+    static final int MESSAGES = 10_000;
+
+    // A reply needs threadId, From, Subject, Message-ID and References of the ticket it answers
+    private record ReplyTarget(String threadId, String from, String subject, String messageId, String references) {
+    }
+
+    private final List<Message> messages = new ArrayList<>(MESSAGES);
+    private final List<ReplyTarget> targets = new ArrayList<>(MESSAGES);
+
+    private static final String REPLY_BODY = "Hello,\n\nThanks for reaching out. We have looked into your request and "
+            + "the issue is fixed on our side; please try again and let us know if anything is still wrong.\n\n"
+            + "Best regards,\nThe Help Desk";
+
+    @Setup
+    public void setUp() throws Throwable {
+        Random random = new Random(42);
+        for (int i = 0; i < MESSAGES; i++) {
+            Message message = syntheticMessage(i, random);
+            messages.add(message);
+
+            Object ticket = (Object) BotMethods.TICKET_FROM.invokeExact(message);
+            targets.add(new ReplyTarget(BotMethods.recordField(ticket, "threadId"), BotMethods.recordField(ticket, "from"),
+                    BotMethods.recordField(ticket, "subject"), BotMethods.recordField(ticket, "messageIdHeader"),
+                    BotMethods.recordField(ticket, "references")));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void extractHeaders(Blackhole bh) throws Throwable {
+        for (Message message : messages)
+            bh.consume((Object) BotMethods.TICKET_FROM.invokeExact(message));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void decodeBodies(Blackhole bh) throws Throwable {
+        for (Message message : messages)
+            bh.consume((Object) BotMethods.MIME_DECODE.invokeExact(message.getPayload()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void composeReplies(Blackhole bh) throws Throwable {
+        for (ReplyTarget t : targets) {
+            bh.consume((Message) BotMethods.COMPOSE_REPLY.invokeExact(t.threadId(), t.from(), t.subject(),
+                    t.messageId(), t.references(), REPLY_BODY));
+        }
+    }
+
+    /*
+     * Shaped like a format=full response: about 15 headers (Received chain, DKIM, ...) and a multipart/alternative
+     * body with a 1-6 KB text part. Every tenth message is HTML-only, which takes the htmlToText path.
+     */
+    static Message syntheticMessage(int i, Random random) {
+        List<MessagePartHeader> headers = new ArrayList<>();
+        headers.add(header("Delivered-To", "support@example.com"));
+        for (int hop = 0; hop < 3; hop++) {
+            headers.add(header("Received", "from mail" + hop + ".example.net (mail" + hop + ".example.net. [203.0.113."
+                    + hop + "]) by mx.google.com with ESMTPS id x" + i + "; Mon, 6 Oct 2025 09:1" + hop + ":00 -0700 (PDT)"));
+        }
+        headers.add(header("DKIM-Signature", "v=1; a=rsa-sha256; c=relaxed/relaxed; d=example.net; s=20230601; h=to:subject:"
+                + "message-id:date:from:mime-version; bh=" + "A".repeat(44) + "; b=" + "B".repeat(340)));
+        headers.add(header("Return-Path", "<customer" + i + "@example.net>"));
+        headers.add(header("MIME-Version", "1.0"));
+        headers.add(header("Date", "Mon, 6 Oct 2025 09:1" + (i % 10) + ":00 -0700"));
+        headers.add(header("Message-ID", "<CA+" + Integer.toHexString(i * 7919) + "@mail.example.net>"));
+        if (i % 3 == 0)
+            headers.add(header("References", "<CA+" + Integer.toHexString(i * 31) + "@mail.example.net>"));
+        headers.add(header("Subject", ((i % 3 == 0) ? "Re: " : "") + "Order #" + (100000 + i) + " has not arrived yet"));
+        headers.add(header("From", "Customer " + i + " <customer" + i + "@example.net>"));
+        headers.add(header("To", "support@example.com"));
+        headers.add(header("Content-Type", "multipart/alternative; boundary=\"000000000000b" + i + "\""));
+
+        StringBuilder text = new StringBuilder();
+        int paragraphs = 2 + random.nextInt(10);
+        for (int p = 0; p < paragraphs; p++) {
+            text.append("Hi, I ordered item ").append(random.nextInt(100000))
+                    .append(" two weeks ago and the tracking page still says it is waiting for pickup. ")
+                    .append("Could you check what happened and send me an update? Thanks in advance.\r\n\r\n");
+        }
+        String html = "<html><head><style>p{margin:0}</style></head><body><div dir=\"ltr\"><p>"
+                + text.toString().replace("\r\n\r\n", "</p><p>") + "</p></div></body></html>";
+
+        List<MessagePart> parts = new ArrayList<>();
+        if (i % 10 != 0)
+            parts.add(textPart("0", "text/plain", text.toString()));
+        parts.add(textPart("1", "text/html", html));
+
+        MessagePart payload = new MessagePart()
+                .setPartId("")
+                .setMimeType("multipart/alternative")
+                .setHeaders(headers)
+                .setBody(new MessagePartBody().setSize(0))
+                .setParts(parts);
+
+        return new Message()
+                .setId(String.format("%016x", 0x19c964c9d959a3e6L + i))
+                .setThreadId(String.format("%016x", 0x19c964c9d959a3e6L + i - i % 4))
+                .setLabelIds((i % 2 == 0) ? List.of("INBOX", "UNREAD") : List.of("INBOX", "CATEGORY_UPDATES"))
+                .setSnippet(text.substring(0, 120))
+                .setInternalDate(1_759_766_400_000L + i * 60_000L)
+                .setPayload(payload);
+    }
+
+    private static MessagePart textPart(String partId, String mimeType, String content) {
+        String data = Base64.getUrlEncoder().encodeToString(content.getBytes(StandardCharsets.UTF_8));
+        return new MessagePart()
+                .setPartId(partId)
+                .setMimeType(mimeType)
+                .setFilename("")
+                .setHeaders(List.of(header("Content-Type", mimeType + "; charset=\"UTF-8\"")))
+                .setBody(new MessagePartBody().setSize(content.length()).setData(data));
+    }
+
+    private static MessagePartHeader header(String name, String value) {
+        return new MessagePartHeader().setName(name).setValue(value);
+    }
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * TicketIndex queries over 100,000 indexed tickets (subject, sender, snippet and a 40-120 word body drawn from a
+ * skewed 5,000-word vocabulary, so common words have long postings lists). The target is under 10 ms per query.
+ *
+ * Scores are per query (or per re-indexed ticket) in microseconds. reindexTicket re-adds existing tickets, as
+ * readTicket does, which exercises tombstoning and the periodic compaction. Run with "gradle jmh -PjmhIncludes=TicketIndex".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TicketIndexBenchmark {
+
+    private static final String[] COMMON = {"order", "refund", "shipping", "account", "password", "invoice", "delivery",
+            "tracking", "payment", "login", "broken", "missing", "cancel", "upgrade", "error"};
+
+    @Param({"100000"})
+    public int tickets;
+
+    private Object index;
+    private String[][] texts;
+    private int next;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Random random = new Random(42);
+        index = (Object) BotMethods.NEW_TICKET_INDEX.invokeExact();
+        texts = new String[tickets][];
+        for (int i = 0; i < tickets; i++) {
+            texts[i] = ticketTexts(i, random);
+            BotMethods.TICKET_INDEX_ADD.invokeExact(index, id(i), texts[i]);
+        }
+    }
+
+    @Benchmark
+    public List<?> singleTerm() throws Throwable {
+        return (List<?>) BotMethods.TICKET_INDEX_SEARCH.invokeExact(index, "refund", 20);
+    }
+
+    @Benchmark
+    public List<?> twoCommonTerms() throws Throwable {
+        return (List<?>) BotMethods.TICKET_INDEX_SEARCH.invokeExact(index, "order tracking", 20);
+    }
+
+    @Benchmark
+    public List<?> phrase() throws Throwable {
+        return (List<?>) BotMethods.TICKET_INDEX_SEARCH.invokeExact(index, "\"payment error\"", 20);
+    }
+
+    @Benchmark
+    public List<?> orWithExclusion() throws Throwable {
+        return (List<?>) BotMethods.TICKET_INDEX_SEARCH.invokeExact(index, "refund OR cancel -shipping", 20);
+    }
+
+    @Benchmark
+    public List<?> rareTerm() throws Throwable {
+        return (List<?>) BotMethods.TICKET_INDEX_SEARCH.invokeExact(index, "w4321", 20);
+    }
+
+    @Benchmark
+    public void reindexTicket() throws Throwable {
+        int i = next;
+        next = (next + 7919) % tickets;
+        BotMethods.TICKET_INDEX_ADD.invokeExact(index, id(i), texts[i]);
+    }
+
+    private static String id(int i) {
+        return String.format("%016x", 0x19c964c9d959a3e6L + i);
+    }
+
+    private static String[] ticketTexts(int i, Random random) {
+        StringBuilder body = new StringBuilder();
+        int words = 40 + random.nextInt(81);
+        for (int w = 0; w < words; w++) {
+            // Roughly Zipf-shaped: small word numbers are far more frequent than large ones
+            body.append(random.nextInt(4) == 0 ? COMMON[random.nextInt(COMMON.length)] : "w" + random.nextInt(1 + random.nextInt(5000)))
+                    .append(' ');
+        }
+        String subject = "Order #" + (100000 + i) + " " + COMMON[random.nextInt(COMMON.length)] + " question";
+        String from = "Customer " + i + " <customer" + i + "@example.net>";
+        return new String[]{subject, from, body.substring(0, Math.min(120, body.length())), body.toString()};
+    }
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * TriageEngine.classify over 10,000 tickets (Subject, From and a 0.4-2 KB body) against a few hundred rules of
+ * one to four keywords each, with every field type and action. The target is at least 10,000 tickets per second.
+ *
+ * Scores are tickets per second. Run with "gradle jmh -PjmhIncludes=Triage".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TriageBenchmark {
+
+    static final int TICKETS = 10_000;
+
+    private static final String[] TOPICS = {"refund", "invoice", "billing", "password", "login", "outage", "urgent",
+            "shipping", "tracking", "delivery", "cancel", "upgrade", "broken", "missing", "warranty", "discount"};
+    private static final String[] FIELDS = {"subject", "from", "body", "any"};
+
+    @Param({"300"})
+    public int rules;
+
+    private Object engine;
+    private final String[][] tickets = new String[TICKETS][];
+
+    @Setup
+    public void setUp() throws Throwable {
+        Random random = new Random(42);
+        List<Object> parsed = new ArrayList<>(rules);
+        for (int r = 0; r < rules; r++)
+            parsed.add((Object) BotMethods.TRIAGE_PARSE_RULE.invokeExact(ruleLine(r, random)));
+        engine = (Object) BotMethods.NEW_TRIAGE_ENGINE.invokeExact((List<?>) parsed);
+
+        for (int i = 0; i < TICKETS; i++)
+            tickets[i] = ticketTexts(i, random);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKETS)
+    public void classify(Blackhole bh) throws Throwable {
+        for (String[] t : tickets)
+            bh.consume((Object) BotMethods.TRIAGE_CLASSIFY.invokeExact(engine, t[0], t[1], t[2]));
+    }
+
+    // Topic words plus rule-specific product codes ("sku1234"), so most keywords never match and a few always do
+    private static String ruleLine(int r, Random random) {
+        StringBuilder keywords = new StringBuilder();
+        int count = 1 + random.nextInt(4);
+        for (int k = 0; k < count; k++) {
+            if (k > 0)
+                keywords.append('|');
+            keywords.append((random.nextInt(3) == 0) ? TOPICS[random.nextInt(TOPICS.length)] : "sku" + random.nextInt(5000));
+        }
+        String field = (r % 50 == 0) ? "from" : FIELDS[random.nextInt(FIELDS.length)];
+        if (field.equals("from"))
+            keywords.append("|no-reply@promo").append(r);
+        String action = switch (r % 10) {
+            case 0 -> "priority " + (1 + random.nextInt(3));
+            case 1 -> (r % 50 == 1) ? "trash" : "label Team" + (r % 7);
+            default -> "label Topic" + (r % 40);
+        };
+        return field + " " + keywords + " => " + action;
+    }
+
+    private static String[] ticketTexts(int i, Random random) {
+        String subject = "Order #" + (100000 + i) + " " + TOPICS[random.nextInt(TOPICS.length)] + " question";
+        String from = (i % 100 == 0) ? "Deals <no-reply@promo" + random.nextInt(300) + ".example.com>"
+                : "Customer " + i + " <customer" + i + "@example.net>";
+
+        StringBuilder body = new StringBuilder();
+        int paragraphs = 2 + random.nextInt(10);
+        for (int p = 0; p < paragraphs; p++) {
+            body.append("Hi, I ordered item sku").append(random.nextInt(100000))
+                    .append(" two weeks ago and the tracking page still says it is waiting for pickup. ")
+                    .append("Could you check what happened and send me an update? Thanks in advance.\r\n\r\n");
+        }
+        return new String[]{subject, from, body.toString()};
+    }
+}
@@ -0,0 +1,301 @@
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpBackOffIOExceptionHandler;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpIOExceptionHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.api.client.util.ExponentialBackOff;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Shared execution layer for Gmail, Calendar and Sheets calls.
+ *
+ * The HttpRequestInitializer returned by initializer() is installed on every client builder, so every
+ * request (synchronous .execute(), batch parts, or submit()) first takes its quota cost from a per-API
+ * token bucket and is retried with exponential backoff and jitter on 429 and 5xx responses and on I/O errors.
+ * Batch parts are the exception to the retries: batchPart() takes them off, and the caller re-batches failed
+ * parts itself (MessageBatchFetcher), so the two layers never multiply.
+ * Requests that must not run twice (messages.send, values.append, events.insert, ...) are retried only on 429,
+ * which means the server refused them unprocessed: after a 5xx or a timeout the send may already have happened.
+ * submit() runs requests on virtual threads and returns futures so callers can fan out.
+ */
+public class ApiExecutor {
+
+    public static final int MAX_RETRIES = 5;
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 32_000;
+
+    // Published per-user quotas: Gmail 250 units/s; Calendar 600 queries/min; Sheets 60 reads/min and 60 writes/min
+    public static final QuotaLimiter GMAIL = new QuotaLimiter("gmail", 250, 250);
+    public static final QuotaLimiter CALENDAR = new QuotaLimiter("calendar", 10, 50);
+    public static final QuotaLimiter SHEETS_READ = new QuotaLimiter("sheets-read", 1, 60);
+    public static final QuotaLimiter SHEETS_WRITE = new QuotaLimiter("sheets-write", 1, 60);
+
+    private static final ExecutorService VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    /* Runs the request on a virtual thread; quota and retries are handled by the request's initializer */
+    public static <T> CompletableFuture<T> submit(AbstractGoogleClientRequest<T> request) {
+        return submit(request::execute);
+    }
+
+    /* Runs any blocking API work (several calls, a batch, ...) on a virtual thread */
+    public static <T> CompletableFuture<T> submit(Callable<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, VIRTUAL_THREADS);
+    }
+
+    /* Waits for a future from submit() and rethrows its IOException as-is */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Wraps the credential so every request also goes through the quota limiter and retry policy.
+     * Pass the result to the Gmail, Calendar or Sheets builder in place of the bare credential.
+     */
+    public static HttpRequestInitializer initializer(HttpRequestInitializer credential) {
+        return request -> {
+            credential.initialize(request);
+
+            // Latency, bytes, status codes and retries per API method (see ApiMetrics)
+            HttpIOExceptionHandler backOff = new HttpBackOffIOExceptionHandler(new ExponentialBackOff());
+            ApiMetrics.Recorder recorder = new ApiMetrics.Recorder(request.getResponseInterceptor(),
+                    (failed, supportsRetry) -> idempotent(failed) && backOff.handleIOException(failed, supportsRetry));
+
+            // The credential installs its own interceptor (adds the token) and handler (refreshes on 401): keep both
+            request.setInterceptor(new QuotaInterceptor(request.getInterceptor(), recorder));
+            request.setUnsuccessfulResponseHandler(new RetryHandler(request.getUnsuccessfulResponseHandler()));
+            request.setResponseInterceptor(recorder);
+            request.setIOExceptionHandler(recorder);
+            request.setNumberOfRetries(MAX_RETRIES);
+        };
+    }
+
+    /*
+     * Prepares a request for BatchRequest.queue: drops the retry layer but keeps the credential's own handler (token
+     * refresh). BatchRequest would otherwise call RetryHandler for every failed part while it parses the multipart
+     * response, sleeping part after part inside the parse loop and re-sending the batch on its own.
+     */
+    static HttpRequest batchPart(HttpRequest request) {
+        if (request.getUnsuccessfulResponseHandler() instanceof RetryHandler retry)
+            request.setUnsuccessfulResponseHandler(retry.delegate);
+        return request;
+    }
+
+    /*
+     * Whether sending the request again after an unknown outcome is harmless. GET, PUT, PATCH and DELETE are; so are
+     * the POSTs that set state rather than add to it (batchUpdate, modify, clear) and the batch endpoint, which only
+     * carries messages.get parts (MessageBatchFetcher). Any other POST creates something: a mail, a row, an event.
+     */
+    static boolean idempotent(HttpRequest request) {
+        if (!"POST".equals(request.getRequestMethod()))
+            return true;
+        String path = request.getUrl().getRawPath();
+        return path.startsWith("/batch/")
+                || path.endsWith(":batchUpdate")
+                || path.endsWith(":clear") || path.endsWith(":batchClear")
+                || path.endsWith("/modify") || path.endsWith("/batchModify");
+    }
+
+    /* Quota units and bucket for one HTTP request, from its URL and method */
+    static QuotaLimiter limiterFor(HttpRequest request) {
+        String path = request.getUrl().getRawPath();
+        if (path.startsWith("/batch/"))
+            return null;   // each part of a batch is charged separately
+        if (path.startsWith("/gmail/") || path.startsWith("/upload/gmail/"))
+            return GMAIL;
+        if (path.startsWith("/calendar/"))
+            return CALENDAR;
+        if (path.startsWith("/v4/spreadsheets"))
+            return "GET".equals(request.getRequestMethod()) ? SHEETS_READ : SHEETS_WRITE;
+        return null;
+    }
+
+    static int quotaCost(HttpRequest request) {
+        String path = request.getUrl().getRawPath();
+        if (!path.startsWith("/gmail/") && !path.startsWith("/upload/gmail/"))
+            return 1;
+
+        // Gmail per-method quota units
+        String method = request.getRequestMethod();
+        if (path.endsWith("/messages/send"))
+            return 100;
+        if (path.endsWith("/messages/batchModify") || path.endsWith("/messages/batchDelete"))
+            return 50;
+        if (path.contains("/threads"))
+            return 10;
+        if (path.endsWith("/history"))
+            return 2;
+        if (path.endsWith("/profile"))
+            return 1;
+        if (path.contains("/labels"))
+            return "GET".equals(method) ? 1 : 5;
+        return 5;   // messages.get/list/modify/trash, attachments.get
+    }
+
+    public static void printStats() {
+        System.out.println("--- API quota usage ---------------------------------");
+        for (QuotaLimiter limiter : new QuotaLimiter[]{GMAIL, CALENDAR, SHEETS_READ, SHEETS_WRITE})
+            System.out.println(limiter.summary());
+        System.out.println("------------------------------------------------------");
+    }
+
+    /* Token bucket that lets a caller reserve units ahead and then waits out its turn (first come, first served) */
+    public static final class QuotaLimiter {
+        private final String name;
+        private double unitsPerNano;
+        private final double burst;
+        private double available;
+        private long lastRefill = System.nanoTime();
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder units = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final long startNanos = System.nanoTime();
+
+        QuotaLimiter(String name, double unitsPerSecond, double burst) {
+            this.name = name;
+            this.unitsPerNano = unitsPerSecond / 1_000_000_000.0;
+            this.burst = burst;
+            this.available = burst;
+        }
+
+        /* Lowers (or raises) the sustained rate, e.g. to leave headroom for other clients of the same account */
+        public synchronized void setUnitsPerSecond(double unitsPerSecond) {
+            if (unitsPerSecond <= 0)
+                throw new IllegalArgumentException("Rate must be positive: " + unitsPerSecond);
+            this.unitsPerNano = unitsPerSecond / 1_000_000_000.0;
+        }
+
+        public void acquire(int cost) throws InterruptedException {
+            long waitNanosNeeded;
+            synchronized (this) {
+                long now = System.nanoTime();
+                available = Math.min(burst, available + (now - lastRefill) * unitsPerNano);
+                lastRefill = now;
+
+                // Going negative reserves future refill for this caller; later callers queue behind it
+                available -= Math.min(cost, burst);
+                waitNanosNeeded = (available < 0) ? (long) (-available / unitsPerNano) : 0;
+            }
+
+            calls.increment();
+            units.add(cost);
+            if (waitNanosNeeded > 0) {
+                waitNanos.add(waitNanosNeeded);
+                Thread.sleep(waitNanosNeeded / 1_000_000, (int) (waitNanosNeeded % 1_000_000));
+            }
+        }
+
+        void recordRetry() {
+            retries.increment();
+        }
+
+        public String summary() {
+            double seconds = Math.max((System.nanoTime() - startNanos) / 1_000_000_000.0, 0.001);
+            return String.format("%-12s calls: %d | units: %d (%.1f units/s) | retries: %d | throttled wait (all threads): %.1f s",
+                    name, calls.sum(), units.sum(), units.sum() / seconds, retries.sum(), waitNanos.sum() / 1_000_000_000.0);
+        }
+    }
+
+    private static final class QuotaInterceptor implements HttpExecuteInterceptor {
+        private final HttpExecuteInterceptor delegate;
+        private final ApiMetrics.Recorder recorder;
+
+        QuotaInterceptor(HttpExecuteInterceptor delegate, ApiMetrics.Recorder recorder) {
+            this.delegate = delegate;
+            this.recorder = recorder;
+        }
+
+        @Override
+        public void intercept(HttpRequest request) throws IOException {
+            if (delegate != null)
+                delegate.intercept(request);
+
+            QuotaLimiter limiter = limiterFor(request);
+            if (limiter != null) {
+                try {
+                    limiter.acquire(quotaCost(request));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for API quota");
+                }
+            }
+
+            // Latency is measured from here, so time spent queuing for quota is not counted as API latency
+            recorder.start();
+        }
+    }
+
+    /* Retries 429, and 5xx when the request is idempotent, with exponential backoff and full jitter, honoring Retry-After */
+    private static final class RetryHandler implements HttpUnsuccessfulResponseHandler {
+        private final HttpUnsuccessfulResponseHandler delegate;
+        private int attempt = 0;
+
+        RetryHandler(HttpUnsuccessfulResponseHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean handleResponse(HttpRequest request, HttpResponse response, boolean supportsRetry) throws IOException {
+            if (delegate != null && delegate.handleResponse(request, response, supportsRetry))
+                return true;   // e.g. the credential refreshed an expired token
+
+            int status = response.getStatusCode();
+            boolean retryable = status == 429 || (status >= 500 && status <= 599 && idempotent(request));
+            if (!supportsRetry || !retryable || attempt >= MAX_RETRIES)
+                return false;
+
+            long delayMillis = backoffMillis(attempt++, response.getHeaders().getRetryAfter());
+            QuotaLimiter limiter = limiterFor(request);
+            if (limiter != null)
+                limiter.recordRetry();
+            ApiMetrics.recordRetry(request);
+
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    static long backoffMillis(int attempt, String retryAfter) {
+        if (retryAfter != null) {
+            try {
+                return Math.min(Long.parseLong(retryAfter.trim()) * 1000, MAX_BACKOFF_MILLIS);
+            } catch (NumberFormatException e) {
+                // HTTP-date form: fall through to our own backoff
+            }
+        }
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+}
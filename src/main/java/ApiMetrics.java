@@ -0,0 +1,321 @@
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpIOExceptionHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Per-method call metrics for every Gmail, Calendar and Sheets request, recorded by ApiExecutor's initializer.
+ *
+ * A method is the HTTP verb plus the URL path with IDs replaced by {id}, e.g. "GET /gmail/v1/users/{id}/messages/{id}".
+ * Latency runs from the first send (after any quota wait) to the final response, so it includes retries.
+ * Each method is also registered as an MBean (HelpDeskBot:type=ApiCall,name=...) and startExport() rewrites
+ * a plain-text snapshot file on a timer.
+ */
+public class ApiMetrics {
+
+    public static final String DEFAULT_EXPORT_PATH = "metrics/api_metrics.txt";
+
+    // Path segments kept as-is; anything else (user, message, event, spreadsheet IDs, ranges) becomes {id}
+    private static final Set<String> PATH_WORDS = Set.of(
+            "gmail", "calendar", "v1", "v3", "v4", "batch", "upload", "users", "profile", "messages", "threads",
+            "labels", "history", "drafts", "attachments", "send", "modify", "trash", "untrash", "batchModify",
+            "batchDelete", "import", "insert", "calendars", "events", "calendarList", "freeBusy", "spreadsheets",
+            "values", "batchUpdate", "batchGet", "batchClear", "drive", "files");
+
+    private static final Map<String, MethodStats> METHODS = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService exporter;
+
+    /* Read-only view of one method's numbers, as exposed over JMX */
+    public interface MethodStatsMBean {
+        long getCalls();
+        long getErrors();
+        long getRetries();
+        long getQuotaUnits();
+        long getBytesOut();
+        long getBytesIn();
+        double getP50Millis();
+        double getP99Millis();
+        double getP999Millis();
+        String getStatusCodes();
+    }
+
+    public static final class MethodStats implements MethodStatsMBean {
+        private final String method;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder quotaUnits = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final Map<String, LongAdder> statusCodes = new ConcurrentHashMap<>();
+
+        MethodStats(String method) {
+            this.method = method;
+        }
+
+        public String method() {
+            return method;
+        }
+
+        @Override public long getCalls() { return calls.sum(); }
+        @Override public long getErrors() { return errors.sum(); }
+        @Override public long getRetries() { return retries.sum(); }
+        @Override public long getQuotaUnits() { return quotaUnits.sum(); }
+        @Override public long getBytesOut() { return bytesOut.sum(); }
+        @Override public long getBytesIn() { return bytesIn.sum(); }
+        @Override public double getP50Millis() { return latency.percentileMicros(0.50) / 1000.0; }
+        @Override public double getP99Millis() { return latency.percentileMicros(0.99) / 1000.0; }
+        @Override public double getP999Millis() { return latency.percentileMicros(0.999) / 1000.0; }
+
+        @Override
+        public String getStatusCodes() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, LongAdder> e : new TreeMap<>(statusCodes).entrySet()) {
+                if (sb.length() > 0)
+                    sb.append(' ');
+                sb.append(e.getKey()).append('x').append(e.getValue().sum());
+            }
+            return sb.toString();
+        }
+
+        void record(long nanos, String status, boolean error, long out, long in, int units) {
+            calls.increment();
+            latency.record(nanos / 1000);
+            if (error)
+                errors.increment();
+            quotaUnits.add(units);
+            bytesOut.add(Math.max(out, 0));
+            bytesIn.add(Math.max(in, 0));
+            statusCodes.computeIfAbsent(status, k -> new LongAdder()).increment();
+        }
+    }
+
+    /*
+     * Log-linear histogram of microsecond values: 16 sub-buckets per power of two (about 6% error),
+     * lock-free so concurrent virtual threads can record without contention.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int MAX_EXPONENT = 40;   // about 12 days in microseconds
+
+        private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT + 1) * SUB_BUCKETS);
+        private final LongAdder total = new LongAdder();
+
+        void record(long micros) {
+            counts.incrementAndGet(index(Math.max(micros, 0)));
+            total.increment();
+        }
+
+        static int index(long value) {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            int bucket = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+            return Math.min(bucket, (MAX_EXPONENT + 1) * SUB_BUCKETS - 1);
+        }
+
+        // Midpoint of the bucket's range
+        static long valueAt(int index) {
+            if (index < SUB_BUCKETS)
+                return index;
+            int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long low = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+            long width = 1L << (exponent - SUB_BUCKET_BITS);
+            return low + width / 2;
+        }
+
+        long percentileMicros(double quantile) {
+            long n = total.sum();
+            if (n == 0)
+                return 0;
+            long rank = (long) Math.ceil(quantile * n);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank)
+                    return valueAt(i);
+            }
+            return valueAt(counts.length() - 1);
+        }
+    }
+
+    /*
+     * Installed per request by ApiExecutor: start() is called on every attempt (the first one starts the clock),
+     * the response interceptor sees only the final response, and the IOException handler counts attempts that
+     * never got a response.
+     */
+    static final class Recorder implements HttpResponseInterceptor, HttpIOExceptionHandler {
+        private final HttpResponseInterceptor responseDelegate;
+        private final HttpIOExceptionHandler ioDelegate;
+        private long startNanos;
+
+        Recorder(HttpResponseInterceptor responseDelegate, HttpIOExceptionHandler ioDelegate) {
+            this.responseDelegate = responseDelegate;
+            this.ioDelegate = ioDelegate;
+        }
+
+        void start() {
+            if (startNanos == 0)
+                startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void interceptResponse(HttpResponse response) throws IOException {
+            HttpRequest request = response.getRequest();
+            Long length = response.getHeaders().getContentLength();
+            int status = response.getStatusCode();
+            stats(request).record(System.nanoTime() - startNanos, String.valueOf(status), status >= 400,
+                    bytesOut(request), (length == null) ? 0 : length, ApiExecutor.quotaCost(request));
+
+            if (responseDelegate != null)
+                responseDelegate.interceptResponse(response);
+        }
+
+        @Override
+        public boolean handleIOException(HttpRequest request, boolean supportsRetry) throws IOException {
+            boolean retry = ioDelegate != null && ioDelegate.handleIOException(request, supportsRetry);
+            if (retry)
+                recordRetry(request);
+            else
+                stats(request).record(System.nanoTime() - startNanos, "io-error", true, bytesOut(request), 0,
+                        ApiExecutor.quotaCost(request));
+            return retry;
+        }
+    }
+
+    static void recordRetry(HttpRequest request) {
+        stats(request).retries.increment();
+    }
+
+    static MethodStats stats(HttpRequest request) {
+        return METHODS.computeIfAbsent(methodKey(request), ApiMetrics::register);
+    }
+
+    static String methodKey(HttpRequest request) {
+        StringBuilder key = new StringBuilder(request.getRequestMethod()).append(' ');
+        for (String segment : request.getUrl().getRawPath().split("/")) {
+            if (segment.isEmpty())
+                continue;
+
+            // Sheets puts the verb after a colon: /spreadsheets/{id}/values/{range}:append
+            String verb = "";
+            int colon = segment.lastIndexOf(':');
+            if (colon >= 0 && segment.substring(colon + 1).matches("[a-z][A-Za-z]+")) {
+                verb = segment.substring(colon);
+                segment = segment.substring(0, colon);
+            }
+            key.append('/').append(PATH_WORDS.contains(segment) ? segment : "{id}").append(verb);
+        }
+        return key.toString();
+    }
+
+    private static long bytesOut(HttpRequest request) {
+        HttpContent content = request.getContent();
+        if (content == null)
+            return 0;
+        try {
+            return content.getLength();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static MethodStats register(String method) {
+        MethodStats stats = new MethodStats(method);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("HelpDeskBot:type=ApiCall,name=" + ObjectName.quote(method));
+            server.registerMBean(new StandardMBean(stats, MethodStatsMBean.class), name);
+        } catch (JMException e) {
+            // Metrics still work without JMX (e.g. a name collision); nothing to do
+        }
+        return stats;
+    }
+
+    public static List<MethodStats> snapshot() {
+        List<MethodStats> all = new ArrayList<>(METHODS.values());
+        all.sort((a, b) -> Long.compare(b.getCalls(), a.getCalls()));
+        return all;
+    }
+
+    /* Prints the live per-method table */
+    public static void printSummary() {
+        System.out.print(summary());
+    }
+
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--- API call metrics (").append(LocalDateTime.now().withNano(0)).append(") ---------------\n");
+        sb.append(String.format("%-58s %7s %5s %5s %9s %9s %9s %7s %10s %10s  %s%n", "method", "calls", "err", "retry",
+                "p50 ms", "p99 ms", "p999 ms", "units", "bytes out", "bytes in", "status"));
+        List<MethodStats> all = snapshot();
+        for (MethodStats s : all) {
+            sb.append(String.format("%-58s %7d %5d %5d %9.1f %9.1f %9.1f %7d %10d %10d  %s%n", s.method(), s.getCalls(),
+                    s.getErrors(), s.getRetries(), s.getP50Millis(), s.getP99Millis(), s.getP999Millis(),
+                    s.getQuotaUnits(), s.getBytesOut(), s.getBytesIn(), s.getStatusCodes()));
+        }
+        if (all.isEmpty())
+            sb.append("No API calls yet.\n");
+        sb.append("------------------------------------------------------\n");
+        return sb.toString();
+    }
+
+    /* Rewrites the snapshot file every periodSeconds on a daemon thread; later calls are ignored */
+    public static synchronized void startExport(Path file, long periodSeconds) {
+        if (exporter != null)
+            return;
+
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "api-metrics-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        exporter.scheduleAtFixedRate(() -> writeSnapshot(file), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    // Written beside the target and moved into place so readers never see a half-written file
+    static void writeSnapshot(Path file) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))) {
+                out.print(summary());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not write API metrics to " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.BatchModifyMessagesRequest;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/* Applies one label change to every message matching a query using messages.batchModify */
+public class BulkModifier {
+
+    // Gmail limits: batchModify takes up to 1,000 IDs, messages.list returns up to 500 per page
+    public static final int MAX_IDS_PER_CALL = 1000;
+    private static final long LIST_PAGE_SIZE = 500L;
+
+    // An empty chunk tells the modify stage that the list stage is finished
+    private static final List<String> END_OF_LIST = Collections.emptyList();
+
+    public static int markQueryAsRead(Gmail service, String query) throws IOException {
+        return modifyQuery(service, query, null, Collections.singletonList("UNREAD"));
+    }
+
+    public static int labelQuery(Gmail service, String query, String labelName) throws IOException {
+        String labelID = LabelCache.getLabelId(service, labelName);
+        return modifyQuery(service, query, Collections.singletonList(labelID), null);
+    }
+
+    public static int unlabelQuery(Gmail service, String query, String labelName) throws IOException {
+        String labelID = LabelCache.getLabelId(service, labelName);
+        return modifyQuery(service, query, null, Collections.singletonList(labelID));
+    }
+
+    /* Moves every match to Trash (recoverable for 30 days), same as trashTicket one message at a time */
+    public static int trashQuery(Gmail service, String query) throws IOException {
+        return modifyQuery(service, query, Collections.singletonList("TRASH"), null);
+    }
+
+    /**
+     * Adds and removes labels on every message matching the query.
+     * A background thread lists IDs while this thread sends batchModify calls, so the two stages overlap.
+     * Passes repeat until one finds no new IDs, because the change can reorder the query's result set.
+     *
+     * @return Number of messages modified.
+     */
+    public static int modifyQuery(Gmail service, String query, List<String> addLabelIds, List<String> removeLabelIds) throws IOException {
+        Set<String> seen = new HashSet<>();
+        int total = 0;
+        int modified;
+
+        do {
+            modified = runPass(service, query, addLabelIds, removeLabelIds, seen);
+            total += modified;
+        } while (modified > 0);
+
+        System.out.println("Modified " + total + " message(s) matching query \"" + query + "\".");
+        return total;
+    }
+
+    /* Sends batchModify calls for an explicit list of message IDs, 1,000 at a time */
+    public static void modifyIds(Gmail service, List<String> ids, List<String> addLabelIds, List<String> removeLabelIds) throws IOException {
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_CALL) {
+            List<String> chunk = ids.subList(start, Math.min(start + MAX_IDS_PER_CALL, ids.size()));
+            batchModify(service, chunk, addLabelIds, removeLabelIds);
+        }
+    }
+
+    private static int runPass(Gmail service, String query, List<String> addLabelIds, List<String> removeLabelIds,
+                               Set<String> seen) throws IOException {
+        // Two chunks in flight keeps the lister one step ahead without buffering the whole result set
+        BlockingQueue<List<String>> chunks = new ArrayBlockingQueue<>(2);
+        Exception[] listError = new Exception[1];
+
+        Thread lister = new Thread(() -> {
+            try {
+                listIds(service, query, seen, chunks);
+                chunks.put(END_OF_LIST);
+            } catch (IOException | RuntimeException e) {
+                // Drop pending chunks so the modify stage stops right away and reports the error
+                listError[0] = e;
+                chunks.clear();
+                chunks.offer(END_OF_LIST);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();   // the modify stage has already given up
+            }
+        }, "bulk-modify-lister");
+        lister.setDaemon(true);
+        lister.start();
+
+        int modified = 0;
+        try {
+            while (true) {
+                List<String> chunk = chunks.take();
+                if (chunk == END_OF_LIST)
+                    break;
+
+                batchModify(service, chunk, addLabelIds, removeLabelIds);
+                modified += chunk.size();
+                System.out.println("Modified " + modified + " message(s)...");
+            }
+            lister.join();
+        } catch (InterruptedException e) {
+            lister.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IOException("Bulk modify interrupted", e);
+        } finally {
+            if (lister.isAlive())
+                lister.interrupt();
+        }
+
+        if (listError[0] instanceof IOException)
+            throw (IOException) listError[0];
+        if (listError[0] != null)
+            throw (RuntimeException) listError[0];
+
+        return modified;
+    }
+
+    // List stage: only IDs are requested, grouped into batchModify-sized chunks of IDs not handled yet
+    private static void listIds(Gmail service, String query, Set<String> seen, BlockingQueue<List<String>> chunks)
+            throws IOException, InterruptedException {
+        List<String> chunk = new ArrayList<>(MAX_IDS_PER_CALL);
+        String pageToken = null;
+
+        do {
+            ListMessagesResponse response = service.users().messages()
+                    .list("me")
+                    .setQ(query)
+                    .setMaxResults(LIST_PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .setFields("messages/id,nextPageToken")
+                    .execute();
+
+            if (response.getMessages() != null) {
+                for (Message msg : response.getMessages()) {
+                    if (!seen.add(msg.getId()))
+                        continue;
+
+                    chunk.add(msg.getId());
+                    if (chunk.size() == MAX_IDS_PER_CALL) {
+                        chunks.put(chunk);
+                        chunk = new ArrayList<>(MAX_IDS_PER_CALL);
+                    }
+                }
+            }
+
+            pageToken = response.getNextPageToken();
+        } while (pageToken != null);
+
+        if (!chunk.isEmpty())
+            chunks.put(chunk);
+    }
+
+    private static void batchModify(Gmail service, List<String> ids, List<String> addLabelIds, List<String> removeLabelIds)
+            throws IOException {
+        BatchModifyMessagesRequest request = new BatchModifyMessagesRequest()
+                .setIds(ids)
+                .setAddLabelIds(addLabelIds)
+                .setRemoveLabelIds(removeLabelIds);
+
+        service.users().messages()
+                .batchModify("me", request)
+                .execute();
+    }
+}
@@ -0,0 +1,244 @@
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.Message;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/*
+ * Sends the same templated reply to many tickets at once.
+ * Template placeholders: {name} (sender's display name), {email}, {subject}, {id}.
+ * Sends run concurrently, at most `concurrency` at a time and `sendsPerSecond` overall (default 4 and 2, set with
+ * --send-concurrency and --send-rate), and also pass the shared Gmail quota limiter like every other request (send
+ * costs 100 of 250 units/second), so a bulk reply cannot starve the rest of the bot.
+ * Query replies skip our own mail and automated senders, and answer each thread once (its newest matching message).
+ */
+public class BulkReplier {
+
+    /* Outcome for one ticket: sentId is set on success, error on failure */
+    public record Result(String messageId, String sentId, String error) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private static final String[] REPLY_HEADERS = {"Subject", "From", "Message-ID", "References"};
+
+    private static double sendsPerSecond = 2.0;
+    private static int concurrency = 4;
+
+    public static void setSendsPerSecond(double rate) {
+        if (rate <= 0)
+            throw new IllegalArgumentException("Send rate must be positive: " + rate);
+        sendsPerSecond = rate;
+    }
+
+    public static void setConcurrency(int sends) {
+        if (sends < 1)
+            throw new IllegalArgumentException("Concurrency must be at least 1: " + sends);
+        concurrency = sends;
+    }
+
+    /* Takes "--send-rate N" and "--send-concurrency N" out of the command line; returns the remaining arguments */
+    public static String[] configure(String[] args) {
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String value = (i + 1 < args.length) ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--send-rate" -> {
+                    setSendsPerSecond(Double.parseDouble(require(args[i], value)));
+                    i++;
+                }
+                case "--send-concurrency" -> {
+                    setConcurrency(Integer.parseInt(require(args[i], value)));
+                    i++;
+                }
+                default -> rest.add(args[i]);
+            }
+        }
+        return rest.toArray(new String[0]);
+    }
+
+    private static String require(String option, String value) {
+        if (value == null || value.startsWith("--"))
+            throw new IllegalArgumentException(option + " needs a value");
+        return value;
+    }
+
+    /* Limits of one bulk reply (all its pages), taken from the settings when it starts */
+    private record Throttle(ApiExecutor.QuotaLimiter rate, Semaphore slots) {
+        static Throttle fromSettings() {
+            return new Throttle(new ApiExecutor.QuotaLimiter("bulk-reply", sendsPerSecond, 1), new Semaphore(concurrency));
+        }
+    }
+
+    /* Replies to every ticket matching the query, one page of metadata at a time */
+    public static List<Result> replyToQuery(Gmail service, String query, String template) throws IOException {
+        List<Result> results = new ArrayList<>();
+        Set<String> threads = new HashSet<>();   // pages come newest first, so a thread's first match is its newest
+        Throttle throttle = Throttle.fromSettings();
+        int skipped = 0;
+
+        try (TicketPager pager = new TicketPager(service, query, 100L, REPLY_HEADERS)) {
+            while (pager.hasNext()) {
+                List<Ticket> page = toTickets(pager.next());
+                List<Ticket> toSend = new ArrayList<>(page.size());
+                for (Ticket ticket : page) {
+                    if (shouldReply(ticket) && threads.add(ticket.threadId()))
+                        toSend.add(ticket);
+                    else
+                        skipped++;
+                }
+                results.addAll(sendAll(service, toSend, template, throttle));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (skipped > 0)
+            System.out.println("Skipped " + skipped
+                    + " message(s): our own mail, automated senders or a thread already replied to.");
+        printSummary(results);
+        return results;
+    }
+
+    /* Replies to an explicit list of message IDs; results come back in the same order */
+    public static List<Result> replyToIds(Gmail service, List<String> messageIds, String template) throws IOException {
+        List<Message> refs = new ArrayList<>(messageIds.size());
+        for (String id : messageIds)
+            refs.add(new Message().setId(id));
+
+        List<Message> messages = MessageBatchFetcher.fetchMetadata(service, refs, REPLY_HEADERS);
+        List<Result> sent = sendAll(service, toTickets(messages), template, Throttle.fromSettings());
+
+        // Merge back in input order, with a failure for every ID that could not be fetched
+        List<Result> results = new ArrayList<>(messageIds.size());
+        int next = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) == null)
+                results.add(new Result(messageIds.get(i), null, "message not found"));
+            else
+                results.add(sent.get(next++));
+        }
+
+        printSummary(results);
+        return results;
+    }
+
+    /* Replies to tickets whose headers are already known (e.g. from the TicketStore); no metadata is fetched */
+    public static List<Result> replyToTickets(Gmail service, List<Ticket> tickets, String template) {
+        List<Result> results = sendAll(service, tickets, template, Throttle.fromSettings());
+        printSummary(results);
+        return results;
+    }
+
+    /* False for our own mail and automated senders, so two robots never answer each other in a loop */
+    public static boolean shouldReply(Ticket ticket) {
+        return ticket.hasSender() && !ticket.labelIds().contains("SENT") && !isAutomatedSender(ticket.from());
+    }
+
+    static boolean isAutomatedSender(String from) {
+        String lower = from.toLowerCase();
+        return lower.contains("no-reply") || lower.contains("noreply") || lower.contains("donotreply")
+                || lower.contains("mailer-daemon") || lower.contains("postmaster@");
+    }
+
+    /* Fills in the placeholders for one ticket */
+    public static String fillTemplate(String template, String messageId, String from, String subject) {
+        String email = from;
+        String name = from;
+        try {
+            InternetAddress address = new InternetAddress(from);
+            email = address.getAddress();
+            if (address.getPersonal() != null) {
+                name = address.getPersonal();
+            } else {
+                int at = email.indexOf('@');
+                name = (at > 0) ? email.substring(0, at) : email;
+            }
+        } catch (AddressException e) {
+            // Not a parseable address: use the raw header for both
+        }
+
+        return template
+                .replace("{name}", name)
+                .replace("{email}", email)
+                .replace("{subject}", subject)
+                .replace("{id}", messageId);
+    }
+
+    // Each send runs on its own virtual thread; the throttle and then the Gmail quota limiter decide when it goes out
+    private static List<Result> sendAll(Gmail service, List<Ticket> tickets, String template, Throttle throttle) {
+        List<CompletableFuture<Result>> futures = new ArrayList<>(tickets.size());
+        for (Ticket ticket : tickets)
+            futures.add(ApiExecutor.submit(() -> sendOne(service, ticket, template, throttle)));
+
+        List<Result> results = new ArrayList<>(tickets.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).join());
+            } catch (CompletionException e) {
+                results.add(new Result(tickets.get(i).id(), null, String.valueOf(e.getCause().getMessage())));
+            }
+        }
+        return results;
+    }
+
+    // Skips the nulls MessageBatchFetcher leaves for messages it could not fetch
+    private static List<Ticket> toTickets(List<Message> messages) {
+        List<Ticket> tickets = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (message != null)
+                tickets.add(Ticket.from(message));
+        }
+        return tickets;
+    }
+
+    private static Result sendOne(Gmail service, Ticket ticket, String template, Throttle throttle) {
+        try {
+            if (!ticket.hasSender())
+                return new Result(ticket.id(), null, "no sender to reply to");
+
+            String from = ticket.from();
+            String body = fillTemplate(template, ticket.id(), from, ticket.subject());
+            Message reply = ReplyComposer.composeReply(ticket.threadId(), from, ticket.subject(),
+                    ticket.messageIdHeader(), ticket.references(), body);
+
+            Message sent;
+            throttle.slots().acquire();
+            try {
+                throttle.rate().acquire(1);
+                sent = service.users().messages()
+                        .send("me", reply)
+                        .execute();
+            } finally {
+                throttle.slots().release();
+            }
+
+            System.out.println("Reply sent to " + from + " (ticket " + ticket.id() + ")");
+            return new Result(ticket.id(), sent.getId(), null);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            System.out.println("Reply FAILED for ticket " + ticket.id() + ": " + e.getMessage());
+            return new Result(ticket.id(), null, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static void printSummary(List<Result> results) {
+        int sent = 0;
+        for (Result r : results) {
+            if (r.isSuccess())
+                sent++;
+        }
+        System.out.println("Bulk reply finished: " + sent + " sent, " + (results.size() - sent) + " failed.");
+    }
+}
@@ -16,13 +16,18 @@ import java.util.Scanner;
 
 public class CalendarAuth {
     public static void main(String[] args) throws Exception {
-        List<String> scopes = Collections.singletonList(CalendarScopes.CALENDAR);
-        final var httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-        Calendar service = new Calendar.Builder(httpTransport,
-                GsonFactory.getDefaultInstance(),
-                GoogleAuthHelper.getCredentials(httpTransport,
-                        scopes)).setApplicationName("My Calendar App").build();
+        // "--transport live|record[:DIR]|replay[:DIR]|synthetic[:SPEC]", "--latency MS[+JITTER]", "--error-rate P"
+        args = GoogleServices.configure(args);
+        // Shared factory: pooled transport and the one credential that also covers Gmail and Sheets
+        Calendar service = GoogleServices.get().calendar();
+        StartupTimer.mark("clients");
+        StartupTimer.report();
 
+        // "--script [FILE] [--workers N]" runs commands from a file or stdin and exits non-zero if any failed
+        if (ScriptRunner.isScriptMode(args)) {
+            int failed = CalendarBot.scriptCommands(service).runFromArgs(args);
+            System.exit(failed == 0 ? 0 : 1);
+        }
 
         CalendarBot.runMenu(service);
 
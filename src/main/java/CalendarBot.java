@@ -32,16 +32,7 @@ public class CalendarBot {
     //Task 1
     public static void listUpcomingEvents(Calendar service) throws IOException {
 
-        DateTime now = new DateTime(System.currentTimeMillis());
-
-        Events events = service.events().list("primary")
-                .setMaxResults(10)
-                .setTimeMin(now)
-                .setOrderBy("startTime")
-                .setSingleEvents(true)
-                .execute();
-
-        List<Event> items = events.getItems();
+        List<Event> items = upcomingEvents(service, 10);
 
         if(items == null || items.isEmpty())
             System.out.println("No upcoming events.");
@@ -61,18 +52,7 @@ public class CalendarBot {
         System.out.println("End Date (yyyy-MM-dd): ");
         String endDateStr = scanner.nextLine();
 
-        DateTime start = javaToGoogleTime(LocalDate.parse(startDateStr).atStartOfDay());
-        DateTime end = javaToGoogleTime(LocalDate.parse(endDateStr).atTime(LocalTime.MAX));
-
-        Events events = service.events().list("primary")
-                .setMaxResults(10)
-                .setTimeMin(start)
-                .setTimeMax(end)
-                .setOrderBy("startTime")
-                .setSingleEvents(true)
-                .execute();
-
-        List<Event> items = events.getItems();
+        List<Event> items = eventsBetween(service, LocalDate.parse(startDateStr), LocalDate.parse(endDateStr));
 
         if(items == null || items.isEmpty())
             System.out.println("No events found for this date range.");
@@ -104,17 +84,7 @@ public class CalendarBot {
 
 
 
-        LocalDateTime startLDT = LocalDateTime.parse(date + "T" + time);
-        Event event = new Event().setSummary(summary);
-        event.setStart(new EventDateTime().setDateTime(javaToGoogleTime(startLDT)).setTimeZone(TIME_ZONE));
-        event.setEnd(new EventDateTime().setDateTime(javaToGoogleTime(startLDT.plusMinutes(duration))).setTimeZone(TIME_ZONE));
-
-        if(!email.isEmpty())
-        {
-            event.setAttendees(List.of(new EventAttendee().setEmail(email)));
-        }
-
-        Event eventCreated = service.events().insert("primary", event).setSendUpdates("all").execute();
+        Event eventCreated = createEvent(service, summary, date, time, duration, email);
         System.out.println("Event created. ID: " + eventCreated.getId());
     }
 
@@ -131,21 +101,10 @@ public class CalendarBot {
         String endTime = scanner.nextLine();
 
 
-        DateTime start = javaToGoogleTime(LocalDateTime.parse(date + "T" + startTime));
-        DateTime end = javaToGoogleTime(LocalDateTime.parse(date + "T" + endTime));
-
-        System.out.println("Checking: " + date + " " + start + " ? " + end);
+        System.out.println("Checking: " + date + " " + startTime + " ? " + endTime);
         System.out.println("");
 
-        FreeBusyRequest request = new FreeBusyRequest()
-                .setTimeMin(start)
-                .setTimeMax(end)
-                .setItems(List.of(new FreeBusyRequestItem().setId("primary")));
-
-        FreeBusyResponse response = service.freebusy().query(request).execute();
-
-        // Parse the response: it's a map from calendar ID ? list of busy windows
-        var busySlots = response.getCalendars().get("primary").getBusy();
+        var busySlots = busySlots(service, date, startTime, endTime);
         if (busySlots == null || busySlots.isEmpty()) {
             System.out.println("? Calendar is FREE during this window.");
         } else {
@@ -167,7 +126,7 @@ public class CalendarBot {
         System.out.println("Are you sure? (yes/no)");
         if(scanner.nextLine().equalsIgnoreCase("yes"))
         {
-            service.events().delete("primary", eventID).execute();
+            deleteEvent(service, eventID);
             System.out.println("Event deleted");
         }
     }
@@ -180,9 +139,128 @@ public class CalendarBot {
     }
 
 
+    // Prompt-free versions of the tasks above, shared by the menu and script mode
+
+    public static List<Event> upcomingEvents(Calendar service, int max) throws IOException
+    {
+        Events events = service.events().list("primary")
+                .setMaxResults(max)
+                .setTimeMin(new DateTime(System.currentTimeMillis()))
+                .setOrderBy("startTime")
+                .setSingleEvents(true)
+                .execute();
+
+        return (events.getItems() == null) ? List.of() : events.getItems();
+    }
+
+    public static List<Event> eventsBetween(Calendar service, LocalDate startDate, LocalDate endDate) throws IOException
+    {
+        Events events = service.events().list("primary")
+                .setMaxResults(10)
+                .setTimeMin(javaToGoogleTime(startDate.atStartOfDay()))
+                .setTimeMax(javaToGoogleTime(endDate.atTime(LocalTime.MAX)))
+                .setOrderBy("startTime")
+                .setSingleEvents(true)
+                .execute();
+
+        return (events.getItems() == null) ? List.of() : events.getItems();
+    }
+
+    /* date is yyyy-MM-dd, time is HH:mm; an empty email means no attendee */
+    public static Event createEvent(Calendar service, String summary, String date, String time, int duration,
+                                    String email) throws IOException
+    {
+        LocalDateTime startLDT = LocalDateTime.parse(date + "T" + time);
+        Event event = new Event().setSummary(summary);
+        event.setStart(new EventDateTime().setDateTime(javaToGoogleTime(startLDT)).setTimeZone(TIME_ZONE));
+        event.setEnd(new EventDateTime().setDateTime(javaToGoogleTime(startLDT.plusMinutes(duration))).setTimeZone(TIME_ZONE));
+
+        if(email != null && !email.isEmpty())
+        {
+            event.setAttendees(List.of(new EventAttendee().setEmail(email)));
+        }
+
+        return service.events().insert("primary", event).setSendUpdates("all").execute();
+    }
+
+    /* Busy windows on the primary calendar between two times of one day; empty when free */
+    public static List<TimePeriod> busySlots(Calendar service, String date, String startTime, String endTime) throws IOException
+    {
+        FreeBusyRequest request = new FreeBusyRequest()
+                .setTimeMin(javaToGoogleTime(LocalDateTime.parse(date + "T" + startTime)))
+                .setTimeMax(javaToGoogleTime(LocalDateTime.parse(date + "T" + endTime)))
+                .setItems(List.of(new FreeBusyRequestItem().setId("primary")));
+
+        FreeBusyResponse response = service.freebusy().query(request).execute();
+
+        // Parse the response: it's a map from calendar ID ? list of busy windows
+        List<TimePeriod> busy = response.getCalendars().get("primary").getBusy();
+        return (busy == null) ? List.of() : busy;
+    }
+
+    public static void deleteEvent(Calendar service, String eventID) throws IOException
+    {
+        service.events().delete("primary", eventID).execute();
+    }
+
+    /* Commands for script mode (CalendarAuth --script); each returns a JSON-serializable result */
+    public static ScriptRunner scriptCommands(Calendar service)
+    {
+        return new ScriptRunner("Calendar Bot")
+                .register("list-events [max]", 0, -1,
+                        args -> eventRows(upcomingEvents(service, args.isEmpty() ? 10 : Integer.parseInt(args.get(0)))))
+                .register("events-between <yyyy-MM-dd> <yyyy-MM-dd>", 2, -1,
+                        args -> eventRows(eventsBetween(service, LocalDate.parse(args.get(0)), LocalDate.parse(args.get(1)))))
+                .register("create-event <summary> <yyyy-MM-dd> <HH:mm> <minutes> [attendeeEmail]", 4, -1, args -> {
+                    Event created = createEvent(service, args.get(0), args.get(1), args.get(2),
+                            Integer.parseInt(args.get(3)), (args.size() > 4) ? args.get(4) : "");
+                    return eventRow(created);
+                })
+                .register("free <yyyy-MM-dd> <HH:mm> <HH:mm>", 3, -1, args -> {
+                    List<Map<String, Object>> busy = new ArrayList<>();
+                    for (TimePeriod slot : busySlots(service, args.get(0), args.get(1), args.get(2)))
+                        busy.add(Map.of("start", slot.getStart().toString(), "end", slot.getEnd().toString()));
+                    return Map.of("free", busy.isEmpty(), "busy", busy);
+                })
+                .register("delete-event <eventId>", 1, 0, args -> {
+                    deleteEvent(service, args.get(0));
+                    return null;
+                })
+                .register("list-calendars", 0, -1, args -> {
+                    List<Map<String, Object>> rows = new ArrayList<>();
+                    for (CalendarListEntry entry : service.calendarList().list().execute().getItems())
+                        rows.add(Map.of("id", entry.getId(), "summary", String.valueOf(entry.getSummary())));
+                    return rows;
+                });
+    }
+
+    private static List<Map<String, Object>> eventRows(List<Event> events)
+    {
+        List<Map<String, Object>> rows = new ArrayList<>(events.size());
+        for (Event event : events)
+            rows.add(eventRow(event));
+        return rows;
+    }
+
+    private static Map<String, Object> eventRow(Event event)
+    {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", event.getId());
+        row.put("summary", event.getSummary());
+        row.put("start", getWhen(event.getStart()));
+        return row;
+    }
+
     public static void runMenu(Calendar service) throws IOException, MessagingException
     {
         Scanner scanner = new Scanner(System.in);
+        runMenu(service, scanner);
+        scanner.close();
+    }
+
+    /* Runs the menu on a caller-owned scanner, which is left open (e.g. for the --all launcher) */
+    public static void runMenu(Calendar service, Scanner scanner) throws IOException, MessagingException
+    {
         boolean isRunning = true;
 
         try {
@@ -240,7 +318,6 @@ public class CalendarBot {
 
                 }
             }
-            scanner.close();
         } catch (Exception e) {
             System.out.println("Error occurred: " + e.getMessage());
         }
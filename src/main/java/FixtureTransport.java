@@ -0,0 +1,261 @@
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Records live Gmail, Calendar and Sheets exchanges to a fixture file and replays them offline.
+ *
+ * Fixtures are JSON lines in <dir>/exchanges.jsonl: {"method","url","status","contentType","body"}. Request bodies,
+ * the Authorization header and exchanges with the OAuth endpoints (which carry access and refresh tokens) are never
+ * written, but other response bodies are, and they hold real mail: keep fixture directories private. Replay answers a request with the next response recorded for the same method and URL, falls
+ * back to the same method and path when only the query differs (e.g. a timeMin of "now"), repeats the last response
+ * once a sequence runs out, and answers 404 for anything never recorded.
+ */
+public class FixtureTransport {
+
+    public static final String FIXTURE_FILE = "exchanges.jsonl";
+
+    /* One recorded response */
+    private record Exchange(int status, String contentType, String body) {
+    }
+
+    /* Wraps a live transport; every response is appended to <dir>/exchanges.jsonl as it arrives */
+    public static HttpTransport recording(HttpTransport live, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        BufferedWriter out = Files.newBufferedWriter(dir.resolve(FIXTURE_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new Recording(live, out);
+    }
+
+    // Token, consent and revocation endpoints: their responses are credentials
+    static boolean isAuthEndpoint(String url) {
+        String host = new GenericUrl(url).getHost();
+        return host.equals("oauth2.googleapis.com") || host.equals("accounts.google.com")
+                || (host.equals("www.googleapis.com") && url.contains("/oauth2/"));
+    }
+
+    public static OfflineTransport replaying(Path dir, OfflineTransport.Faults faults) throws IOException {
+        Path file = dir.resolve(FIXTURE_FILE);
+        if (!Files.exists(file))
+            throw new IOException("No fixtures at " + file + "; record some with --transport record:" + dir);
+        return new Replay(file, faults);
+    }
+
+    private static final class Recording extends HttpTransport {
+        // buildRequest is protected and the Apache transport is final, so the live transport is reached reflectively
+        private static final Method BUILD_REQUEST;
+
+        static {
+            try {
+                BUILD_REQUEST = HttpTransport.class.getDeclaredMethod("buildRequest", String.class, String.class);
+                BUILD_REQUEST.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final HttpTransport live;
+        private final BufferedWriter out;
+
+        Recording(HttpTransport live, BufferedWriter out) {
+            this.live = live;
+            this.out = out;
+        }
+
+        @Override
+        public boolean supportsMethod(String method) throws IOException {
+            return live.supportsMethod(method);
+        }
+
+        @Override
+        protected LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+            LowLevelHttpRequest request;
+            try {
+                request = (LowLevelHttpRequest) BUILD_REQUEST.invoke(live, method, url);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+            return new RecordingRequest(this, method, url, request);
+        }
+
+        @Override
+        public void shutdown() throws IOException {
+            synchronized (out) {
+                out.close();
+            }
+            live.shutdown();
+        }
+
+        void write(String method, String url, int status, String contentType, String body) throws IOException {
+            if (isAuthEndpoint(url))
+                return;   // GoogleServices gives the OAuth flow its own transport, but never record a token anyway
+
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("method", method);
+            line.put("url", url);
+            line.put("status", status);
+            line.put("contentType", contentType);
+            line.put("body", body);
+
+            String json = OfflineTransport.JSON.toString(line);
+            synchronized (out) {
+                out.write(json);
+                out.newLine();
+                out.flush();   // a crashed run still leaves every exchange it made
+            }
+        }
+    }
+
+    /* Forwards everything to the live request, then buffers the response so it can be both written and returned */
+    private static final class RecordingRequest extends LowLevelHttpRequest {
+        private final Recording recording;
+        private final String method;
+        private final String url;
+        private final LowLevelHttpRequest live;
+
+        RecordingRequest(Recording recording, String method, String url, LowLevelHttpRequest live) {
+            this.recording = recording;
+            this.method = method;
+            this.url = url;
+            this.live = live;
+        }
+
+        @Override
+        public void addHeader(String name, String value) throws IOException {
+            live.addHeader(name, value);
+        }
+
+        @Override
+        public void setTimeout(int connectTimeout, int readTimeout) throws IOException {
+            live.setTimeout(connectTimeout, readTimeout);
+        }
+
+        @Override
+        public void setWriteTimeout(int writeTimeout) throws IOException {
+            live.setWriteTimeout(writeTimeout);
+        }
+
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+            live.setStreamingContent(getStreamingContent());
+            live.setContentType(getContentType());
+            live.setContentEncoding(getContentEncoding());
+            live.setContentLength(getContentLength());
+
+            LowLevelHttpResponse response = live.execute();
+            byte[] body;
+            try (InputStream in = response.getContent()) {
+                body = (in == null) ? new byte[0] : in.readAllBytes();
+            } finally {
+                response.disconnect();
+            }
+            if ("gzip".equalsIgnoreCase(response.getContentEncoding())) {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = in.readAllBytes();
+                }
+            }
+
+            recording.write(method, url, response.getStatusCode(), response.getContentType(),
+                    new String(body, StandardCharsets.UTF_8));
+
+            // Same status, headers and (now decompressed) body as the live response
+            MockLowLevelHttpResponse copy = new MockLowLevelHttpResponse()
+                    .setStatusCode(response.getStatusCode())
+                    .setReasonPhrase(response.getReasonPhrase())
+                    .setContentType(response.getContentType())
+                    .setContent(body);
+            for (int i = 0; i < response.getHeaderCount(); i++) {
+                String name = response.getHeaderName(i);
+                if (!name.equalsIgnoreCase("Content-Encoding") && !name.equalsIgnoreCase("Content-Length")
+                        && !name.equalsIgnoreCase("Transfer-Encoding"))
+                    copy.addHeader(name, response.getHeaderValue(i));
+            }
+            return copy;
+        }
+    }
+
+    private static final class Replay extends OfflineTransport {
+        private final Map<String, List<Exchange>> byUrl = new HashMap<>();
+        private final Map<String, List<Exchange>> byPath = new HashMap<>();
+        private final Map<String, Integer> urlCursor = new HashMap<>();
+        private final Map<String, Integer> pathCursor = new HashMap<>();
+
+        Replay(Path file, Faults faults) throws IOException {
+            super(faults);
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = in.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank())
+                        continue;
+
+                    GenericJson record = JSON.fromString(line, GenericJson.class);
+                    Object status = record.get("status");
+                    if (record.get("method") == null || record.get("url") == null || !(status instanceof Number))
+                        throw new IOException(file + " line " + lineNumber + ": not a recorded exchange");
+
+                    String method = (String) record.get("method");
+                    GenericUrl url = new GenericUrl((String) record.get("url"));
+                    Exchange exchange = new Exchange(((Number) status).intValue(), (String) record.get("contentType"),
+                            (String) record.get("body"));
+                    byUrl.computeIfAbsent(method + " " + url.build(), k -> new ArrayList<>()).add(exchange);
+                    byPath.computeIfAbsent(method + " " + url.getRawPath(), k -> new ArrayList<>()).add(exchange);
+                }
+            }
+        }
+
+        @Override
+        protected MockLowLevelHttpResponse respond(String method, GenericUrl url, String contentType, String body) {
+            Exchange exchange;
+            synchronized (this) {
+                exchange = next(byUrl, urlCursor, method + " " + url.build());
+                if (exchange == null)
+                    exchange = next(byPath, pathCursor, method + " " + url.getRawPath());
+            }
+            if (exchange == null)
+                return notFound("no recorded exchange for " + method + " " + url.build());
+
+            MockLowLevelHttpResponse response = new MockLowLevelHttpResponse().setStatusCode(exchange.status());
+            if (exchange.contentType() != null)
+                response.setContentType(exchange.contentType());
+            return (exchange.body() == null || exchange.body().isEmpty())
+                    ? response.setZeroContent()
+                    : response.setContent(exchange.body().getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Recorded order first; the final response of a sequence keeps being served after that
+        private static Exchange next(Map<String, List<Exchange>> exchanges, Map<String, Integer> cursors, String key) {
+            List<Exchange> sequence = exchanges.get(key);
+            if (sequence == null)
+                return null;
+            int position = cursors.merge(key, 1, Integer::sum) - 1;
+            return sequence.get(Math.min(position, sequence.size() - 1));
+        }
+    }
+}
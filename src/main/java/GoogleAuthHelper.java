@@ -4,6 +4,8 @@ import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
@@ -22,6 +24,7 @@ import java.io.InputStreamReader;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Scanner;
 
 /* class to demonstrate use of Gmail list labels API */
 public class GoogleAuthHelper {
@@ -61,6 +64,17 @@ public class GoogleAuthHelper {
      */
     public static Credential getCredentials(final NetHttpTransport HTTP_TRANSPORT, List<String> scopes)
             throws IOException {
+        return getCredentials(HTTP_TRANSPORT, scopes, "user");
+    }
+
+    /**
+     * Creates an authorized Credential object stored under the given token key.
+     *
+     * @param HTTP_TRANSPORT Any HTTP transport, used for token requests only (GoogleServices passes one of its own).
+     * @param userId         Key of the stored token; use a different key for a different scope set.
+     */
+    public static Credential getCredentials(final HttpTransport HTTP_TRANSPORT, List<String> scopes, String userId)
+            throws IOException {
         // Load client secrets.
         InputStream in = GoogleAuthHelper.class.getResourceAsStream(CREDENTIALS_FILE_PATH);
         if (in == null) {
@@ -69,24 +83,41 @@ public class GoogleAuthHelper {
         GoogleClientSecrets clientSecrets =
                 GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(in));
 
+        return getCredentials(HTTP_TRANSPORT, clientSecrets, scopes, userId, new java.io.File(TOKENS_DIRECTORY_PATH));
+    }
+
+    /* Same, with the client secrets and token directory given (the startup benchmark uses a stand-in token endpoint) */
+    static Credential getCredentials(final HttpTransport HTTP_TRANSPORT, GoogleClientSecrets clientSecrets,
+                                     List<String> scopes, String userId, java.io.File tokensDirectory) throws IOException {
         // Build flow and trigger user authorization request.
-        GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
+        GoogleAuthorizationCodeFlow.Builder builder = new GoogleAuthorizationCodeFlow.Builder(
                 HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, scopes)
-                .setDataStoreFactory(new FileDataStoreFactory(new java.io.File(TOKENS_DIRECTORY_PATH)))
-                .setAccessType("offline")
-                .build();
+                .setDataStoreFactory(new FileDataStoreFactory(tokensDirectory))
+                .setAccessType("offline");
+        // The token endpoint named in the client secrets (Google's, unless they point at a stand-in)
+        String tokenUri = clientSecrets.getDetails().getTokenUri();
+        if (tokenUri != null)
+            builder.setTokenServerUrl(new GenericUrl(tokenUri));
+        GoogleAuthorizationCodeFlow flow = builder.build();
+
+        // authorize() returns a stored token that has a refresh token (or has not expired yet) as it is; only
+        // without one does it start the port-8888 receiver and open the browser for consent
         LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(8888).build();
-        Credential credential = new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
+        Credential credential = new AuthorizationCodeInstalledApp(flow, receiver).authorize(userId);
         //returns an authorized Credential object.
         return credential;
     }
 
     public static void main(String... args) throws IOException, GeneralSecurityException, MessagingException {
-        // Build a new authorized API client service.
-        final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-        service = new Gmail.Builder(HTTP_TRANSPORT, JSON_FACTORY, getCredentials(HTTP_TRANSPORT, SCOPES))
-                .setApplicationName(APPLICATION_NAME)
-                .build();
+        // "--transport live|record[:DIR]|replay[:DIR]|synthetic[:SPEC]", "--latency MS[+JITTER]", "--error-rate P"
+        args = GoogleServices.configure(args);
+        // "--send-rate N", "--send-concurrency N": limits for bulk replies and watcher auto-acks (default 2/s, 4 at once)
+        args = BulkReplier.configure(args);
+        // Gmail client from the shared factory: pooled transport, one credential for Gmail, Calendar and Sheets
+        GoogleServices services = GoogleServices.get();
+        service = services.gmail();
+        StartupTimer.mark("clients");
+        StartupTimer.report();
 
 
         //HelpDeskBot.listUnreadTickets(service);
@@ -103,6 +134,63 @@ public class GoogleAuthHelper {
 
         //HelpDeskBot.trashTicket(service, "19c7dc83450e2f5f");
 
+        // "--script [FILE] [--workers N]" runs commands from a file or stdin and exits non-zero if any failed
+        if (ScriptRunner.isScriptMode(args)) {
+            int failed = HelpDeskBot.scriptCommands(service).runFromArgs(args);
+            System.exit(failed == 0 ? 0 : 1);
+        }
+
+        // "--watch [log|label=NAME|ack|ack=FILE|triage|triage=FILE ...]" runs the headless inbox watcher instead of the menu
+        if (args.length > 0 && args[0].equals("--watch")) {
+            InboxWatcher.runDaemon(service, Arrays.asList(args).subList(1, args.length));
+            return;
+        }
+
+        // "--all" keeps all three bots in this one process, so connections and the token stay warm between them
+        if (args.length > 0 && args[0].equals("--all")) {
+            runLauncher(services);
+            return;
+        }
+
         HelpDeskBot.runMenu(service);
     }
+
+    private static void runLauncher(GoogleServices services) throws IOException, MessagingException {
+        Scanner scanner = new Scanner(System.in);
+        boolean isRunning = true;
+
+        while (isRunning) {
+            System.out.println("\n----------------------------------");
+            System.out.println("           Google Bots            ");
+            System.out.println("----------------------------------");
+            System.out.println("1. Help-Desk Bot (Gmail)");
+            System.out.println("2. Calendar Bot");
+            System.out.println("3. Grade Tracker (Sheets)");
+            System.out.println("0. Exit");
+            System.out.println("----------------------------------");
+            System.out.println("Choice: ");
+
+            switch (scanner.nextLine().trim()) {
+                case "1":
+                    HelpDeskBot.runMenu(services.gmail(), scanner);
+                    break;
+                case "2":
+                    CalendarBot.runMenu(services.calendar(), scanner);
+                    break;
+                case "3":
+                    RosterCache.useDrive(services.drive());
+                    SheetsBot.initializeSpreadsheet(services.sheets(), scanner);
+                    SheetsBot.runMenu(services.sheets(), scanner);
+                    break;
+                case "0":
+                    isRunning = false;
+                    System.out.println("Exiting program");
+                    break;
+                default:
+                    System.out.println("Invalid input. Please choose 0-3.");
+            }
+        }
+
+        GoogleServices.shutdown();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.googleapis.apache.v2.GoogleApacheHttpTransport;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.CalendarScopes;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.DriveScopes;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.GmailScopes;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.SheetsScopes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Process-wide factory for the Gmail, Calendar and Sheets clients.
+ *
+ * All three share one pooled keep-alive transport (Apache HttpClient, so parallel calls reuse warm TLS
+ * connections instead of handshaking again) and one OAuth credential that carries the scopes of all three
+ * APIs, plus read-only Drive metadata for spreadsheet versions, so the consent screen is shown at most once.
+ * Every request goes through ApiExecutor's quota, retry and metrics layer; the metrics are written to
+ * metrics/api_metrics.txt every minute.
+ *
+ * The transport can be swapped before first use with the options taken out by configure():
+ *     --transport live               Google's servers (default)
+ *     --transport record[:DIR]       live, and every exchange is appended to DIR/exchanges.jsonl (DIR defaults to "fixtures")
+ *     --transport replay[:DIR]       answers from recorded fixtures, no network and no sign-in
+ *     --transport synthetic[:SPEC]   generated mailbox, calendar and roster of any size (see SyntheticTransport)
+ *     --latency MS[+JITTER]          added to every offline request
+ *     --error-rate P                 share of offline requests failed with 429/503, to exercise the retry paths
+ */
+public class GoogleServices {
+
+    public static final String APPLICATION_NAME = "Help Desk Bot";
+
+    // Stored under its own token key so tokens saved with a narrower scope set are never picked up by mistake
+    private static final String CREDENTIAL_USER_ID = "all-apis-drive";
+
+    static final List<String> SCOPES = List.of(
+            GmailScopes.GMAIL_MODIFY,        // Read, label, trash
+            GmailScopes.GMAIL_SEND,          // Send emails
+            CalendarScopes.CALENDAR,         // Events and free/busy
+            SheetsScopes.SPREADSHEETS,       // Grade tracker
+            DriveScopes.DRIVE_METADATA_READONLY  // Spreadsheet version checks (RosterCache)
+    );
+
+    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+    private static final String DEFAULT_FIXTURE_DIR = "fixtures";
+
+    private static GoogleServices instance;
+
+    // Set by configure(); "live" unless the command line asks for an offline transport
+    private static String transportMode = "live";
+    private static String transportArgument;
+    private static OfflineTransport.Faults faults = OfflineTransport.Faults.NONE;
+
+    private final HttpTransport transport;
+    private final Credential credential;
+    private final HttpRequestInitializer initializer;
+
+    private Gmail gmail;
+    private Calendar calendar;
+    private Sheets sheets;
+    private Drive drive;
+
+    private GoogleServices(HttpTransport transport, Credential credential) {
+        this.transport = transport;
+        this.credential = credential;
+
+        this.initializer = ApiExecutor.initializer(credential);
+    }
+
+    /* Builds the credential and transport on first use (running the consent flow only if no usable token is stored) */
+    public static synchronized GoogleServices get() throws IOException, GeneralSecurityException {
+        if (instance == null) {
+            StartupTimer.mark("jvm");
+
+            Credential credential;
+            if (transportMode.equals("replay") || transportMode.equals("synthetic")) {
+                credential = OfflineTransport.credential();
+            } else {
+                // The OAuth flow has its own plain transport, so the stored token is loaded and an expired one is
+                // refreshed while the pooled transport and the clients are built; token traffic is never recorded
+                credential = GoogleAuthHelper.getCredentials(new NetHttpTransport(), SCOPES, CREDENTIAL_USER_ID);
+                TokenRefresher.start(credential);
+            }
+            StartupTimer.mark("credential");
+
+            HttpTransport transport = newTransport();
+            StartupTimer.mark("transport");
+
+            instance = new GoogleServices(transport, credential);
+            ApiMetrics.startExport(Path.of(ApiMetrics.DEFAULT_EXPORT_PATH), 60);
+        }
+        return instance;
+    }
+
+    /**
+     * Takes the transport options (--transport, --latency, --error-rate) out of the command line.
+     *
+     * @return The remaining arguments, for the bot's own options.
+     */
+    public static synchronized String[] configure(String[] args) {
+        String latency = null;
+        String errorRate = null;
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String value = (i + 1 < args.length) ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--transport" -> {
+                    String[] mode = require(args[i], value).split(":", 2);
+                    transportMode = mode[0];
+                    transportArgument = (mode.length > 1 && !mode[1].isEmpty()) ? mode[1] : null;
+                    i++;
+                }
+                case "--latency" -> {
+                    latency = require(args[i], value);
+                    i++;
+                }
+                case "--error-rate" -> {
+                    errorRate = require(args[i], value);
+                    i++;
+                }
+                default -> rest.add(args[i]);
+            }
+        }
+
+        if (!List.of("live", "record", "replay", "synthetic").contains(transportMode))
+            throw new IllegalArgumentException("Unknown transport: " + transportMode + " (live, record, replay or synthetic)");
+        faults = OfflineTransport.Faults.parse(latency, errorRate);
+        return rest.toArray(new String[0]);
+    }
+
+    private static String require(String option, String value) {
+        if (value == null || value.startsWith("--"))
+            throw new IllegalArgumentException(option + " needs a value");
+        return value;
+    }
+
+    private static HttpTransport newTransport() throws IOException, GeneralSecurityException {
+        switch (transportMode) {
+            case "record" -> {
+                Path dir = Path.of((transportArgument != null) ? transportArgument : DEFAULT_FIXTURE_DIR);
+                System.err.println("Recording API exchanges to " + dir.resolve(FixtureTransport.FIXTURE_FILE)
+                        + " (response bodies include real mail; keep it private)");
+                return FixtureTransport.recording(GoogleApacheHttpTransport.newTrustedTransport(), dir);
+            }
+            case "replay" -> {
+                Path dir = Path.of((transportArgument != null) ? transportArgument : DEFAULT_FIXTURE_DIR);
+                System.err.println("Offline: replaying fixtures from " + dir.resolve(FixtureTransport.FIXTURE_FILE));
+                return FixtureTransport.replaying(dir, faults);
+            }
+            case "synthetic" -> {
+                SyntheticTransport.Spec spec = SyntheticTransport.Spec.parse(transportArgument);
+                System.err.println("Offline: synthetic data " + spec + "; roster spreadsheet ID is "
+                        + SyntheticSheets.ROSTER_ID);
+                return new SyntheticTransport(spec, faults);
+            }
+            default -> {
+                return GoogleApacheHttpTransport.newTrustedTransport();
+            }
+        }
+    }
+
+    public synchronized Gmail gmail() {
+        if (gmail == null)
+            gmail = new Gmail.Builder(transport, JSON_FACTORY, initializer).setApplicationName(APPLICATION_NAME).build();
+        return gmail;
+    }
+
+    public synchronized Calendar calendar() {
+        if (calendar == null)
+            calendar = new Calendar.Builder(transport, JSON_FACTORY, initializer).setApplicationName(APPLICATION_NAME).build();
+        return calendar;
+    }
+
+    public synchronized Sheets sheets() {
+        if (sheets == null)
+            sheets = new Sheets.Builder(transport, JSON_FACTORY, initializer).setApplicationName(APPLICATION_NAME).build();
+        return sheets;
+    }
+
+    public synchronized Drive drive() {
+        if (drive == null)
+            drive = new Drive.Builder(transport, JSON_FACTORY, initializer).setApplicationName(APPLICATION_NAME).build();
+        return drive;
+    }
+
+    public Credential credential() {
+        return credential;
+    }
+
+    /* Closes pooled connections; call once when the process is done with every client */
+    public static synchronized void shutdown() throws IOException {
+        if (instance != null) {
+            if (instance.transport instanceof OfflineTransport offline)
+                System.err.println(offline.stats());
+            instance.transport.shutdown();
+            instance = null;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesRequest;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesResponse;
+import com.google.api.services.sheets.v4.model.ValueRange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Write-behind buffer for grade updates (columns C:D of the roster tab).
+ *
+ * Updates are collected per sheet row, so grading the same student twice before a flush writes only the last
+ * grade, and are written together in one values.batchUpdate. A flush happens when MAX_PENDING rows are queued,
+ * FLUSH_DELAY_SECONDS after the first queued update, or on demand (menu, script end, exit, before a report).
+ * Queued grades show up in RosterCache right away. If a flush fails, its updates go back into the queue unless
+ * a newer grade for the same row arrived in the meantime.
+ *
+ * Updates addressed by Student ID are resolved to a row through the cached RosterIndex when queued, with no network
+ * call unless the ID is missing from it; updates addressed by row remember the Student ID that row held in the
+ * cached roster. Before a batch is written, the Drive version of the spreadsheet is checked: if someone else changed
+ * the sheet, the roster is read again and every row whose Student ID cell no longer matches is looked up afresh by
+ * that ID (or dropped, with a message, if the student is gone). Rows queued without a known Student ID are dropped
+ * only if the sheet got shorter.
+ */
+public class GradeWriteQueue {
+
+    public static final int MAX_PENDING = 200;
+    public static final long FLUSH_DELAY_SECONDS = 5;
+
+    private static final String SHEET_NAME = "Sheet1";
+    private static final int GRADE_COLUMN = 2;   // C
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "grade-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Flushes run one at a time, so an older batch can never land after a newer one for the same row
+    private static final Object flushLock = new Object();
+
+    private static Sheets service;
+    private static String spreadsheetId;
+    private static Map<Integer, Update> pending = new LinkedHashMap<>();   // sheet row -> latest update for it
+    private static ScheduledFuture<?> scheduled;
+    private static final List<String> dropped = new ArrayList<>();   // updates revalidate() skipped, until taken
+
+    /* One queued write of [grade, score]; studentId is the student the row held when queued, or null if unknown */
+    private record Update(String studentId, List<Object> cells) {
+    }
+
+    /**
+     * Queues a grade and score for one sheet row.
+     *
+     * @return Number of rows waiting to be written (0 if this update triggered a flush).
+     */
+    public static int enqueue(Sheets sheets, String id, int rowNumber, String grade, int score) throws IOException {
+        String studentId = RosterCache.cachedStudentId(sheets, id, rowNumber);
+        return enqueue(sheets, id, rowNumber, new Update(studentId, List.of(grade, score)));
+    }
+
+    /**
+     * Queues a grade and score for the student with this ID, found through the cached roster index
+     * (or, if the ID is not in it, in the current sheet).
+     *
+     * @return Sheet row the update was queued for, or -1 if no student has this ID.
+     */
+    public static int enqueueById(Sheets sheets, String id, String studentId, String grade, int score) throws IOException {
+        String key = studentId.trim();
+        int rowNumber = RosterCache.cachedRowOfStudent(sheets, id, key);
+        if (rowNumber < 0)
+            return -1;
+        enqueue(sheets, id, rowNumber, new Update(key, List.of(grade, score)));
+        return rowNumber;
+    }
+
+    private static int enqueue(Sheets sheets, String id, int rowNumber, Update update) throws IOException {
+        boolean switching;
+        synchronized (GradeWriteQueue.class) {
+            switching = spreadsheetId != null && !spreadsheetId.equals(id) && !pending.isEmpty();
+        }
+        if (switching)
+            flush();   // another spreadsheet was opened: its grades go out before we queue for this one
+
+        boolean full;
+        synchronized (GradeWriteQueue.class) {
+            service = sheets;
+            spreadsheetId = id;
+
+            pending.remove(rowNumber);   // re-queue at the end, so the batch follows the order of the last edits
+            pending.put(rowNumber, update);
+            RosterCache.applyPending(id, rowNumber, GRADE_COLUMN, update.cells());
+
+            full = pending.size() >= MAX_PENDING;
+            if (!full && scheduled == null)
+                scheduled = timer.schedule(GradeWriteQueue::flushQuietly, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+
+        if (full)
+            flush();
+        return size();
+    }
+
+    public static synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Writes every queued update in one values.batchUpdate.
+     *
+     * @return Number of rows written.
+     */
+    public static int flush() throws IOException {
+        synchronized (flushLock) {
+            Sheets sheets;
+            String id;
+            Map<Integer, Update> batch;
+            synchronized (GradeWriteQueue.class) {
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                    scheduled = null;
+                }
+                if (pending.isEmpty())
+                    return 0;
+                sheets = service;
+                id = spreadsheetId;
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+
+            try {
+                batch = revalidate(sheets, id, batch);
+                if (batch.isEmpty())
+                    return 0;
+
+                List<ValueRange> data = new ArrayList<>(batch.size());
+                Map<Integer, List<Object>> cellsByRow = new LinkedHashMap<>();
+                for (Map.Entry<Integer, Update> e : batch.entrySet()) {
+                    int row = e.getKey();
+                    data.add(new ValueRange()
+                            .setRange(SHEET_NAME + "!C" + row + ":D" + row)
+                            .setValues(List.of(e.getValue().cells())));
+                    cellsByRow.put(row, e.getValue().cells());
+                }
+
+                Long versionBefore = RosterCache.versionBeforeWrite(id);
+                BatchUpdateValuesResponse response = sheets.spreadsheets().values()
+                        .batchUpdate(id, new BatchUpdateValuesRequest()
+                                .setValueInputOption("USER_ENTERED")
+                                .setData(data))
+                        .execute();
+                RosterCache.recordFlush(id, versionBefore, GRADE_COLUMN, cellsByRow);
+                System.out.println("Wrote " + batch.size() + " grade update(s) ("
+                        + response.getTotalUpdatedCells() + " cells) in one batch");
+                return batch.size();
+            } catch (IOException | RuntimeException e) {
+                requeue(id, batch);
+                throw e;
+            }
+        }
+    }
+
+    /*
+     * Checks that every row still holds the student it was queued for. While the Drive version is unchanged the
+     * cached rows are current and this costs one metadata call; after an outside edit the roster is read once and
+     * moved students are looked up again.
+     */
+    private static Map<Integer, Update> revalidate(Sheets sheets, String id, Map<Integer, Update> batch)
+            throws IOException {
+        List<List<Object>> rows = RosterCache.rows(sheets, id);
+        Map<Integer, Update> checked = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Update> e : batch.entrySet()) {
+            int row = e.getKey();
+            Update update = e.getValue();
+            if (update.studentId() != null && !update.studentId().equals(studentIdAt(rows, row))) {
+                row = RosterCache.cachedRowOfStudent(sheets, id, update.studentId());
+                if (row < 0) {
+                    drop("row " + e.getKey() + ", Student ID " + update.studentId() + ": no longer on the roster");
+                    continue;
+                }
+                System.out.println("Student ID " + update.studentId() + " moved from row " + e.getKey() + " to row " + row);
+            } else if (update.studentId() == null && row > rows.size()) {
+                drop("row " + row + ": the roster now ends at row " + rows.size());
+                continue;
+            }
+            checked.remove(row);
+            checked.put(row, update);
+        }
+        return checked;
+    }
+
+    private static synchronized void drop(String what) {
+        System.out.println("Skipped grade for " + what);
+        dropped.add("grade not written for " + what);
+    }
+
+    /* Queued updates that flushes since the last call skipped because their row no longer fits the sheet */
+    public static synchronized List<String> takeDropped() {
+        List<String> taken = new ArrayList<>(dropped);
+        dropped.clear();
+        return taken;
+    }
+
+    private static String studentIdAt(List<List<Object>> rows, int rowNumber) {
+        if (rowNumber > rows.size())
+            return null;
+        List<Object> row = rows.get(rowNumber - 1);
+        return (row.size() > 1 && row.get(1) != null) ? row.get(1).toString().trim() : null;
+    }
+
+    // Puts a failed batch back without overwriting grades queued while it was in flight
+    private static synchronized void requeue(String id, Map<Integer, Update> batch) {
+        if (!id.equals(spreadsheetId))
+            return;
+        Map<Integer, Update> merged = new LinkedHashMap<>(batch);
+        merged.putAll(pending);
+        pending = merged;
+        if (scheduled == null)
+            scheduled = timer.schedule(GradeWriteQueue::flushQuietly, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Timer flushes have no caller to report to; the updates stay queued for the next attempt
+    private static void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Grade flush failed (" + size() + " update(s) still queued): " + e.getMessage());
+        }
+    }
+}
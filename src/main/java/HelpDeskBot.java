@@ -2,109 +2,114 @@ import com.google.api.client.util.DateTime;
 import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.EventDateTime;
 import com.google.api.services.calendar.model.Events;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.gmail.Gmail;
-import com.google.api.services.gmail.model.Label;
 import com.google.api.services.gmail.model.ListMessagesResponse;
 import com.google.api.services.gmail.model.Message;
 import com.google.api.services.gmail.model.ModifyMessageRequest;
 import jakarta.mail.MessagingException;
-import jakarta.mail.Session;
-import jakarta.mail.internet.InternetAddress;
-import jakarta.mail.internet.MimeMessage;
 
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
 
 
 public class HelpDeskBot {
 
-    public static void listUnreadTickets(Gmail service) throws IOException {
-        int count = 0;
+    // Opened on first use of the local store menu options
+    private static TicketStore ticketStore;
 
-        ListMessagesResponse unreadResponses = service.users().messages()
-                .list("me")
-                .setQ("is:unread label:inbox")
-                .setMaxResults(10L)
-                .execute();
+    // Full-text index over stored ticket metadata plus the body of every ticket read in this session
+    private static final TicketIndex ticketIndex = new TicketIndex();
 
-        if (unreadResponses.getMessages() == null) {
-            System.out.println("No messages found.");
-            return;
-        }
+    // Thread summaries from earlier listings; a thread is fetched again only when its historyId changes
+    private static final TicketThreads ticketThreads = new TicketThreads();
 
-        System.out.println("--- Unread Tickets (latest 10) -----------------------");
-        for (Message msgRef : unreadResponses.getMessages()) {
-            count++;
+    public static void listUnreadTickets(Gmail service) throws IOException {
+        listUnreadTickets(service, null);
+    }
 
-            Message fullMsg = service.users().messages()
-                    .get("me", msgRef.getId())
-                    .setFormat("metadata")
-                    .setMetadataHeaders(Arrays.asList("Subject", "From"))
-                    .execute();
+    /* Pages through unread inbox tickets 10 at a time; with a null scanner only the first page is shown */
+    public static void listUnreadTickets(Gmail service, Scanner scanner) throws IOException {
+        try (TicketPager pager = new TicketPager(service, "is:unread label:inbox", 10L, "Subject", "From")) {
+            showTicketPages(pager, "Unread Tickets (10 per page)", scanner, false);
+        }
+    }
 
+    /* One row per unread conversation (message count, latest sender), 10 threads per page */
+    public static void listUnreadThreads(Gmail service, Scanner scanner) throws IOException {
+        String pageToken = null;
+        int count = 0;
 
-            String subject = fullMsg.getPayload().getHeaders()
-                    .stream()
-                    .filter(h -> "Subject".equals(h.getName()))
-                    .map(h -> h.getValue())
-                    .findFirst()
-                    .orElse("(no subject)");
+        System.out.println("--- Unread Ticket Threads (10 per page) -----------------------");
+        do {
+            TicketThreads.Page page = ticketThreads.listPage(service, "is:unread label:inbox", 10L, pageToken);
+            for (TicketThreads.ThreadSummary t : page.threads()) {
+                count++;
+                System.out.println(count + ". " + (t.unread() ? "[UNREAD] " : "") + "Subject: " + t.subject()
+                        + " || Messages: " + t.messageCount() + " || Latest from: " + t.latestFrom()
+                        + " || Thread ID: " + t.threadId());
+            }
 
-            String from = fullMsg.getPayload().getHeaders()
-                    .stream()
-                    .filter(h -> "From".equals(h.getName()))
-                    .map(h -> h.getValue())
-                    .findFirst()
-                    .orElse("(no sender)");
+            pageToken = page.nextPageToken();
+            if (scanner == null || pageToken == null)
+                break;
 
-            System.out.println(count + ". Subject: " + subject + " || From: " + from + " || Message ID: " + msgRef.getId());
-        }
+            System.out.println("Show next page? (y/n): ");
+        } while (scanner.nextLine().trim().equalsIgnoreCase("y"));
+
+        if (count == 0)
+            System.out.println("No messages found.");
+        System.out.println("(" + ticketThreads.stats() + ")");
         System.out.println("------------------------------------------------------");
     }
 
     public static void searchTickets(Gmail service, String query) throws IOException {
-        ListMessagesResponse searchResponse = service.users().messages()
-                .list("me")
-                .setQ(query)
-                .setMaxResults(20L)
-                .execute();
-
-        int count = 0;
-
-        System.out.println("--- Custom Query: " + query + " (latest 20) -----------------------");
-        for (Message msgRef : searchResponse.getMessages()) {
-            count++;
-
-            Message fullMsg = service.users().messages()
-                    .get("me", msgRef.getId())
-                    .setFormat("metadata")
-                    .setMetadataHeaders(Arrays.asList("Subject", "From"))
-                    .execute();
+        searchTickets(service, query, null);
+    }
 
+    /* Pages through every ticket matching the query 20 at a time; with a null scanner only the first page is shown */
+    public static void searchTickets(Gmail service, String query, Scanner scanner) throws IOException {
+        try (TicketPager pager = new TicketPager(service, query, 20L, "Subject", "From")) {
+            showTicketPages(pager, "Custom Query: " + query + " (20 per page)", scanner, true);
+        }
+    }
 
-            String subject = fullMsg.getPayload().getHeaders()
-                    .stream()
-                    .filter(h -> "Subject".equals(h.getName()))
-                    .map(h -> h.getValue())
-                    .findFirst()
-                    .orElse("(no subject)");
+    // Prints one page at a time; the pager fetches the next page in the background while this one is read
+    private static void showTicketPages(TicketPager pager, String title, Scanner scanner, boolean showSnippet) throws IOException {
+        int count = 0;
 
-            String from = fullMsg.getPayload().getHeaders()
-                    .stream()
-                    .filter(h -> "From".equals(h.getName()))
-                    .map(h -> h.getValue())
-                    .findFirst()
-                    .orElse("(no sender)");
+        try {
+            System.out.println("--- " + title + " -----------------------");
+            while (pager.hasNext()) {
+                for (Message fullMsg : pager.next()) {
+                    count++;
+                    Ticket ticket = Ticket.from(fullMsg);
+
+                    if (showSnippet) {
+                        String snippet = ticket.snippet().isEmpty() ? "(no snippet)" : ticket.snippet();
+                        System.out.println(count + ". Subject: " + ticket.subject() + " || From: " + ticket.from() + " || Snippet: " + snippet + " || Message ID: " + ticket.id());
+                    }
+                    else
+                        System.out.println(count + ". Subject: " + ticket.subject() + " || From: " + ticket.from() + " || Message ID: " + ticket.id());
+                }
 
-            String snippet = fullMsg.getSnippet();
-            if(snippet == null)
-                snippet = "(no snippet)";
+                if (scanner == null || !pager.hasNext())
+                    break;
 
-            System.out.println(count + ". Subject: " + subject + " || From: " + from + "Snippet: " + snippet + " || Message ID: " + msgRef.getId());
+                System.out.println("Show next page? (y/n): ");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("y"))
+                    break;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+
+        if (count == 0)
+            System.out.println("No messages found.");
         System.out.println("------------------------------------------------------");
     }
 
@@ -122,152 +127,106 @@ public class HelpDeskBot {
         }
 
 
-        String output = "";
-
-
-        // Case 1: Simple single-part message — body data is directly in payload
-//        String data = message.getPayload().getBody().getData();
-//        if (data != null) {
-//            byte[] bytes = Base64.getUrlDecoder().decode(data);  // decode Base64URL ? raw bytes
-//            output = new String(bytes, StandardCharsets.UTF_8);    // convert bytes ? readable text
-//        }
+        // Walks every level of the MIME tree: single-part, multipart/mixed, nested multipart/alternative, ...
+        MimeDecoder.DecodedMessage decoded = MimeDecoder.decode(message.getPayload());
+        String output = decoded.text();
 
-//         Case 2: Multipart message — body is split across parts (plain text, HTML, etc.)
-        var parts = message.getPayload().getParts();
-        if (parts != null) {
-            for (var part : parts) {
-                if ("text/plain".equals(part.getMimeType())) {   // find the plain-text part
-                    String partData = part.getBody().getData();
-                    byte[] bytes = Base64.getUrlDecoder().decode(partData);
-                    output = new String(bytes, StandardCharsets.UTF_8);
-                }
-            }
-        }
+        indexTicketBody(message, output);
 
         if(output.isEmpty())
-            System.out.println("(no plain text body)");
-        else
+            System.out.println("(no readable body)");
+        else {
+            if (decoded.fromHtml())
+                System.out.println("(converted from HTML)");
             System.out.println(output);
-    }
+        }
 
-    public static void replyToTicket(Gmail service, String messageId, String replyBody) throws IOException, MessagingException {
+        if (!decoded.attachments().isEmpty()) {
+            System.out.println("--- Attachments ---");
+            for (MimeDecoder.Attachment attachment : decoded.attachments())
+                System.out.println(attachment.filename() + " (" + attachment.mimeType() + ", " + attachment.size() + " bytes)");
+        }
+    }
 
+    /* Downloads every attachment of a ticket to attachments/<messageId>/, streaming each one straight to disk */
+    public static void saveTicketAttachments(Gmail service, String messageId) throws IOException {
         Message message = service.users().messages()
                 .get("me", messageId)
-                .setFormat("metadata")
-                .setMetadataHeaders(Arrays.asList("Subject", "From", "Message-ID"))
+                .setFormat("full")
                 .execute();
 
-        if(message.isEmpty()) {
-            System.out.println("No message found");
+        List<MimeDecoder.Attachment> attachments = MimeDecoder.decode(message.getPayload()).attachments();
+        if (attachments.isEmpty()) {
+            System.out.println("No attachments found.");
             return;
         }
 
-        String threadId = message.getThreadId();
-
-        String subject = message.getPayload().getHeaders()
-                .stream()
-                .filter(h -> "Subject".equals(h.getName()))
-                .map(h -> h.getValue())
-                .findFirst()
-                .orElse("(no subject)");
-
-        String from = message.getPayload().getHeaders()
-                .stream()
-                .filter(h -> "From".equals(h.getName()))
-                .map(h -> h.getValue())
-                .findFirst()
-                .orElse("(no sender)");
-
-        String originalMessageID = message.getPayload().getHeaders()
-                .stream()
-                .filter(h -> "Message-ID".equals(h.getName()))
-                .map(h -> h.getValue())
-                .findFirst()
-                .orElse("(no message ID found)");
-
-
-        // Step 1: Create a MIME message using Jakarta Mail
-        Properties props = new Properties();
-        Session session = Session.getDefaultInstance(props, null);  // minimal mail session (no server needed)
-        MimeMessage email = new MimeMessage(session);
-        email.setFrom(new InternetAddress("me"));           // "me" = authenticated user
-        email.addRecipient(jakarta.mail.Message.RecipientType.TO,new InternetAddress(from));
-
-        if(!subject.toLowerCase().startsWith("re:"))
-        {
-            subject = "Re: " + subject;
-        }
+        for (File file : MimeDecoder.saveAttachments(service, messageId, attachments))
+            System.out.println("Saved: " + file.getPath() + " (" + file.length() + " bytes)");
+    }
 
-        email.setSubject(subject);
-        email.setText(replyBody);                            // plain-text body
+    // Re-indexes a fully fetched ticket so its body becomes searchable locally
+    private static void indexTicketBody(Message message, String body) {
+        Ticket ticket = Ticket.from(message);
+        ticketIndex.add(ticket.id(), ticket.subject(), ticket.from(), ticket.snippet(), body);
+    }
 
-        email.setHeader("In-Reply-To", originalMessageID);
-        email.setHeader("References", originalMessageID);
+    /* Returns the ID of the sent reply, or null if the ticket was not found */
+    public static String replyToTicket(Gmail service, String messageId, String replyBody) throws IOException, MessagingException {
+
+        Message message = service.users().messages()
+                .get("me", messageId)
+                .setFormat("metadata")
+                .setMetadataHeaders(Arrays.asList("Subject", "From", "Message-ID", "References"))
+                .execute();
 
-        // Step 2: Serialize the MimeMessage to bytes
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        email.writeTo(buffer);
-        byte[] rawMessageBytes = buffer.toByteArray();
+        if(message.isEmpty()) {
+            System.out.println("No message found");
+            return null;
+        }
 
-        // Step 3: Encode as Base64URL
-        String encodedEmail = Base64.getUrlEncoder()
-                .encodeToString(rawMessageBytes);
+        Ticket ticket = Ticket.from(message);
 
-        // Step 4: Wrap in a Gmail API Message and send
-        Message newMessage = new Message();
-        newMessage.setRaw(encodedEmail);
-        newMessage.setThreadId(threadId);
+        // Build the MIME reply (shared mail session, streamed through the Base64URL encoder) and send it
+        Message newMessage = ReplyComposer.composeReply(ticket.threadId(), ticket.from(), ticket.subject(),
+                ticket.messageIdHeader(), ticket.references(), replyBody);
 
         newMessage = service.users().messages()
                 .send("me", newMessage)
                 .execute();
 
         System.out.println("Reply sent. ID: " + newMessage.getId());
+        return newMessage.getId();
     }
 
-    public static void applyLabel(Gmail service, String messageId, String labelName) throws IOException {
-        String labelID = "";
+    /* Returns the ID of the label that was applied */
+    public static String applyLabel(Gmail service, String messageId, String labelName) throws IOException {
+        // Resolved from the process-wide cache; only the first lookup lists labels (or creates a missing one)
+        String labelID = LabelCache.getLabelId(service, labelName);
 
-        // List all labels — both system and custom
-        var labels = service.users().labels().list("me").execute();
-        for (Label label : labels.getLabels()) {
-            System.out.println(label.getName() + " - " + label.getId());
-            if(label.getName().equals(labelName)) {
-                labelID = label.getId();
-                System.out.println("Label exists. LabelID: " + labelID);
-            }
-            // getName() ? "IN_PROGRESS" or "INBOX" etc.
-            // getId()   ? "Label_12345" or "INBOX" etc.
+        try {
+            addLabel(service, messageId, labelID);
+        } catch (GoogleJsonResponseException e) {
+            if (!LabelCache.isMissingLabelError(e))
+                throw e;
+
+            // The cached ID is stale (label deleted or renamed elsewhere) — reload and retry once
+            LabelCache.refresh(service);
+            labelID = LabelCache.getLabelId(service, labelName);
+            addLabel(service, messageId, labelID);
         }
 
-        if(labelID.isEmpty())
-        {
-            Label newLabel = new Label()
-                    .setName(labelName)
-                    .setLabelListVisibility("labelShow")      // show in the Gmail sidebar
-                    .setMessageListVisibility("show");        // show on messages in the list
-
-            Label created = service.users().labels()
-                    .create("me", newLabel)
-                    .execute();
-
-            labelID = created.getId();
-
-            System.out.println("Created label ID: " + labelID);  // save this ID for later use
-
-        }
+        System.out.println("Label " + labelName + " with LabelID of " + labelID + " applied to messageID: " + messageId);
+        return labelID;
+    }
 
-        // labelId comes from listing or creating labels above
+    private static void addLabel(Gmail service, String messageId, String labelID) throws IOException {
         ModifyMessageRequest request = new ModifyMessageRequest()
                 .setAddLabelIds(Collections.singletonList(labelID));      // labels to add
-                //.setRemoveLabelIds(Collections.singletonList("UNREAD"));  // labels to remove (marks as read)
 
         service.users().messages()
                 .modify("me", messageId, request)
                 .execute();
-
-        System.out.println("Label " + labelName + " with LabelID of " + labelID + " applied to messageID: " + messageId);
     }
 
     public static void trashTicket(Gmail service, String messageId) throws IOException {
@@ -283,40 +242,177 @@ public class HelpDeskBot {
 
     // PERSONAL METHOD - NOT A PART OF ASSIGNMENT
     public static void markQueryAsRead(Gmail service, String query1) throws IOException {
-        // Step 1: Search messages matching the query
-        ListMessagesResponse response = service.users().messages()
-                .list("me")
-                .setQ(query1)
-                .setMaxResults(100L)   // adjust as needed
-                .execute();
+        // Every match is handled, 1,000 messages per batchModify call
+        int count1 = BulkModifier.markQueryAsRead(service, query1);
 
-        if (response.getMessages() == null || response.getMessages().isEmpty()) {
+        if (count1 == 0)
             System.out.println("No messages found for query: " + query1);
-            return;
+        else
+            System.out.println("All messages (" + count1 + ") matching query \"" + query1 + "\" have been marked as read.");
+    }
+
+
+
+    /* Brings the local ticket store up to date (full sync once, then history only) and lists unread tickets from it */
+    public static void listLocalUnreadTickets(Gmail service) throws IOException {
+        TicketStore store = getTicketStore(service);
+        printStoredTickets("Unread Tickets (local store)", store.unread());
+    }
+
+    /* Filters the local ticket store by Subject, From or snippet text without a Gmail search */
+    public static void searchLocalTickets(Gmail service, String text) throws IOException {
+        TicketStore store = getTicketStore(service);
+        printStoredTickets("Local Search: " + text, store.search(text));
+    }
+
+    /* Ranked full-text search over the local index; supports OR, -exclude and "quoted phrases" */
+    public static void fullTextSearch(Gmail service, String query) throws IOException {
+        TicketStore store = getTicketStore(service);
+
+        long start = System.nanoTime();
+        List<TicketIndex.Hit> hits = ticketIndex.search(query, 20);
+        double elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        System.out.println("--- Full-text: " + query + " (top 20) -----------------------");
+        int count = 0;
+        for (TicketIndex.Hit hit : hits) {
+            count++;
+            Ticket t = store.get(hit.messageId());
+            if (t != null)
+                System.out.println(count + ". Subject: " + t.subject() + " || From: " + t.from() + " || Message ID: " + t.id());
+            else
+                System.out.println(count + ". Message ID: " + hit.messageId());
         }
 
-        int count1 = 0;
+        if (count == 0)
+            System.out.println("No messages found.");
+        System.out.printf("(%d of %d indexed tickets searched in %.2f ms; bodies only of tickets opened this session)%n",
+                count, ticketIndex.size(), elapsedMs);
+        System.out.println("------------------------------------------------------");
+    }
+
+    /* Runs the triage rules over every unread ticket in the local store */
+    public static void triageUnreadTickets(Gmail service, String rulesPath) throws IOException {
+        TriageEngine engine = TriageEngine.load(Path.of(rulesPath));
+        TicketStore store = getTicketStore(service);
+        List<Ticket> unread = store.unread();
 
-        // Step 2: Loop through each message and remove the UNREAD label
-        for (Message msg : response.getMessages()) {
-            ModifyMessageRequest mods = new ModifyMessageRequest()
-                    .setRemoveLabelIds(Collections.singletonList("UNREAD"));
+        System.out.println("Triaging " + unread.size() + " unread ticket(s) with " + engine.ruleCount() + " rule(s)...");
+        engine.apply(service, unread);
+    }
 
-            service.users().messages()
-                    .modify("me", msg.getId(), mods)
-                    .execute();
+    private static TicketStore getTicketStore(Gmail service) throws IOException {
+        if (ticketStore == null) {
+            ticketStore = TicketStore.open();   // resumes from the saved historyId, if any
+            ticketStore.attachIndex(ticketIndex);
+        }
+        ticketStore.sync(service);
+        return ticketStore;
+    }
 
-            count1++;
-            System.out.println("Marked as read: " + msg.getId());
+    private static void printStoredTickets(String title, List<Ticket> tickets) {
+        System.out.println("--- " + title + " -----------------------");
+        int count = 0;
+        for (Ticket t : tickets) {
+            count++;
+            System.out.println(count + ". Subject: " + t.subject() + " || From: " + t.from() + " || Message ID: " + t.id());
         }
 
-        System.out.println("All messages (" + count1 + ") matching query \"" + query1 + "\" have been marked as read.");
+        if (count == 0)
+            System.out.println("No messages found.");
+        System.out.println("------------------------------------------------------");
+    }
+
+
+
+    /* Commands for script mode (GoogleAuthHelper --script); each returns a JSON-serializable result */
+    public static ScriptRunner scriptCommands(Gmail service) {
+        return new ScriptRunner("Help-Desk Bot")
+                .register("list-unread [max]", 0, -1,
+                        args -> queryTickets(service, "is:unread label:inbox", maxArg(args, 0)))
+                .register("search <query> [max]", 1, -1,
+                        args -> queryTickets(service, args.get(0), maxArg(args, 1)))
+                .register("read <messageId>", 1, 0, args -> {
+                    Message message = service.users().messages().get("me", args.get(0)).setFormat("full").execute();
+                    MimeDecoder.DecodedMessage decoded = MimeDecoder.decode(message.getPayload());
+                    indexTicketBody(message, decoded.text());
+
+                    List<String> attachments = new ArrayList<>();
+                    for (MimeDecoder.Attachment attachment : decoded.attachments())
+                        attachments.add(attachment.filename());
+
+                    Map<String, Object> result = ticketRow(Ticket.from(message));
+                    result.put("body", decoded.text());
+                    result.put("attachments", attachments);
+                    return result;
+                })
+                .register("reply <messageId> <text>", 2, 0, args -> {
+                    String sentId = replyToTicket(service, args.get(0), args.get(1).replace("\\n", "\n"));
+                    if (sentId == null)
+                        throw new IOException("message not found");
+                    return Map.of("sentId", sentId);
+                })
+                .register("label <messageId> <labelName>", 2, 0,
+                        args -> Map.of("labelId", applyLabel(service, args.get(0), args.get(1))))
+                .register("trash <messageId>", 1, 0, args -> {
+                    trashTicket(service, args.get(0));
+                    return null;
+                })
+                .register("mark-read <query>", 1, -1,
+                        args -> Map.of("modified", BulkModifier.markQueryAsRead(service, args.get(0))))
+                .register("label-query <query> <labelName>", 2, -1,
+                        args -> Map.of("modified", BulkModifier.labelQuery(service, args.get(0), args.get(1))))
+                .register("trash-query <query>", 1, -1,
+                        args -> Map.of("modified", BulkModifier.trashQuery(service, args.get(0))))
+                .register("triage [rulesFile]", 0, -1, args -> {
+                    TriageEngine engine = TriageEngine.load(Path.of(args.isEmpty() ? TriageEngine.DEFAULT_RULES_PATH : args.get(0)));
+                    synchronized (HelpDeskBot.class) {
+                        return Map.of("modified", engine.apply(service, getTicketStore(service).unread()));
+                    }
+                });
+    }
+
+    // One page of matching tickets with their metadata (one list call plus one batch round trip)
+    private static List<Map<String, Object>> queryTickets(Gmail service, String query, long max) throws IOException {
+        ListMessagesResponse response = service.users().messages()
+                .list("me")
+                .setQ(query)
+                .setMaxResults(max)
+                .execute();
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        if (response.getMessages() == null)
+            return rows;
+
+        for (Message message : MessageBatchFetcher.fetchMetadata(service, response.getMessages(), "Subject", "From")) {
+            if (message != null)
+                rows.add(ticketRow(Ticket.from(message)));
+        }
+        return rows;
     }
 
+    private static Map<String, Object> ticketRow(Ticket ticket) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", ticket.id());
+        row.put("threadId", ticket.threadId());
+        row.put("subject", ticket.subject());
+        row.put("from", ticket.from());
+        row.put("unread", ticket.isUnread());
+        return row;
+    }
 
+    private static long maxArg(List<String> args, int index) {
+        return (args.size() > index) ? Long.parseLong(args.get(index)) : 10L;
+    }
 
     public static void runMenu(Gmail service) throws IOException, MessagingException {
         Scanner scanner = new Scanner(System.in);
+        runMenu(service, scanner);
+        scanner.close();
+    }
+
+    /* Runs the menu on a caller-owned scanner, which is left open (e.g. for the --all launcher) */
+    public static void runMenu(Gmail service, Scanner scanner) throws IOException, MessagingException {
         boolean isRunning = true;
 
         try {
@@ -331,6 +427,17 @@ public class HelpDeskBot {
                 System.out.println("5. Label ticket IN_PROGRESS");
                 System.out.println("6. Trash a ticket");
                 System.out.println("7. Mark all messages matching query as read");
+                System.out.println("8. Label all messages matching query");
+                System.out.println("9. Trash all messages matching query");
+                System.out.println("10. List unread tickets (local store)");
+                System.out.println("11. Search tickets (local store)");
+                System.out.println("12. Full-text search (local index)");
+                System.out.println("13. Save ticket attachments");
+                System.out.println("14. Bulk reply to all tickets matching query");
+                System.out.println("15. Show API quota usage");
+                System.out.println("16. Auto-triage unread tickets (rules file)");
+                System.out.println("17. List unread tickets grouped by thread");
+                System.out.println("18. Show API call metrics (latency, bytes, status codes)");
                 System.out.println("0. Exit");
                 System.out.println("----------------------------------");
                 System.out.println("Choice: ");
@@ -339,13 +446,13 @@ public class HelpDeskBot {
 
                 switch (choice) {
                     case "1":
-                        listUnreadTickets(service);
+                        listUnreadTickets(service, scanner);
                         break;
 
                     case "2":
                         System.out.println("Enter search query: ");
                         String query = scanner.nextLine();
-                        searchTickets(service, query);
+                        searchTickets(service, query, scanner);
                         break;
 
                     case "3":
@@ -393,17 +500,91 @@ public class HelpDeskBot {
                         markQueryAsRead(service, markAsReadQuery);
                         break;
 
+                    case "8":
+                        System.out.println("Enter Gmail search query to label: ");
+                        String labelQuery = scanner.nextLine();
+
+                        System.out.println("Enter label name: ");
+                        String bulkLabelName = scanner.nextLine().trim();
+
+                        BulkModifier.labelQuery(service, labelQuery, bulkLabelName);
+                        break;
+
+                    case "9":
+                        System.out.println("Enter Gmail search query to trash: ");
+                        String trashQuery = scanner.nextLine();
+
+                        System.out.println("Trash ALL messages matching \"" + trashQuery + "\"? (y/n): ");
+                        if (scanner.nextLine().equalsIgnoreCase("y"))
+                            BulkModifier.trashQuery(service, trashQuery);
+                        else
+                            System.out.println("Trash cancelled.");
+                        break;
+
+                    case "10":
+                        listLocalUnreadTickets(service);
+                        break;
+
+                    case "11":
+                        System.out.println("Enter text to find in subject, sender or snippet: ");
+                        String localQuery = scanner.nextLine().trim();
+                        searchLocalTickets(service, localQuery);
+                        break;
+
+                    case "12":
+                        System.out.println("Enter search words (OR, -exclude and \"exact phrase\" supported): ");
+                        String fullTextQuery = scanner.nextLine().trim();
+                        fullTextSearch(service, fullTextQuery);
+                        break;
+
+                    case "13":
+                        System.out.println("Enter message ID to save attachments from: ");
+                        String attachmentMessageID = scanner.nextLine().trim();
+                        saveTicketAttachments(service, attachmentMessageID);
+                        break;
+
+                    case "14":
+                        System.out.println("Enter Gmail search query to reply to: ");
+                        String replyQuery = scanner.nextLine();
+
+                        System.out.println("Enter reply template ({name}, {email}, {subject}, {id}; \\n for a new line): ");
+                        String template = scanner.nextLine().replace("\\n", "\n");
+
+                        System.out.println("Send this reply to ALL tickets matching \"" + replyQuery + "\"? (y/n): ");
+                        if (scanner.nextLine().equalsIgnoreCase("y"))
+                            BulkReplier.replyToQuery(service, replyQuery, template);
+                        else
+                            System.out.println("Bulk reply cancelled.");
+                        break;
+
+                    case "15":
+                        ApiExecutor.printStats();
+                        break;
+
+                    case "16":
+                        System.out.println("Enter rules file (blank for " + TriageEngine.DEFAULT_RULES_PATH + "): ");
+                        String rulesPath = scanner.nextLine().trim();
+                        triageUnreadTickets(service, rulesPath.isEmpty() ? TriageEngine.DEFAULT_RULES_PATH : rulesPath);
+                        break;
+
+                    case "17":
+                        listUnreadThreads(service, scanner);
+                        break;
+
+                    case "18":
+                        ApiMetrics.printSummary();
+                        break;
+
                     case "0":
                         isRunning = false;
                         System.out.println("Exiting program");
                         break;
 
                     default:
-                        System.out.println("Invalid input. Please choose 0-6.");
+                        System.out.println("Invalid input. Please choose 0-18.");
 
                 }
             }
-            scanner.close();
         } catch (Exception e) {
             System.out.println("Error occurred: " + e.getMessage());
         }
@@ -0,0 +1,258 @@
+import com.google.api.services.gmail.Gmail;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+ * Headless daemon mode: follows the inbox with users.history.list and hands every new ticket to pluggable handlers.
+ *
+ * The poll interval adapts to traffic: it drops to MIN_INTERVAL_MILLIS as soon as the mailbox changes and grows
+ * by IDLE_BACKOFF after every empty poll, up to MAX_INTERVAL_MILLIS. Polls go through the same Gmail quota
+ * limiter as all other API work, so a busy handler (e.g. auto-ack sends) slows polling down instead of
+ * pushing the account over quota.
+ *
+ * The store's historyId moves on as soon as a poll has been synced, so a handler that throws keeps the tickets it was
+ * given and gets them again, together with any new ones, on the next poll (up to MAX_HANDLER_ATTEMPTS times). Only
+ * the failing handler retries; the others have already seen those tickets. Retries are kept in memory, so tickets a
+ * handler still owes are lost if the process stops.
+ */
+public class InboxWatcher {
+
+    public static final long MIN_INTERVAL_MILLIS = 2_000;
+    public static final long MAX_INTERVAL_MILLIS = 60_000;
+    private static final double IDLE_BACKOFF = 1.5;
+    public static final int MAX_HANDLER_ATTEMPTS = 5;
+
+    public static final String DEFAULT_ACK_TEMPLATE = "Hi {name},\n\n"
+            + "Thanks for contacting the help desk. We received your ticket \"{subject}\" and will get back to you soon.\n\n"
+            + "Help Desk";
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    /* Receives the tickets that arrived since the previous poll, plus any it failed on; never called with none */
+    @FunctionalInterface
+    public interface Handler {
+        void onNewTickets(Gmail service, List<Ticket> tickets) throws Exception;
+    }
+
+    private final Gmail service;
+    private final TicketStore store;
+    private final List<Handler> handlers = new ArrayList<>();
+    private final Map<Handler, Retry> retries = new IdentityHashMap<>();   // tickets a handler failed on
+    private volatile boolean running;
+    private long intervalMillis = MIN_INTERVAL_MILLIS;
+
+    /* Tickets one handler threw on, and how many times in a row it has failed them */
+    private static final class Retry {
+        final List<Ticket> tickets;
+        final int attempts;
+
+        Retry(List<Ticket> tickets, int attempts) {
+            this.tickets = tickets;
+            this.attempts = attempts;
+        }
+    }
+
+    public InboxWatcher(Gmail service, TicketStore store) {
+        this.service = service;
+        this.store = store;
+    }
+
+    public InboxWatcher addHandler(Handler handler) {
+        handlers.add(Objects.requireNonNull(handler));
+        return this;
+    }
+
+    /* Polls until stop() is called or the thread is interrupted */
+    public void run() {
+        running = true;
+        System.out.println("Watching inbox (" + handlers.size() + " handler(s)); press Ctrl+C to stop.");
+
+        while (running) {
+            try {
+                boolean changed = pollOnce();
+                intervalMillis = changed
+                        ? MIN_INTERVAL_MILLIS
+                        : Math.min(MAX_INTERVAL_MILLIS, (long) (intervalMillis * IDLE_BACKOFF));
+            } catch (IOException e) {
+                // Network trouble or an outage the request-level retries could not ride out: slow right down
+                System.out.println(timestamp() + " Poll failed: " + e.getMessage());
+                intervalMillis = MAX_INTERVAL_MILLIS;
+            }
+
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        running = false;
+        System.out.println("Inbox watcher stopped.");
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * Syncs the store once and dispatches any new tickets.
+     *
+     * @return true if the mailbox changed at all since the last poll (new mail, label changes, deletions).
+     */
+    public boolean pollOnce() throws IOException {
+        BigInteger before = store.getHistoryId();
+        List<Ticket> added = store.sync(service);
+
+        // Each handler is isolated so one failing (e.g. a send error) does not stop the others
+        for (Handler handler : handlers) {
+            Retry retry = retries.remove(handler);
+            List<Ticket> tickets = (retry == null) ? added : merge(retry.tickets, added);
+            if (tickets.isEmpty())
+                continue;
+
+            try {
+                handler.onNewTickets(service, tickets);
+            } catch (Exception e) {
+                int attempts = (retry == null) ? 1 : retry.attempts + 1;
+                if (attempts < MAX_HANDLER_ATTEMPTS) {
+                    retries.put(handler, new Retry(tickets, attempts));
+                    System.out.println(timestamp() + " Handler failed (" + tickets.size()
+                            + " ticket(s) kept for the next poll): " + e.getMessage());
+                } else {
+                    System.out.println(timestamp() + " Handler failed " + attempts + " times, giving up on "
+                            + tickets.size() + " ticket(s): " + e.getMessage());
+                }
+            }
+        }
+
+        return !Objects.equals(before, store.getHistoryId());
+    }
+
+    // Tickets to retry as they are now in the store (dropping any since deleted), then the new ones
+    private List<Ticket> merge(List<Ticket> failed, List<Ticket> added) {
+        Map<String, Ticket> merged = new LinkedHashMap<>();
+        for (Ticket t : failed) {
+            Ticket current = store.get(t.id());
+            if (current != null)
+                merged.put(current.id(), current);
+        }
+        for (Ticket t : added)
+            merged.put(t.id(), t);
+        return new ArrayList<>(merged.values());
+    }
+
+    /* Prints one line per new ticket */
+    public static Handler logHandler() {
+        return (service, tickets) -> {
+            for (Ticket t : tickets)
+                System.out.println(timestamp() + " New ticket " + t.id() + " from " + t.from() + ": " + t.subject());
+        };
+    }
+
+    /* Adds the label (created on first use) to every new ticket with one batchModify call per 1000 tickets */
+    public static Handler autoLabel(String labelName) {
+        return (service, tickets) -> {
+            String labelId = LabelCache.getLabelId(service, labelName);
+            List<String> ids = new ArrayList<>(tickets.size());
+            for (Ticket t : tickets)
+                ids.add(t.id());
+            BulkModifier.modifyIds(service, ids, List.of(labelId), null);
+            System.out.println(timestamp() + " Labeled " + ids.size() + " ticket(s) '" + labelName + "'.");
+        };
+    }
+
+    /* Sends the templated acknowledgement; skips our own mail and automated senders so two robots never loop */
+    public static Handler autoAck(String template) {
+        return (service, tickets) -> {
+            List<Ticket> toAck = new ArrayList<>(tickets.size());
+            for (Ticket t : tickets) {
+                if (BulkReplier.shouldReply(t))
+                    toAck.add(t);
+            }
+            if (!toAck.isEmpty())
+                BulkReplier.replyToTickets(service, toAck, template);
+        };
+    }
+
+    /* Applies the triage rules to every new ticket, grouped into batchModify calls */
+    public static Handler autoTriage(TriageEngine engine) {
+        return engine::apply;
+    }
+
+    /**
+     * Builds one handler from a daemon argument: "log", "label=NAME", "ack" (default template),
+     * "ack=FILE" (template read from a file), "triage" (triage_rules.txt) or "triage=FILE".
+     */
+    public static Handler parseHandler(String spec) throws IOException {
+        int eq = spec.indexOf('=');
+        String name = (eq < 0) ? spec : spec.substring(0, eq);
+        String value = (eq < 0) ? null : spec.substring(eq + 1);
+
+        switch (name) {
+            case "log":
+                return logHandler();
+            case "label":
+                if (value == null || value.isEmpty())
+                    throw new IllegalArgumentException("label handler needs a name, e.g. label=NEW_TICKET");
+                return autoLabel(value);
+            case "ack":
+                return autoAck((value == null) ? DEFAULT_ACK_TEMPLATE
+                        : Files.readString(Path.of(value), StandardCharsets.UTF_8));
+            case "triage":
+                TriageEngine engine = TriageEngine.load(Path.of((value == null) ? TriageEngine.DEFAULT_RULES_PATH : value));
+                System.out.println("Loaded " + engine.ruleCount() + " triage rule(s).");
+                return autoTriage(engine);
+            default:
+                throw new IllegalArgumentException("Unknown handler: " + spec
+                        + " (use log, label=NAME, ack, ack=FILE, triage or triage=FILE)");
+        }
+    }
+
+    /*
+     * Entry point for "--watch [handler ...]": runs until the process is stopped.
+     * A first run with no saved store does a full sync and reports nothing, so the existing inbox is never acked.
+     */
+    public static void runDaemon(Gmail service, List<String> handlerSpecs) throws IOException {
+        TicketStore store = TicketStore.open();
+        InboxWatcher watcher = new InboxWatcher(service, store);
+
+        if (handlerSpecs.isEmpty())
+            watcher.addHandler(logHandler());
+        for (String spec : handlerSpecs)
+            watcher.addHandler(parseHandler(spec));
+
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            watcher.stop();
+            mainThread.interrupt();
+            try {
+                mainThread.join(5_000);
+            } catch (InterruptedException e) {
+                // JVM is going down anyway
+            }
+        }));
+
+        watcher.run();
+    }
+
+    private static String timestamp() {
+        return "[" + LocalTime.now().format(TIME) + "]";
+    }
+}
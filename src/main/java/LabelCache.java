@@ -0,0 +1,73 @@
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.Label;
+import com.google.api.services.gmail.model.ListLabelsResponse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Process-wide label name -> label ID cache, filled by one labels().list call */
+public class LabelCache {
+
+    private static final Map<String, String> idsByName = new HashMap<>();
+    private static boolean loaded = false;
+
+    /**
+     * Resolves a label name to its ID, creating the label if it does not exist yet.
+     * Only the first call (or the first call after invalidate) lists the labels.
+     */
+    public static synchronized String getLabelId(Gmail service, String labelName) throws IOException {
+        if (!loaded)
+            refresh(service);
+
+        String labelID = idsByName.get(labelName);
+        if (labelID == null)
+            labelID = createLabel(service, labelName);
+
+        return labelID;
+    }
+
+    /* Re-lists all labels (system and custom) and replaces the cached mapping */
+    public static synchronized void refresh(Gmail service) throws IOException {
+        ListLabelsResponse response = service.users().labels().list("me").execute();
+
+        idsByName.clear();
+        if (response.getLabels() != null) {
+            for (Label label : response.getLabels())
+                idsByName.put(label.getName(), label.getId());
+        }
+        loaded = true;
+    }
+
+    /* Forgets everything; the next lookup lists the labels again */
+    public static synchronized void invalidate() {
+        idsByName.clear();
+        loaded = false;
+    }
+
+    /* True if Gmail rejected a request because one of its label IDs no longer exists */
+    public static boolean isMissingLabelError(GoogleJsonResponseException e) {
+        if (e.getStatusCode() != 400 && e.getStatusCode() != 404)
+            return false;
+
+        String message = (e.getDetails() != null) ? e.getDetails().getMessage() : e.getMessage();
+        return message != null && message.toLowerCase().contains("label");
+    }
+
+    private static String createLabel(Gmail service, String labelName) throws IOException {
+        Label newLabel = new Label()
+                .setName(labelName)
+                .setLabelListVisibility("labelShow")      // show in the Gmail sidebar
+                .setMessageListVisibility("show");        // show on messages in the list
+
+        Label created = service.users().labels()
+                .create("me", newLabel)
+                .execute();
+
+        idsByName.put(created.getName(), created.getId());
+        System.out.println("Created label " + created.getName() + " (ID: " + created.getId() + ")");
+
+        return created.getId();
+    }
+}
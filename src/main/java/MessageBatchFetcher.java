@@ -0,0 +1,132 @@
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonErrorContainer;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.Message;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* Fetches message or thread metadata for a page of IDs using Gmail batch HTTP requests */
+public class MessageBatchFetcher {
+
+    // Gmail accepts up to 100 calls per batch but recommends 50 or fewer to avoid rate limiting
+    public static final int MAX_BATCH_SIZE = 100;
+    private static int batchSize = 50;
+
+    public static int getBatchSize() {
+        return batchSize;
+    }
+
+    public static void setBatchSize(int size) {
+        if (size < 1 || size > MAX_BATCH_SIZE)
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_SIZE + ": " + size);
+        batchSize = size;
+    }
+
+    /**
+     * Fetches metadata for every message reference with one batch round trip per batchSize messages.
+     *
+     * @param service Authorized Gmail client.
+     * @param refs    Message references as returned by messages().list (only the ID is used).
+     * @param headers Metadata headers to include, e.g. "Subject", "From".
+     * @return Messages in the same order as refs; an entry is null if that message could not be fetched.
+     */
+    public static List<Message> fetchMetadata(Gmail service, List<Message> refs, String... headers) throws IOException {
+        List<String> ids = new ArrayList<>(refs.size());
+        for (Message ref : refs)
+            ids.add(ref.getId());
+
+        List<String> metadataHeaders = Arrays.asList(headers);
+        return fetchAll(service, ids, "message", id -> service.users().messages()
+                .get("me", id)
+                .setFormat("metadata")
+                .setMetadataHeaders(metadataHeaders));
+    }
+
+    /**
+     * Fetches whole threads (every message's labels, date and the given headers, no bodies) in batches.
+     *
+     * @return Threads in the same order as threadIds; an entry is null if that thread could not be fetched.
+     */
+    public static List<com.google.api.services.gmail.model.Thread> fetchThreadMetadata(Gmail service, List<String> threadIds, String... headers) throws IOException {
+        List<String> metadataHeaders = Arrays.asList(headers);
+        return fetchAll(service, threadIds, "thread", id -> service.users().threads()
+                .get("me", id)
+                .setFormat("metadata")
+                .setMetadataHeaders(metadataHeaders)
+                .setFields("id,historyId,messages(id,threadId,labelIds,internalDate,payload/headers)"));
+    }
+
+    /* Builds the request for one ID; the IOException comes from the generated request constructors */
+    private interface RequestFactory<T> {
+        AbstractGoogleJsonClientRequest<T> create(String id) throws IOException;
+    }
+
+    private static <T> List<T> fetchAll(Gmail service, List<String> ids, String kind, RequestFactory<T> factory)
+            throws IOException {
+        List<T> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++)
+            results.add(null);
+
+        for (int start = 0; start < ids.size(); start += batchSize) {
+            List<Integer> pending = new ArrayList<>();
+            for (int i = start; i < Math.min(start + batchSize, ids.size()); i++)
+                pending.add(i);
+
+            // Parts rejected with 429 or 5xx are sent again in a smaller batch after a backoff
+            for (int attempt = 0; !pending.isEmpty(); attempt++) {
+                if (attempt > 0)
+                    sleep(ApiExecutor.backoffMillis(attempt - 1, null));
+
+                List<Integer> retry = new ArrayList<>();
+                boolean lastAttempt = attempt == ApiExecutor.MAX_RETRIES;
+                BatchRequest batch = service.batch();
+
+                for (int i : pending) {
+                    final int slot = i;  // callbacks may arrive in any order, so each one writes its own slot
+                    final String id = ids.get(i);
+
+                    // Queued by hand so the part goes without RetryHandler: this loop is the only retry for parts
+                    AbstractGoogleJsonClientRequest<T> request = factory.create(id);
+                    batch.queue(ApiExecutor.batchPart(request.buildHttpRequest()), request.getResponseClass(),
+                            GoogleJsonErrorContainer.class, new JsonBatchCallback<T>() {
+                        @Override
+                        public void onSuccess(T result, HttpHeaders responseHeaders) {
+                            results.set(slot, result);
+                        }
+
+                        @Override
+                        public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {
+                            boolean retryable = e.getCode() == 429 || e.getCode() >= 500;
+                            if (retryable && !lastAttempt)
+                                retry.add(slot);
+                            else
+                                System.out.println("Could not fetch " + kind + " " + id + ": " + e.getMessage());
+                        }
+                    });
+                }
+
+                batch.execute();
+                pending = retry;
+            }
+        }
+
+        return results;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off");
+        }
+    }
+}
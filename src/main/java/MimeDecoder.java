@@ -0,0 +1,334 @@
+import com.google.api.client.http.HttpResponse;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartHeader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/* Walks a Gmail MIME tree (any depth) to find the readable body and the attachments */
+public class MimeDecoder {
+
+    /* One attachment found in the MIME tree; attachmentId is null when the data is inline */
+    public record Attachment(String filename, String mimeType, long size, String attachmentId, MessagePart part) { }
+
+    /* The readable text of a message plus everything that should be saved rather than shown */
+    public record DecodedMessage(String text, boolean fromHtml, List<Attachment> attachments) { }
+
+    // Bodies longer than this are cut off; the rest of a huge part is never decoded
+    public static final int MAX_BODY_CHARS = 256 * 1024;
+    private static final String ATTACHMENTS_DIRECTORY_PATH = "attachments";
+
+    public static DecodedMessage decode(MessagePart payload) throws IOException {
+        List<MessagePart> plainParts = new ArrayList<>();
+        List<MessagePart> htmlParts = new ArrayList<>();
+        List<Attachment> attachments = new ArrayList<>();
+        walk(payload, plainParts, htmlParts, attachments);
+
+        // Prefer text/plain; fall back to the HTML alternative converted to text
+        if (!plainParts.isEmpty())
+            return new DecodedMessage(decodeText(plainParts.get(0)), false, attachments);
+        if (!htmlParts.isEmpty())
+            return new DecodedMessage(htmlToText(decodeText(htmlParts.get(0))), true, attachments);
+        return new DecodedMessage("", false, attachments);
+    }
+
+    // Depth-first, so the first text part found is the one a mail client would show
+    private static void walk(MessagePart part, List<MessagePart> plainParts, List<MessagePart> htmlParts,
+                             List<Attachment> attachments) {
+        if (part == null)
+            return;
+
+        String mimeType = (part.getMimeType() != null) ? part.getMimeType().toLowerCase(Locale.ROOT) : "";
+        boolean hasFilename = part.getFilename() != null && !part.getFilename().isEmpty();
+
+        if (part.getParts() != null && !part.getParts().isEmpty()) {
+            for (MessagePart child : part.getParts())
+                walk(child, plainParts, htmlParts, attachments);
+        } else if (hasFilename || (part.getBody() != null && part.getBody().getAttachmentId() != null)) {
+            long size = (part.getBody() != null && part.getBody().getSize() != null) ? part.getBody().getSize() : 0L;
+            String attachmentId = (part.getBody() != null) ? part.getBody().getAttachmentId() : null;
+            String filename = hasFilename ? part.getFilename() : "part-" + part.getPartId();
+            attachments.add(new Attachment(filename, mimeType, size, attachmentId, part));
+        } else if (mimeType.equals("text/plain")) {
+            plainParts.add(part);
+        } else if (mimeType.equals("text/html")) {
+            htmlParts.add(part);
+        }
+    }
+
+    /* Streams the part's Base64URL data through a decoder into at most MAX_BODY_CHARS characters */
+    public static String decodeText(MessagePart part) throws IOException {
+        if (part.getBody() == null || part.getBody().getData() == null)
+            return "";
+
+        InputStream decoded = Base64.getUrlDecoder().wrap(new CharSequenceInputStream(part.getBody().getData()));
+        StringBuilder text = new StringBuilder(Math.min(part.getBody().getData().length(), MAX_BODY_CHARS));
+
+        try (Reader reader = new InputStreamReader(decoded, charsetOf(part))) {
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                int room = MAX_BODY_CHARS - text.length();
+                if (n >= room) {
+                    text.append(buffer, 0, room);
+                    text.append("\n...(message truncated)");
+                    break;
+                }
+                text.append(buffer, 0, n);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Saves every attachment of a message under attachments/<messageId>/.
+     * Large attachments are streamed from attachments().get to disk without being held in memory.
+     *
+     * @return The files written.
+     */
+    public static List<File> saveAttachments(Gmail service, String messageId, List<Attachment> attachments) throws IOException {
+        Path dir = Path.of(ATTACHMENTS_DIRECTORY_PATH, messageId);
+        Files.createDirectories(dir);
+        List<File> saved = new ArrayList<>();
+
+        for (Attachment attachment : attachments) {
+            Path target = dir.resolve(safeFilename(attachment.filename()));
+
+            if (attachment.attachmentId() == null) {
+                // Small attachments come inline with format=full
+                String data = attachment.part().getBody().getData();
+                if (data == null)
+                    continue;
+                try (InputStream in = Base64.getUrlDecoder().wrap(new CharSequenceInputStream(data))) {
+                    Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else {
+                HttpResponse response = service.users().messages().attachments()
+                        .get("me", messageId, attachment.attachmentId())
+                        .executeUnparsed();
+                try (InputStream json = new BufferedInputStream(response.getContent());
+                     InputStream in = Base64.getUrlDecoder().wrap(jsonStringField(json, "data"))) {
+                    Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    response.disconnect();
+                }
+            }
+
+            saved.add(target.toFile());
+        }
+        return saved;
+    }
+
+    /* Rough HTML to text: drops script/style, turns block tags into line breaks, strips tags, decodes entities */
+    public static String htmlToText(String html) {
+        String text = html
+                .replaceAll("(?is)<(script|style|head)[^>]*>.*?</\\1>", "")
+                .replaceAll("(?i)<br\\s*/?>", "\n")
+                .replaceAll("(?i)</(p|div|li|tr|h[1-6])>", "\n")
+                .replaceAll("(?s)<[^>]*>", "");
+
+        StringBuilder out = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int semi = (c == '&') ? text.indexOf(';', i) : -1;
+            if (semi > i && semi - i <= 10) {
+                String entity = text.substring(i + 1, semi);
+                String decoded = decodeEntity(entity);
+                if (decoded != null) {
+                    out.append(decoded);
+                    i = semi + 1;
+                    continue;
+                }
+            }
+            out.append(c);
+            i++;
+        }
+
+        // Collapse the blank-line runs left behind by removed markup
+        return out.toString().replaceAll("[ \\t\\x0B\\f\\r]+\\n", "\n").replaceAll("\\n{3,}", "\n\n").trim();
+    }
+
+    private static String decodeEntity(String entity) {
+        switch (entity) {
+            case "amp": return "&";
+            case "lt": return "<";
+            case "gt": return ">";
+            case "quot": return "\"";
+            case "apos": return "'";
+            case "nbsp": return " ";
+        }
+        try {
+            if (entity.startsWith("#x") || entity.startsWith("#X"))
+                return new String(Character.toChars(Integer.parseInt(entity.substring(2), 16)));
+            if (entity.startsWith("#"))
+                return new String(Character.toChars(Integer.parseInt(entity.substring(1))));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return null;
+    }
+
+    // charset parameter of the part's Content-Type header, UTF-8 if missing or unknown
+    private static Charset charsetOf(MessagePart part) {
+        if (part.getHeaders() != null) {
+            for (MessagePartHeader header : part.getHeaders()) {
+                if (!"Content-Type".equalsIgnoreCase(header.getName()) || header.getValue() == null)
+                    continue;
+
+                for (String param : header.getValue().split(";")) {
+                    String p = param.trim();
+                    if (p.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                        String name = p.substring(8).replace("\"", "").trim();
+                        try {
+                            return Charset.forName(name);
+                        } catch (IllegalArgumentException e) {
+                            return StandardCharsets.UTF_8;
+                        }
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String safeFilename(String filename) {
+        String name = filename.replaceAll("[\\\\/:*?\"<>|\\x00-\\x1F]", "_");
+        return name.isBlank() || name.equals(".") || name.equals("..") ? "attachment" : name;
+    }
+
+    /*
+     * Finds a top-level string field in a JSON object stream and returns its value as a stream,
+     * so a multi-megabyte "data" field is never materialized as a String.
+     * Only suitable for values without escape sequences, which holds for Base64URL.
+     */
+    private static InputStream jsonStringField(InputStream json, String field) throws IOException {
+        int depth = 0;
+        int c;
+        while ((c = json.read()) != -1) {
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            } else if (c == '"') {
+                String token = readJsonString(json);
+                if (depth != 1)
+                    continue;
+
+                // A string followed by ':' is a key
+                int next = skipWhitespace(json);
+                if (next != ':')
+                    continue;
+                next = skipWhitespace(json);
+                if (token.equals(field) && next == '"')
+                    return new StringValueStream(json);
+                if (next == '"')
+                    readJsonString(json);   // some other string value
+                else if (next == '{' || next == '[')
+                    depth++;
+            }
+        }
+        throw new IOException("Field \"" + field + "\" not found in response");
+    }
+
+    // Reads the rest of a short JSON string (after the opening quote)
+    private static String readJsonString(InputStream json) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = json.read()) != -1 && c != '"') {
+            if (c == '\\')
+                c = json.read();
+            if (sb.length() < 256)
+                sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static int skipWhitespace(InputStream json) throws IOException {
+        int c;
+        do {
+            c = json.read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    /* Bytes of a JSON string value up to (not including) its closing quote */
+    private static final class StringValueStream extends InputStream {
+        private final InputStream in;
+        private boolean done;
+
+        StringValueStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (done)
+                return -1;
+            int c = in.read();
+            if (c == '"' || c == -1) {
+                done = true;
+                return -1;
+            }
+            return c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done)
+                return -1;
+            int n = 0;
+            while (n < len) {
+                int c = read();
+                if (c == -1)
+                    break;
+                b[off + n++] = (byte) c;
+            }
+            return (n == 0) ? -1 : n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /* ASCII bytes of a String without copying it into a byte array first */
+    private static final class CharSequenceInputStream extends InputStream {
+        private final CharSequence chars;
+        private int pos;
+
+        CharSequenceInputStream(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read() {
+            return (pos < chars.length()) ? chars.charAt(pos++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos >= chars.length())
+                return -1;
+            int n = Math.min(len, chars.length() - pos);
+            for (int i = 0; i < n; i++)
+                b[off + i] = (byte) chars.charAt(pos++);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Base for transports that answer Gmail, Calendar and Sheets calls without the network (fixture replay and
+ * synthetic accounts). Every request first waits the configured latency and may be failed with a 429 or 503, so
+ * the quota, retry and metrics layers in ApiExecutor run exactly as they do against the real APIs.
+ */
+public abstract class OfflineTransport extends HttpTransport {
+
+    static final JsonFactory JSON = GsonFactory.getDefaultInstance();
+
+    /* Latency of every request (base plus uniform jitter) and the share of requests failed with 429 or 503 */
+    public record Faults(long latencyMillis, long jitterMillis, double errorRate) {
+        public static final Faults NONE = new Faults(0, 0, 0);
+
+        public Faults {
+            if (latencyMillis < 0 || jitterMillis < 0)
+                throw new IllegalArgumentException("Latency must not be negative");
+            if (errorRate < 0 || errorRate > 1)
+                throw new IllegalArgumentException("Error rate must be between 0 and 1: " + errorRate);
+        }
+
+        /* latency is "MS" or "MS+JITTER" (either may be null for none), errorRate a fraction such as "0.02" */
+        public static Faults parse(String latency, String errorRate) {
+            long base = 0;
+            long jitter = 0;
+            if (latency != null) {
+                String[] parts = latency.split("\\+", 2);
+                base = Long.parseLong(parts[0].trim());
+                jitter = (parts.length > 1) ? Long.parseLong(parts[1].trim()) : 0;
+            }
+            return new Faults(base, jitter, (errorRate == null) ? 0 : Double.parseDouble(errorRate));
+        }
+    }
+
+    private final Faults faults;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injected = new LongAdder();
+
+    protected OfflineTransport(Faults faults) {
+        this.faults = faults;
+    }
+
+    /* Answers one request; body is the decoded request content ("" when there is none) */
+    protected abstract MockLowLevelHttpResponse respond(String method, GenericUrl url, String contentType, String body)
+            throws IOException;
+
+    /* Stand-in credential for offline runs: sends a fixed bearer token and never refreshes or asks for consent */
+    public static Credential credential() {
+        return new Credential(BearerToken.authorizationHeaderAccessMethod()).setAccessToken("offline");
+    }
+
+    public String stats() {
+        return getClass().getSimpleName() + " requests: " + requests.sum() + " | injected errors: " + injected.sum()
+                + " | " + faults;
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildRequest(String method, String url) {
+        return new MockLowLevelHttpRequest(url) {
+            @Override
+            public LowLevelHttpResponse execute() throws IOException {
+                return OfflineTransport.this.execute(method, url, this);
+            }
+        };
+    }
+
+    private LowLevelHttpResponse execute(String method, String url, MockLowLevelHttpRequest request) throws IOException {
+        requests.increment();
+
+        long delay = faults.latencyMillis()
+                + ((faults.jitterMillis() > 0) ? ThreadLocalRandom.current().nextLong(faults.jitterMillis() + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted during simulated latency");
+            }
+        }
+
+        // Batch envelopes are never failed as a whole; SyntheticTransport fails their parts one by one instead
+        GenericUrl parsed = new GenericUrl(url);
+        if (!isBatch(parsed) && injectFault())
+            return injectedError();
+
+        try {
+            return respond(method, parsed, request.getContentType(), request.getContentAsString());
+        } catch (IllegalArgumentException e) {
+            // Malformed request (bad range, unparsable body, ...): answered the way the API would, not thrown
+            return error(400, "badRequest", e.getMessage());
+        }
+    }
+
+    static boolean isBatch(GenericUrl url) {
+        String path = url.getRawPath();
+        return path.equals("/batch") || path.startsWith("/batch/");
+    }
+
+    /* True for the configured share of calls; batch transports also ask once per part */
+    protected boolean injectFault() {
+        if (faults.errorRate() <= 0 || ThreadLocalRandom.current().nextDouble() >= faults.errorRate())
+            return false;
+        injected.increment();
+        return true;
+    }
+
+    // Half rate-limit, half backend errors, as both are retried but only 429 usually carries Retry-After
+    static MockLowLevelHttpResponse injectedError() {
+        return ThreadLocalRandom.current().nextBoolean()
+                ? error(429, "rateLimitExceeded", "Injected rate limit")
+                : error(503, "backendError", "Injected backend error");
+    }
+
+    static MockLowLevelHttpResponse ok(Object model) throws IOException {
+        return json(200, JSON.toString(model));
+    }
+
+    static MockLowLevelHttpResponse json(int status, String json) {
+        return new MockLowLevelHttpResponse()
+                .setStatusCode(status)
+                .setContentType("application/json; charset=UTF-8")
+                .setContent(json);
+    }
+
+    static MockLowLevelHttpResponse noContent() {
+        return new MockLowLevelHttpResponse().setStatusCode(204).setZeroContent();
+    }
+
+    static MockLowLevelHttpResponse notFound(String what) {
+        return error(404, "notFound", "Not found: " + what);
+    }
+
+    /* Error body in the Google JSON error format, so GoogleJsonResponseException.getDetails() works as live */
+    static MockLowLevelHttpResponse error(int status, String reason, String message) {
+        Map<String, Object> detail = new LinkedHashMap<>();
+        detail.put("domain", "global");
+        detail.put("reason", reason);
+        detail.put("message", message);
+
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", status);
+        error.put("message", message);
+        error.put("errors", List.of(detail));
+
+        try {
+            return json(status, JSON.toString(Map.of("error", error)));
+        } catch (IOException e) {
+            return json(status, "{\"error\":{\"code\":" + status + "}}");
+        }
+    }
+
+    /* Parses a JSON request body into an API model class */
+    static <T> T parse(String body, Class<T> type) {
+        try {
+            return JSON.fromString(body, type);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid JSON payload for " + type.getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import com.google.api.services.gmail.model.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Properties;
+
+/* Builds threaded reply messages ready for messages().send */
+public class ReplyComposer {
+
+    // One minimal mail session (no server needed) shared by every reply; Session is thread-safe
+    private static final Session SESSION = Session.getInstance(new Properties());
+
+    /**
+     * Builds a plain-text reply in the original thread.
+     *
+     * @param threadId          Gmail thread to reply in.
+     * @param to                Address of the original sender.
+     * @param subject           Original subject; "Re: " is added if missing.
+     * @param originalMessageID Message-ID header of the message being answered, or null.
+     * @param references        References header of the message being answered, or null.
+     * @param replyBody         Plain-text body.
+     */
+    public static Message composeReply(String threadId, String to, String subject, String originalMessageID,
+                                       String references, String replyBody) throws MessagingException, IOException {
+        MimeMessage email = new MimeMessage(SESSION);
+        email.setFrom(new InternetAddress("me"));           // "me" = authenticated user
+        email.addRecipient(jakarta.mail.Message.RecipientType.TO, new InternetAddress(to));
+
+        if (!subject.toLowerCase().startsWith("re:"))
+            subject = "Re: " + subject;
+
+        email.setSubject(subject);
+        email.setText(replyBody);                            // plain-text body
+
+        // Without the original Message-ID Gmail still threads the reply by threadId
+        if (originalMessageID != null && !originalMessageID.isEmpty()) {
+            email.setHeader("In-Reply-To", originalMessageID);
+            email.setHeader("References", (references == null || references.isEmpty())
+                    ? originalMessageID
+                    : references + " " + originalMessageID);
+        }
+
+        // Serialize straight through a Base64URL encoder into a buffer sized for the encoded output
+        int estimatedSize = (replyBody.length() + subject.length() + 1024) * 4 / 3;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(estimatedSize);
+        try (OutputStream encoder = Base64.getUrlEncoder().wrap(buffer)) {
+            email.writeTo(encoder);
+        }
+
+        Message message = new Message();
+        message.setRaw(buffer.toString(StandardCharsets.US_ASCII));
+        message.setThreadId(threadId);
+        return message;
+    }
+}
@@ -0,0 +1,225 @@
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.sheets.v4.Sheets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Process-wide copy of the roster tab (Sheet1!A:E) of the open spreadsheet.
+ *
+ * Before cached rows are handed out, the spreadsheet's Drive file version is fetched (one small metadata call
+ * instead of the whole range); the rows are downloaded again only when that version has moved. Writes made through
+ * SheetsBot are applied to the cached rows, and the version seen right after them is adopted, so our own changes
+ * do not force a reload. That is only done when the version seen right before the write (versionBeforeWrite) was
+ * still the cached one; if someone else had changed the sheet meanwhile, the cache is dropped instead. Without a Drive client, or when Drive refuses the request, every read downloads the range.
+ * A RosterIndex over the cached rows is built on the first search after each download and kept in step with our writes.
+ */
+public class RosterCache {
+
+    static final String ROSTER_RANGE = "Sheet1!A:E";
+
+    private static Drive drive;
+
+    private static String spreadsheetId;        // spreadsheet the cached rows belong to; null when empty
+    private static List<List<Object>> rows;     // header first, as values.get returns them
+    private static List<List<Object>> published;   // immutable copy of rows handed to readers; null after a change
+    private static Long version;                // Drive version the rows were read at; null when unknown
+    private static RosterIndex index;           // over the cached rows; null until the first search
+
+    private static int loads;
+    private static int hits;
+
+    /* Drive client used for the version checks (GoogleServices.drive()) */
+    public static synchronized void useDrive(Drive driveService) {
+        drive = driveService;
+    }
+
+    /**
+     * Every row of the roster tab, header included; empty if the tab is empty. The list is an immutable snapshot.
+     * Downloads the range only on first use, after a switch to another spreadsheet, or when the sheet has changed.
+     */
+    public static synchronized List<List<Object>> rows(Sheets service, String id) throws IOException {
+        // Version first: an edit landing between the two calls shows up as a newer version on the next check
+        Long seen = currentVersion(id);
+        if (seen != null && seen.equals(version) && id.equals(spreadsheetId) && rows != null) {
+            hits++;
+            return published();
+        }
+
+        List<List<Object>> values = service.spreadsheets().values().get(id, ROSTER_RANGE).execute().getValues();
+
+        spreadsheetId = id;
+        rows = (values == null) ? new ArrayList<>() : new ArrayList<>(values);
+        version = seen;
+        index = null;
+        published = null;
+        loads++;
+        return published();
+    }
+
+    /**
+     * Drive version of the spreadsheet right before one of our writes, to hand to the record call made after it.
+     *
+     * @return The version, or null when nothing version-checked is cached for the id (no call is made then).
+     */
+    public static synchronized Long versionBeforeWrite(String id) throws IOException {
+        if (!id.equals(spreadsheetId) || rows == null || version == null)
+            return null;
+        return currentVersion(id);
+    }
+
+    /* Records cells we just wrote (1-based sheet row, 0-based column) so the cached rows match the sheet */
+    public static synchronized void recordWrite(String id, Long versionBefore, int rowNumber, int firstColumn,
+                                                List<Object> cells) throws IOException {
+        recordRows(id, versionBefore, rowNumber, firstColumn, List.of(cells));
+    }
+
+    /* Records a block of rows we just wrote, starting at a 1-based sheet row; one version check for the whole block */
+    public static synchronized void recordRows(String id, Long versionBefore, int firstRowNumber, int firstColumn,
+                                               List<List<Object>> block) throws IOException {
+        if (!id.equals(spreadsheetId) || rows == null)
+            return;
+
+        for (int i = 0; i < block.size(); i++)
+            patch(firstRowNumber + i, firstColumn, block.get(i));
+        adoptVersionAfterWrite(id, versionBefore);
+    }
+
+    /* Records a write outside the roster tab (the Report tab): the cached rows stay valid, only the version moves */
+    public static synchronized void recordOtherWrite(String id, Long versionBefore) throws IOException {
+        if (id.equals(spreadsheetId) && rows != null)
+            adoptVersionAfterWrite(id, versionBefore);
+    }
+
+    /* Shows cells that are queued but not written yet (GradeWriteQueue); the version is left alone until the flush */
+    public static synchronized void applyPending(String id, int rowNumber, int firstColumn, List<Object> cells) {
+        if (id.equals(spreadsheetId) && rows != null)
+            patch(rowNumber, firstColumn, cells);
+    }
+
+    /* Records queued cells once they are written (again, in case the rows were downloaded since) and adopts the version */
+    public static synchronized void recordFlush(String id, Long versionBefore, int firstColumn,
+                                                Map<Integer, List<Object>> cellsByRow) throws IOException {
+        if (!id.equals(spreadsheetId) || rows == null)
+            return;
+
+        for (Map.Entry<Integer, List<Object>> e : cellsByRow.entrySet())
+            patch(e.getKey(), firstColumn, e.getValue());
+        adoptVersionAfterWrite(id, versionBefore);
+    }
+
+    /*
+     * The version after our write covers only our change if the one before it was still ours; otherwise someone
+     * else's edit is in there too, and adopting it would hide that edit. (An edit landing between our write and
+     * this check is still missed, until the next change moves the version.) If Drive has not caught up with our
+     * write yet, the rows are simply downloaded once more when it does.
+     */
+    private static void adoptVersionAfterWrite(String id, Long versionBefore) throws IOException {
+        if (version == null)
+            return;   // not version-checked: every read downloads anyway
+        if (versionBefore != null && versionBefore.equals(version))
+            version = currentVersion(id);
+        else
+            invalidate();
+    }
+
+    /* The cached rows as they are, without a version check; downloads them only if nothing is cached for the id */
+    public static synchronized List<List<Object>> snapshot(Sheets service, String id) throws IOException {
+        if (id.equals(spreadsheetId) && rows != null)
+            return published();
+        return rows(service, id);
+    }
+
+    private static void patch(int rowNumber, int firstColumn, List<Object> cells) {
+        while (rows.size() < rowNumber)
+            rows.add(new ArrayList<>());
+        List<Object> row = new ArrayList<>(rows.get(rowNumber - 1));
+        while (row.size() < firstColumn + cells.size())
+            row.add("");
+        for (int i = 0; i < cells.size(); i++)
+            row.set(firstColumn + i, String.valueOf(cells.get(i)));   // values.get returns formatted strings
+        rows.set(rowNumber - 1, row);
+        published = null;
+        if (index != null)
+            index.update(rowNumber, row);
+    }
+
+    /* Forgets the cached rows; the next read downloads the range again */
+    public static synchronized void invalidate() {
+        spreadsheetId = null;
+        rows = null;
+        published = null;
+        version = null;
+        index = null;
+    }
+
+    // Readers get a copy that never changes under them (script workers read while writes patch the rows); it is
+    // made at most once per change, on the first read after it
+    private static List<List<Object>> published() {
+        if (published == null)
+            published = List.copyOf(rows);
+        return published;
+    }
+
+    /* Rows whose name contains the query (case-insensitive), each prefixed with its sheet row number */
+    public static synchronized List<List<Object>> findByName(Sheets service, String id, String query) throws IOException {
+        List<List<Object>> current = rows(service, id);
+        List<List<Object>> matches = new ArrayList<>();
+        for (int rowNumber : index(current).findByName(query)) {
+            List<Object> row = new ArrayList<>(current.get(rowNumber - 1));
+            row.add(0, rowNumber);
+            matches.add(row);
+        }
+        return matches;
+    }
+
+    /* Sheet row number of the student with this ID, or -1 */
+    public static synchronized int rowOfStudent(Sheets service, String id, String studentId) throws IOException {
+        return index(rows(service, id)).findById(studentId);
+    }
+
+    /*
+     * Like rowOfStudent, but a hit comes from the cached rows without a version check (downloads only if nothing is
+     * cached). A miss may just mean the student was added elsewhere, so it is looked up once more in the current sheet.
+     */
+    public static synchronized int cachedRowOfStudent(Sheets service, String id, String studentId) throws IOException {
+        int rowNumber = index(snapshot(service, id)).findById(studentId);
+        return (rowNumber >= 0) ? rowNumber : rowOfStudent(service, id, studentId);
+    }
+
+    /* Student ID cell of a 1-based sheet row in the cached rows (no version check), or null if the row has none */
+    public static synchronized String cachedStudentId(Sheets service, String id, int rowNumber) throws IOException {
+        List<List<Object>> current = (id.equals(spreadsheetId) && rows != null) ? rows : rows(service, id);
+        if (rowNumber < 1 || rowNumber > current.size())
+            return null;
+        List<Object> row = current.get(rowNumber - 1);
+        if (row.size() < 2 || row.get(1) == null || row.get(1).toString().isBlank())
+            return null;
+        return row.get(1).toString().trim();
+    }
+
+    private static RosterIndex index(List<List<Object>> current) {
+        if (index == null)
+            index = new RosterIndex(current);
+        return index;
+    }
+
+    public static synchronized String summary() {
+        return "Roster cache: " + loads + " download(s), " + hits + " hit(s)"
+                + ((drive == null) ? " (no Drive client, every read downloads)" : "");
+    }
+
+    private static Long currentVersion(String id) throws IOException {
+        if (drive == null)
+            return null;
+        try {
+            return drive.files().get(id).setFields("version").execute().getVersion();
+        } catch (GoogleJsonResponseException e) {
+            // 403 (token without the Drive scope) or 404 (not visible through Drive): fall back to downloading
+            return null;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.AppendValuesResponse;
+import com.google.api.services.sheets.v4.model.ValueRange;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Bulk roster import: streams a CSV file (Name, Student ID, Grade, Score, Notes) into the roster tab.
+ *
+ * Rows are validated as they are read and written in chunks of up to chunkRows rows, one values.append call per
+ * chunk, so only one chunk is ever held in memory and the number of API calls grows with the chunks, not the rows.
+ * After every chunk the position in the file is saved to <csv>.progress; running the same import again after a
+ * failure resumes after the last chunk that was written, and the progress file is removed once the import finishes.
+ *
+ * A header line is optional: if a cell of the first line is "Name", columns are matched by header name (in any
+ * order, "ID" accepted for "Student ID"), otherwise they are taken in the order above. Quoted fields (with "" for a quote, and line breaks inside quotes) are supported.
+ * Rows without a name or ID, with a score that is not a whole number, or with an ID that is already on the sheet
+ * (or earlier in the file) are skipped and reported; the last check also keeps a resumed import from writing a chunk
+ * twice. Cells are written RAW, exactly as they are in the file: an ID like "00123" keeps its zeros and a name
+ * starting with "=" is not taken for a formula. Scores are sent as numbers.
+ */
+public class RosterImporter {
+
+    public static final int DEFAULT_CHUNK_ROWS = 5_000;     // ~0.5 MB per request for typical rows
+
+    private static final int MAX_REPORTED_PROBLEMS = 20;
+    private static final String[] COLUMNS = {"name", "student id", "grade", "score", "notes"};
+    private static final Pattern FIRST_ROW = Pattern.compile("![A-Z]+(\\d+)");   // "Sheet1!A42:E5041" -> 42
+
+    /* Outcome of one import run; rows counts are for this run plus any run it resumed */
+    public record Result(int imported, int rejected, int duplicates, int chunks, boolean resumed) {
+    }
+
+    /**
+     * Imports the file into the roster tab of the spreadsheet, resuming an earlier run of the same import.
+     *
+     * @throws IOException When the file cannot be read or a chunk cannot be written (after the API retries);
+     *                     the progress file then points at the first chunk that was not written.
+     */
+    public static Result importCsv(Sheets service, String spreadsheetId, Path csv, int chunkRows) throws IOException {
+        if (chunkRows < 1)
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkRows);
+
+        Path progressFile = csv.resolveSibling(csv.getFileName() + ".progress");
+        Progress progress = Progress.load(progressFile, spreadsheetId, csv);
+        boolean resumed = progress.records > 0;
+        if (resumed)
+            System.out.println("Resuming import after record " + progress.records + " (" + progress.imported
+                    + " row(s) already written in " + progress.chunks + " chunk(s))");
+
+        // Every ID on the sheet (including rows written before a failure) plus the ones read from the file so far
+        Set<String> seenIds = new HashSet<>();
+        List<List<Object>> roster = RosterCache.rows(service, spreadsheetId);
+        for (int i = 1; i < roster.size(); i++)
+            seenIds.add(SheetsBot.getCellValue(roster.get(i), 1).trim());
+
+        int reported = 0;
+        long started = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            CsvReader in = new CsvReader(reader);
+            int[] columns = {0, 1, 2, 3, 4};
+
+            List<String> record = in.next();
+            if (record != null && isHeader(record)) {
+                columns = headerColumns(record);
+                record = in.next();
+            }
+
+            // Records before the saved position were handled by an earlier run
+            for (int skipped = 0; record != null && skipped < progress.records; skipped++)
+                record = in.next();
+
+            List<List<Object>> chunk = new ArrayList<>(Math.min(chunkRows, 10_000));
+            int chunkRecords = 0;    // records read for the current chunk, written or not
+            int chunkRejected = 0;
+            int chunkDuplicates = 0;
+
+            for (; record != null; record = in.next()) {
+                chunkRecords++;
+                String name = cell(record, columns[0]);
+                String id = cell(record, columns[1]);
+                String grade = cell(record, columns[2]).toUpperCase(Locale.ROOT);
+                String score = cell(record, columns[3]);
+                String notes = cell(record, columns[4]);
+                Integer scoreValue = score.isEmpty() ? null : parseScore(score);
+
+                String problem = null;
+                boolean duplicate = false;
+                if (name.isEmpty() || id.isEmpty()) {
+                    problem = "missing " + (name.isEmpty() ? "name" : "student ID");
+                } else if (!score.isEmpty() && scoreValue == null) {
+                    problem = "score \"" + score + "\" is not a whole number";
+                } else if (!seenIds.add(id)) {
+                    problem = "student ID " + id + " is already on the sheet or earlier in the file";
+                    duplicate = true;
+                }
+
+                if (problem != null) {
+                    if (duplicate)
+                        chunkDuplicates++;
+                    else
+                        chunkRejected++;
+                    if (reported++ < MAX_REPORTED_PROBLEMS)
+                        System.out.println("Line " + in.recordLine() + ": skipped, " + problem);
+                    continue;
+                }
+
+                chunk.add(List.of(name, id, grade, (scoreValue == null) ? "" : scoreValue, notes));
+                if (chunk.size() == chunkRows) {
+                    writeChunk(service, spreadsheetId, chunk, progress, chunkRecords, chunkRejected, chunkDuplicates,
+                            progressFile, started);
+                    chunk.clear();
+                    chunkRecords = chunkRejected = chunkDuplicates = 0;
+                }
+            }
+
+            if (!chunk.isEmpty() || chunkRecords > 0)
+                writeChunk(service, spreadsheetId, chunk, progress, chunkRecords, chunkRejected, chunkDuplicates,
+                        progressFile, started);
+        }
+
+        if (reported > MAX_REPORTED_PROBLEMS)
+            System.out.println("... and " + (reported - MAX_REPORTED_PROBLEMS) + " more skipped row(s)");
+        Files.deleteIfExists(progressFile);
+        return new Result(progress.imported, progress.rejected, progress.duplicates, progress.chunks, resumed);
+    }
+
+    // Appends one chunk, then records it in the cache and the progress file (in that order, so a crash between
+    // the append and the save is caught by the duplicate-ID check on resume)
+    private static void writeChunk(Sheets service, String spreadsheetId, List<List<Object>> chunk, Progress progress,
+                                   int records, int rejected, int duplicates, Path progressFile, long started)
+            throws IOException {
+        if (!chunk.isEmpty()) {
+            Long versionBefore = RosterCache.versionBeforeWrite(spreadsheetId);
+            AppendValuesResponse response = service.spreadsheets().values()
+                    .append(spreadsheetId, RosterCache.ROSTER_RANGE, new ValueRange().setValues(chunk))
+                    .setValueInputOption("RAW")
+                    .setInsertDataOption("INSERT_ROWS")
+                    .execute();
+
+            String updatedRange = response.getUpdates().getUpdatedRange();
+            Matcher firstRow = FIRST_ROW.matcher(updatedRange);
+            if (firstRow.find())
+                RosterCache.recordRows(spreadsheetId, versionBefore, Integer.parseInt(firstRow.group(1)), 0, chunk);
+            else
+                RosterCache.invalidate();
+            progress.chunks++;
+        }
+
+        progress.records += records;
+        progress.imported += chunk.size();
+        progress.rejected += rejected;
+        progress.duplicates += duplicates;
+        progress.save(progressFile);
+
+        System.out.printf("Chunk %d: %d row(s) written | %d imported, %d skipped so far | %.1f s%n", progress.chunks,
+                chunk.size(), progress.imported, progress.rejected + progress.duplicates,
+                (System.nanoTime() - started) / 1e9);
+    }
+
+    private static boolean isHeader(List<String> record) {
+        for (String cell : record) {
+            if (cell.trim().equalsIgnoreCase("name"))
+                return true;
+        }
+        return false;
+    }
+
+    private static int[] headerColumns(List<String> header) throws IOException {
+        int[] columns = {-1, -1, -1, -1, -1};
+        for (int i = 0; i < header.size(); i++) {
+            String title = header.get(i).trim().toLowerCase(Locale.ROOT);
+            if (title.equals("id"))
+                title = "student id";
+            for (int c = 0; c < COLUMNS.length; c++) {
+                if (COLUMNS[c].equals(title) && columns[c] < 0)
+                    columns[c] = i;
+            }
+        }
+        if (columns[0] < 0 || columns[1] < 0)
+            throw new IOException("CSV header needs \"Name\" and \"Student ID\" columns: " + header);
+        return columns;
+    }
+
+    private static String cell(List<String> record, int column) {
+        return (column < 0 || column >= record.size()) ? "" : record.get(column).trim();
+    }
+
+    // Whole numbers only, as the report reads them (ScoreStats.addCell): no NaN, Infinity, 1e9 or 85.5
+    static Integer parseScore(String s) {
+        try {
+            return Integer.valueOf(s.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /* Position of an import in its CSV file, saved after every chunk */
+    private static final class Progress {
+        final String spreadsheetId;
+        final long fileSize;
+        final long fileModified;
+        int records;           // CSV records (after the header) already handled
+        int imported;
+        int rejected;
+        int duplicates;
+        int chunks;
+
+        private Progress(String spreadsheetId, long fileSize, long fileModified) {
+            this.spreadsheetId = spreadsheetId;
+            this.fileSize = fileSize;
+            this.fileModified = fileModified;
+        }
+
+        // A progress file for another spreadsheet or an edited CSV is ignored: the import starts over
+        static Progress load(Path file, String spreadsheetId, Path csv) throws IOException {
+            Progress fresh = new Progress(spreadsheetId, Files.size(csv), Files.getLastModifiedTime(csv).toMillis());
+            if (!Files.exists(file))
+                return fresh;
+
+            Properties saved = new Properties();
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                saved.load(in);
+            }
+            try {
+                if (!spreadsheetId.equals(saved.getProperty("spreadsheet"))
+                        || fresh.fileSize != Long.parseLong(saved.getProperty("fileSize"))
+                        || fresh.fileModified != Long.parseLong(saved.getProperty("fileModified"))) {
+                    System.out.println("Ignoring " + file.getFileName() + ": it belongs to another spreadsheet or an older version of the file");
+                    return fresh;
+                }
+                fresh.records = Integer.parseInt(saved.getProperty("records"));
+                fresh.imported = Integer.parseInt(saved.getProperty("imported"));
+                fresh.rejected = Integer.parseInt(saved.getProperty("rejected"));
+                fresh.duplicates = Integer.parseInt(saved.getProperty("duplicates"));
+                fresh.chunks = Integer.parseInt(saved.getProperty("chunks"));
+            } catch (RuntimeException e) {
+                System.out.println("Ignoring unreadable " + file.getFileName());
+                return new Progress(spreadsheetId, fresh.fileSize, fresh.fileModified);
+            }
+            return fresh;
+        }
+
+        // Written to a temporary file and moved into place, so a crash never leaves half a progress file
+        void save(Path file) throws IOException {
+            Properties p = new Properties();
+            p.setProperty("spreadsheet", spreadsheetId);
+            p.setProperty("fileSize", Long.toString(fileSize));
+            p.setProperty("fileModified", Long.toString(fileModified));
+            p.setProperty("records", Integer.toString(records));
+            p.setProperty("imported", Integer.toString(imported));
+            p.setProperty("rejected", Integer.toString(rejected));
+            p.setProperty("duplicates", Integer.toString(duplicates));
+            p.setProperty("chunks", Integer.toString(chunks));
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                p.store(out, "Roster import progress; delete to start the import over");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /* Minimal RFC 4180 reader: comma-separated, optional double quotes, "" inside quotes, line breaks inside quotes */
+    private static final class CsvReader {
+        private final BufferedReader in;
+        private int line;           // lines read so far
+        private int recordLine;     // line the last record started on
+
+        CsvReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        int recordLine() {
+            return recordLine;
+        }
+
+        /* Next non-blank record, or null at the end of the file */
+        List<String> next() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                if (text == null)
+                    return null;
+                line++;
+                if (line == 1 && text.startsWith("\uFEFF"))
+                    text = text.substring(1);   // byte order mark
+            } while (text.isBlank());
+            recordLine = line;
+
+            List<String> fields = new ArrayList<>(5);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == text.length()) {
+                    if (!quoted)
+                        break;
+                    // Line break inside a quoted field: the record continues on the next line
+                    String more = in.readLine();
+                    if (more == null)
+                        throw new IOException("Line " + recordLine + ": unterminated quoted field");
+                    line++;
+                    field.append('\n');
+                    text = more;
+                    i = 0;
+                    continue;
+                }
+
+                char c = text.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < text.length() && text.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+ * In-memory indexes over the roster tab: a trigram index for case-insensitive substring search on Name and a hash
+ * index on Student ID. Rows are identified by their sheet row number (row 1 is the header and is not indexed).
+ *
+ * Each trigram of a case-folded name is packed into a long (three UTF-16 chars) and maps to a sorted array of row
+ * numbers. A query looks up its rarest trigram and checks only those rows, so a lookup touches a few hundred
+ * candidates instead of every row and allocates nothing but the result. Queries shorter than three characters
+ * fall back to a scan over the pre-folded names, which still allocates nothing per row.
+ *
+ * Updates are incremental: a row whose folded name and ID did not change (a grade edit) costs two string compares,
+ * and a changed name or ID only touches its own trigram lists or its ID's row list.
+ */
+public class RosterIndex {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private String[] names = new String[16];                     // case-folded Name by sheet row; null if absent
+    private String[] ids = new String[16];                       // Student ID by sheet row; null if absent
+    private int rowLimit = 2;                                    // one past the highest row number seen
+    private final Map<String, int[]> rowsById = new HashMap<>();   // ascending rows per ID; usually just one
+    private final TrigramTable trigrams = new TrigramTable();
+    private int[] scratch = new int[256];                        // matches before they are copied out
+
+    /* Indexes the rows as values.get returns them: header first, then one list per sheet row */
+    public RosterIndex(List<List<Object>> rows) {
+        for (int i = 1; i < rows.size(); i++)
+            update(i + 1, rows.get(i));
+    }
+
+    /* Re-indexes one sheet row after it was added or changed; a null or empty row removes it */
+    public synchronized void update(int rowNumber, List<Object> row) {
+        if (rowNumber < 2)
+            return;   // header
+        ensureCapacity(rowNumber);
+
+        String name = (row == null || row.isEmpty()) ? null : fold(cell(row, 0));
+        String id = (row == null || row.isEmpty()) ? null : cell(row, 1);
+        if (id != null && id.isEmpty())
+            id = null;
+
+        String oldName = names[rowNumber];
+        if (!Objects.equals(name, oldName)) {
+            if (oldName != null)
+                forEachTrigram(oldName, key -> trigrams.remove(key, rowNumber));
+            if (name != null)
+                forEachTrigram(name, key -> trigrams.add(key, rowNumber));
+            names[rowNumber] = name;
+        }
+
+        String oldId = ids[rowNumber];
+        if (!Objects.equals(id, oldId)) {
+            if (oldId != null)
+                removeIdRow(oldId, rowNumber);
+            if (id != null)
+                addIdRow(id, rowNumber);
+            ids[rowNumber] = id;
+        }
+
+        if (name != null || id != null)
+            rowLimit = Math.max(rowLimit, rowNumber + 1);
+    }
+
+    /* Sheet row numbers, ascending, of the rows whose name contains the query (case-insensitive) */
+    public synchronized int[] findByName(String query) {
+        String q = fold(query);
+        if (q.length() < 3)
+            return scan(q);
+
+        // The rarest trigram of the query bounds the candidates; each one is then checked against the whole query
+        int best = -1;
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            int slot = trigrams.find(key(q.charAt(i), q.charAt(i + 1), q.charAt(i + 2)));
+            if (slot < 0)
+                return NO_ROWS;
+            if (best < 0 || trigrams.sizes[slot] < trigrams.sizes[best])
+                best = slot;
+        }
+
+        int[] candidates = trigrams.rows[best];
+        int count = trigrams.sizes[best];
+        if (scratch.length < count)
+            scratch = new int[Math.max(count, scratch.length * 2)];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int row = candidates[i];
+            if (names[row].contains(q))
+                scratch[found++] = row;
+        }
+        return Arrays.copyOf(scratch, found);
+    }
+
+    /* Sheet row number of the student with this ID, or -1 */
+    public synchronized int findById(String studentId) {
+        int[] rows = rowsById.get(studentId.trim());
+        return (rows == null) ? -1 : rows[0];   // duplicate IDs: the topmost row wins
+    }
+
+    /* Number of indexed student rows */
+    public synchronized int size() {
+        int size = 0;
+        for (int row = 2; row < rowLimit; row++) {
+            if (names[row] != null)
+                size++;
+        }
+        return size;
+    }
+
+    private int[] scan(String q) {
+        if (scratch.length < rowLimit)
+            scratch = new int[rowLimit];
+        int found = 0;
+        for (int row = 2; row < rowLimit; row++) {
+            if (names[row] != null && names[row].contains(q))
+                scratch[found++] = row;
+        }
+        return Arrays.copyOf(scratch, found);
+    }
+
+    private void addIdRow(String id, int rowNumber) {
+        int[] rows = rowsById.get(id);
+        if (rows == null) {
+            rowsById.put(id, new int[]{rowNumber});
+            return;
+        }
+        int at = -Arrays.binarySearch(rows, rowNumber) - 1;
+        int[] grown = new int[rows.length + 1];
+        System.arraycopy(rows, 0, grown, 0, at);
+        grown[at] = rowNumber;
+        System.arraycopy(rows, at, grown, at + 1, rows.length - at);
+        rowsById.put(id, grown);
+    }
+
+    // The ID moved away from this row; any other row carrying it stays findable
+    private void removeIdRow(String id, int rowNumber) {
+        int[] rows = rowsById.get(id);
+        int at = (rows == null) ? -1 : Arrays.binarySearch(rows, rowNumber);
+        if (at < 0)
+            return;
+        if (rows.length == 1) {
+            rowsById.remove(id);
+            return;
+        }
+        int[] shrunk = new int[rows.length - 1];
+        System.arraycopy(rows, 0, shrunk, 0, at);
+        System.arraycopy(rows, at + 1, shrunk, at, rows.length - at - 1);
+        rowsById.put(id, shrunk);
+    }
+
+    private void ensureCapacity(int rowNumber) {
+        if (rowNumber >= names.length) {
+            int capacity = Math.max(names.length * 2, rowNumber + 1);
+            names = Arrays.copyOf(names, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+    }
+
+    private interface KeyConsumer {
+        void accept(long key);
+    }
+
+    private static void forEachTrigram(String folded, KeyConsumer consumer) {
+        for (int i = 0; i + 3 <= folded.length(); i++)
+            consumer.accept(key(folded.charAt(i), folded.charAt(i + 1), folded.charAt(i + 2)));
+    }
+
+    // Bit 48 is always set, so no key is 0 (the empty-slot marker)
+    private static long key(char a, char b, char c) {
+        return (1L << 48) | ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    // Simple case folding; returns the string itself when nothing changes
+    static String fold(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.toLowerCase(Character.toUpperCase(c)) != c) {
+                char[] chars = s.toCharArray();
+                for (int j = i; j < chars.length; j++)
+                    chars[j] = Character.toLowerCase(Character.toUpperCase(chars[j]));
+                return new String(chars);
+            }
+        }
+        return s;
+    }
+
+    private static String cell(List<Object> row, int index) {
+        Object value = (index < row.size()) ? row.get(index) : null;
+        return (value == null) ? "" : value.toString().trim();
+    }
+
+    /* Open-addressing map from packed trigram to a sorted, growable array of row numbers */
+    private static final class TrigramTable {
+        private long[] keys = new long[1024];
+        int[][] rows = new int[1024][];
+        int[] sizes = new int[1024];
+        private int used;
+
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == key)
+                    return slot;
+                if (keys[slot] == 0)
+                    return -1;
+            }
+        }
+
+        void add(long key, int row) {
+            if ((used + 1) * 2 > keys.length)
+                rehash(keys.length * 2);
+
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != 0 && keys[slot] != key)
+                slot = (slot + 1) & mask;
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                rows[slot] = new int[4];
+                used++;
+            }
+
+            int[] list = rows[slot];
+            int size = sizes[slot];
+            // Rows usually arrive in order, so this is almost always an append
+            int at = (size == 0 || list[size - 1] < row) ? size : Arrays.binarySearch(list, 0, size, row);
+            if (at >= 0 && at < size)
+                return;   // trigram occurs twice in the same name
+            if (at < 0)
+                at = -at - 1;
+            if (size == list.length)
+                list = rows[slot] = Arrays.copyOf(list, size * 2);
+            System.arraycopy(list, at, list, at + 1, size - at);
+            list[at] = row;
+            sizes[slot] = size + 1;
+        }
+
+        // Emptied lists keep their slot; there are only as many trigrams as the names ever contained
+        void remove(long key, int row) {
+            int slot = find(key);
+            if (slot < 0)
+                return;
+            int[] list = rows[slot];
+            int size = sizes[slot];
+            int at = Arrays.binarySearch(list, 0, size, row);
+            if (at < 0)
+                return;
+            System.arraycopy(list, at + 1, list, at, size - at - 1);
+            sizes[slot] = size - 1;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[][] oldRows = rows;
+            int[] oldSizes = sizes;
+            keys = new long[capacity];
+            rows = new int[capacity][];
+            sizes = new int[capacity];
+
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0)
+                    continue;
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != 0)
+                    slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                rows[slot] = oldRows[i];
+                sizes[slot] = oldSizes[i];
+            }
+        }
+
+        private static int hash(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ (key >>> 32));
+        }
+    }
+}
@@ -0,0 +1,262 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Single-pass statistics over integer scores for the class report: count, mean and standard deviation (sums shifted by the first score),
+ * high and low, median and 90th percentile, a histogram of scores by letter band, and counts of the letter grades
+ * recorded on the roster. Each value is added once; nothing is boxed and cells are parsed without exceptions.
+ *
+ * Percentiles come from a fixed-size sketch: 1024 equal-width buckets whose width doubles whenever a score falls
+ * outside them. Scores spanning fewer than 1024 points (0-100 grades) keep a width of one, so the sketch is an exact
+ * count of every score; wider spreads are off by at most half a bucket. In exact mode the scores are also kept in a
+ * primitive array, which is sorted (once) only if the sketch had to widen.
+ */
+public class ScoreStats {
+
+    /* Rosters up to this size keep every score for exact percentiles; larger ones use the sketch */
+    public static final int EXACT_LIMIT = 1_000_000;
+
+    private static final int BUCKETS = 1024;
+    private static final String[] BANDS = {"A", "B", "C", "D", "F"};
+
+    private final boolean exact;
+    private int[] values;                       // exact mode only; the first count entries are used
+    private boolean sorted;
+
+    private int count;
+    private long shift;                         // first score; sums are taken relative to it for precision
+    private long sum;                           // of (score - shift)
+    private double sumOfSquares;                // of (score - shift)^2
+    private int high = Integer.MIN_VALUE;
+    private int low = Integer.MAX_VALUE;
+    private final int[] bands = new int[BANDS.length];
+    private final int[] letters = new int[26];           // plain one-letter grades, A-Z
+    private final Map<String, int[]> grades = new HashMap<>();   // anything else ("B+", "INC")
+
+    private final long[] buckets = new long[BUCKETS];
+    private long base;                          // lowest score of bucket 0, a multiple of width
+    private long width = 1;
+
+    public ScoreStats(boolean exact) {
+        this(exact, 1024);
+    }
+
+    private ScoreStats(boolean exact, int capacity) {
+        this.exact = exact;
+        this.values = exact ? new int[Math.max(capacity, 16)] : null;
+    }
+
+    /* Exact percentiles when the expected number of scores is at most EXACT_LIMIT, the sketch otherwise */
+    public static ScoreStats forCount(int expected) {
+        return new ScoreStats(expected <= EXACT_LIMIT, expected);
+    }
+
+    /* Adds the cell if it holds an integer score; returns false (and adds nothing) otherwise */
+    public boolean addCell(Object cell) {
+        if (cell instanceof Integer || cell instanceof Long || cell instanceof Short || cell instanceof Byte) {
+            long value = ((Number) cell).longValue();
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+                return false;
+            add((int) value);
+            return true;
+        }
+        if (cell == null)
+            return false;
+
+        String s = cell.toString();
+        int i = 0;
+        int end = s.length();
+        while (i < end && Character.isWhitespace(s.charAt(i)))
+            i++;
+        while (end > i && Character.isWhitespace(s.charAt(end - 1)))
+            end--;
+
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+'))
+            negative = s.charAt(i++) == '-';
+        if (i == end)
+            return false;
+
+        long value = 0;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L)
+                return false;
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+            return false;
+        add((int) value);
+        return true;
+    }
+
+    public void add(int score) {
+        if (count++ == 0)
+            shift = score;
+        long delta = score - shift;
+        sum += delta;
+        sumOfSquares += (double) delta * delta;
+        if (score > high) high = score;
+        if (score < low) low = score;
+
+        // Summed comparisons rather than an if-chain: scores arrive in no order, so branches would mispredict
+        int band = 4 - (score >= 60 ? 1 : 0) - (score >= 70 ? 1 : 0) - (score >= 80 ? 1 : 0) - (score >= 90 ? 1 : 0);
+        bands[band]++;
+
+        if (exact) {
+            if (count > values.length)
+                values = Arrays.copyOf(values, values.length * 2);
+            values[count - 1] = score;
+            sorted = false;
+        }
+        addToSketch(score);
+    }
+
+    /* Counts one recorded letter grade (the roster's Grade column); blanks are ignored */
+    public void addGrade(String grade) {
+        if (grade == null)
+            return;
+        if (grade.length() == 1) {
+            char c = grade.charAt(0);
+            if (c >= 'A' && c <= 'Z') {
+                letters[c - 'A']++;
+                return;
+            }
+        }
+        if (grade.isBlank())
+            return;
+        grades.computeIfAbsent(grade.trim().toUpperCase(), g -> new int[1])[0]++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public double mean() {
+        return (count == 0) ? Double.NaN : shift + (double) sum / count;
+    }
+
+    /* Population standard deviation: the scores are the whole class, not a sample of it */
+    public double stddev() {
+        if (count == 0)
+            return Double.NaN;
+        double mean = (double) sum / count;
+        return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+    }
+
+    public int high() {
+        return high;
+    }
+
+    public int low() {
+        return low;
+    }
+
+    public double median() {
+        return percentile(0.5);
+    }
+
+    public double p90() {
+        return percentile(0.9);
+    }
+
+    /* Linear interpolation between the closest ranks, p in [0, 1] */
+    public double percentile(double p) {
+        if (count == 0)
+            return Double.NaN;
+        double position = p * (count - 1);
+        int below = (int) Math.floor(position);
+        int above = (int) Math.ceil(position);
+        double lower = valueAtRank(below);
+        double upper = (above == below) ? lower : valueAtRank(above);
+        return lower + (upper - lower) * (position - below);
+    }
+
+    /* True when percentiles are exact: scores kept, or every sketch bucket is a single score */
+    public boolean exactPercentiles() {
+        return exact || width == 1;
+    }
+
+    /* Largest error of a percentile, in score points (0 when exact) */
+    public double percentileError() {
+        return exactPercentiles() ? 0 : width / 2.0;
+    }
+
+    /* Number of scores in each letter band, A (90+) down to F (below 60) */
+    public Map<String, Integer> bands() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < BANDS.length; i++)
+            result.put(BANDS[i], bands[i]);
+        return result;
+    }
+
+    /* Recorded letter grades and how many students have each, sorted by grade */
+    public Map<String, Integer> grades() {
+        Map<String, Integer> result = new TreeMap<>();
+        for (Map.Entry<String, int[]> e : grades.entrySet())
+            result.merge(e.getKey(), e.getValue()[0], Integer::sum);
+        for (int i = 0; i < letters.length; i++) {
+            if (letters[i] > 0)
+                result.merge(String.valueOf((char) ('A' + i)), letters[i], Integer::sum);
+        }
+        return result;
+    }
+
+    private double valueAtRank(int rank) {
+        // While every bucket is a single score the sketch is a counting sort of the scores: no need to sort them
+        if (exact && width > 1) {
+            if (!sorted) {
+                Arrays.sort(values, 0, count);
+                sorted = true;
+            }
+            return values[rank];
+        }
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (rank < seen) {
+                if (width == 1)
+                    return base + i;
+                double middle = base + i * width + (width - 1) / 2.0;
+                return Math.max(low, Math.min(high, middle));
+            }
+        }
+        return high;   // not reached: the buckets hold count scores
+    }
+
+    private void addToSketch(int score) {
+        long slot = (width == 1) ? score - base : Math.floorDiv(score - base, width);
+        if (count == 1) {
+            base = score;
+            slot = 0;
+        } else if (slot < 0 || slot >= BUCKETS) {
+            widen(Math.min(low, score), Math.max(high, score));
+            slot = Math.floorDiv(score - base, width);
+        }
+        buckets[(int) slot]++;
+    }
+
+    // Doubles the bucket width until [lo, hi] fits, then moves the counts into the wider buckets
+    private void widen(long lo, long hi) {
+        long newWidth = width;
+        while (Math.floorDiv(hi, newWidth) - Math.floorDiv(lo, newWidth) >= BUCKETS)
+            newWidth *= 2;
+        long newBase = Math.floorDiv(lo, newWidth) * newWidth;
+
+        long[] old = buckets.clone();
+        Arrays.fill(buckets, 0);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (old[i] != 0)
+                buckets[(int) ((base + i * width - newBase) / newWidth)] += old[i];
+        }
+        base = newBase;
+        width = newWidth;
+    }
+}
@@ -0,0 +1,318 @@
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Non-interactive command mode shared by the three bots: "--script [FILE] [--workers N]".
+ *
+ * Reads one command per line from FILE (or stdin when FILE is missing or "-"), e.g.
+ *     label 19c964c9d959a3e6 IN_PROGRESS
+ *     add-student "Ada Lovelace" 1001 A 97 "first row"
+ * Arguments are split on whitespace; double quotes group words and \" escapes a quote. Blank lines and
+ * lines starting with '#' are skipped, and a line reading "wait" waits for every earlier command.
+ *
+ * Commands run concurrently on the shared API executor, at most N in flight (default 8). Commands that name
+ * the same resource (message ID, event ID, row, ...) still run in script order. Every command writes one
+ * JSON line to stdout: {"line":3,"command":"label","status":"ok","result":...} or "status":"error" with
+ * "error". Human-readable progress goes to stderr so stdout stays machine-readable.
+ *
+ * A bot can name a command to run once more after the last line (finishWith), e.g. to write buffered updates; it
+ * reports like any other line, numbered one past the end of the script, and counts toward the exit status.
+ */
+public class ScriptRunner {
+
+    public static final int DEFAULT_WORKERS = 8;
+
+    private static final JsonFactory JSON = GsonFactory.getDefaultInstance();
+
+    @FunctionalInterface
+    public interface Command {
+        Object run(List<String> args) throws Exception;
+    }
+
+    /* Thrown by a command that failed for several separate reasons: each message becomes its own error line */
+    public static final class Failures extends Exception {
+        private final List<String> messages;
+
+        public Failures(List<String> messages) {
+            super(String.join("; ", messages));
+            this.messages = List.copyOf(messages);
+        }
+
+        public List<String> messages() {
+            return messages;
+        }
+    }
+
+    private record Spec(String usage, int minArgs, int keyArg, Command command) {
+    }
+
+    private final String botName;
+    private final Map<String, Spec> commands = new LinkedHashMap<>();
+    private String finalCommand;   // run after the last line, or null
+
+    public ScriptRunner(String botName) {
+        this.botName = botName;
+
+        // Available in every bot: live per-method API metrics
+        register("metrics", 0, -1, args -> {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (ApiMetrics.MethodStats s : ApiMetrics.snapshot()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("method", s.method());
+                row.put("calls", s.getCalls());
+                row.put("errors", s.getErrors());
+                row.put("retries", s.getRetries());
+                row.put("p50Ms", s.getP50Millis());
+                row.put("p99Ms", s.getP99Millis());
+                row.put("p999Ms", s.getP999Millis());
+                row.put("quotaUnits", s.getQuotaUnits());
+                row.put("bytesOut", s.getBytesOut());
+                row.put("bytesIn", s.getBytesIn());
+                row.put("statusCodes", s.getStatusCodes());
+                rows.add(row);
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Adds a command.
+     *
+     * @param usage   Name followed by its arguments, e.g. "label <messageId> <labelName>"; the first word is the name.
+     * @param minArgs Arguments required after the name.
+     * @param keyArg  Index of the argument naming the resource it touches (commands on one resource run in order),
+     *                or -1 if the command can run in any order.
+     */
+    public ScriptRunner register(String usage, int minArgs, int keyArg, Command command) {
+        String name = usage.split(" ", 2)[0];
+        commands.put(name, new Spec(usage, minArgs, keyArg, command));
+        return this;
+    }
+
+    /* Runs the registered command (with no arguments) after the last line of every script */
+    public ScriptRunner finishWith(String name) {
+        if (!commands.containsKey(name))
+            throw new IllegalArgumentException("Unknown command: " + name);
+        finalCommand = name;
+        return this;
+    }
+
+    public static boolean isScriptMode(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--script"))
+                return true;
+        }
+        return false;
+    }
+
+    /* Value following the option, or null when the option (or its value) is absent */
+    public static String option(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name) && !args[i + 1].startsWith("--"))
+                return args[i + 1];
+        }
+        return null;
+    }
+
+    /**
+     * Runs the script named by the command-line arguments.
+     *
+     * @return Number of commands that failed, suitable as (part of) the exit status.
+     */
+    public int runFromArgs(String[] args) throws IOException {
+        String path = option(args, "--script");
+        String workers = option(args, "--workers");
+
+        InputStream in = (path == null || path.equals("-")) ? System.in : new FileInputStream(path);
+        PrintStream results = System.out;
+
+        // Everything the bots print for people goes to stderr while the script runs
+        System.setOut(System.err);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return run(reader, results, (workers == null) ? DEFAULT_WORKERS : Integer.parseInt(workers));
+        } finally {
+            System.setOut(results);
+        }
+    }
+
+    public int run(BufferedReader in, PrintStream out, int workers) throws IOException {
+        if (workers < 1)
+            throw new IllegalArgumentException("Workers must be at least 1: " + workers);
+
+        Semaphore permits = new Semaphore(workers);
+        Map<String, CompletableFuture<Void>> lastByKey = new HashMap<>();
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                continue;
+
+            if (trimmed.equals("wait")) {
+                awaitAll(inFlight);
+                lastByKey.clear();
+                continue;
+            }
+
+            List<String> tokens;
+            try {
+                tokens = tokenize(trimmed);
+            } catch (IllegalArgumentException e) {
+                emit(out, lineNumber, trimmed, null, e.getMessage(), ok, failed);
+                continue;
+            }
+
+            String name = tokens.get(0);
+            List<String> args = tokens.subList(1, tokens.size());
+            Spec spec = commands.get(name);
+            if (spec == null) {
+                emit(out, lineNumber, name, null, "unknown command; known: " + String.join(", ", commands.keySet()),
+                        ok, failed);
+                continue;
+            }
+            if (args.size() < spec.minArgs()) {
+                emit(out, lineNumber, name, null, "usage: " + spec.usage(), ok, failed);
+                continue;
+            }
+
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading the script");
+            }
+
+            final int n = lineNumber;
+            Runnable task = () -> {
+                try {
+                    execute(out, n, name, spec.command(), args, ok, failed);
+                } finally {
+                    permits.release();
+                }
+            };
+
+            // A command on a resource that is already busy queues behind the earlier one instead of racing it
+            String key = (spec.keyArg() >= 0) ? args.get(spec.keyArg()) : null;
+            CompletableFuture<Void> previous = (key != null) ? lastByKey.get(key) : null;
+            CompletableFuture<Void> future = (previous == null)
+                    ? ApiExecutor.submit(() -> { task.run(); return null; })
+                    : previous.thenCompose(v -> ApiExecutor.submit(() -> { task.run(); return null; }));
+
+            if (key != null)
+                lastByKey.put(key, future);
+            inFlight.add(future);
+            if (inFlight.size() > 4 * workers)
+                inFlight.removeIf(CompletableFuture::isDone);
+        }
+
+        awaitAll(inFlight);
+        if (finalCommand != null)
+            execute(out, lineNumber + 1, finalCommand, commands.get(finalCommand).command(), List.of(), ok, failed);
+        System.err.println(botName + " script finished: " + ok.get() + " ok, " + failed.get() + " failed.");
+        return failed.get();
+    }
+
+    private void execute(PrintStream out, int line, String name, Command command, List<String> args,
+                         AtomicInteger ok, AtomicInteger failed) {
+        try {
+            emit(out, line, name, command.run(args), null, ok, failed);
+        } catch (Failures e) {
+            for (String message : e.messages())
+                emit(out, line, name, null, message, ok, failed);
+        } catch (Exception e) {
+            emit(out, line, name, null, String.valueOf(e.getMessage()), ok, failed);
+        }
+    }
+
+    /* Splits a line on whitespace; "double quotes" group words and \" inside quotes is a literal quote */
+    static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        boolean hasToken = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes && c == '\\' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                current.append('"');
+                i++;
+            } else if (c == '"') {
+                inQuotes = !inQuotes;
+                hasToken = true;   // "" is an empty argument, not nothing
+            } else if (!inQuotes && Character.isWhitespace(c)) {
+                if (hasToken) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                    hasToken = false;
+                }
+            } else {
+                current.append(c);
+                hasToken = true;
+            }
+        }
+
+        if (inQuotes)
+            throw new IllegalArgumentException("unterminated quote");
+        if (hasToken)
+            tokens.add(current.toString());
+        return tokens;
+    }
+
+    private void emit(PrintStream out, int line, String command, Object result, String error,
+                      AtomicInteger ok, AtomicInteger failed) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("line", line);
+        record.put("command", command);
+        record.put("status", (error == null) ? "ok" : "error");
+        if (error == null) {
+            if (result != null)
+                record.put("result", result);
+            ok.incrementAndGet();
+        } else {
+            record.put("error", error);
+            failed.incrementAndGet();
+        }
+
+        String json;
+        try {
+            json = JSON.toString(record);
+        } catch (IOException e) {
+            json = "{\"line\":" + line + ",\"status\":\"error\",\"error\":\"result could not be serialized\"}";
+        }
+        synchronized (out) {
+            out.println(json);
+        }
+    }
+
+    private static void awaitAll(List<CompletableFuture<Void>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            // Every task reports its own failure; nothing left to do here
+        }
+        futures.clear();
+    }
+}
@@ -10,10 +10,16 @@ import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 public class SheetsBot {
@@ -21,6 +27,18 @@ public class SheetsBot {
     //Instance variables
     private static String spreadsheetId;
     private static final String NEW_SHEET_NAME = "Sheet1";
+    private static final Pattern APPENDED_ROW = Pattern.compile("![A-Z]+(\\d+)");   // "Sheet1!A42:E42" -> 42
+
+    private static final String REPORT_SHEET_NAME = "Report";
+    private static final String SHEET_FIELDS = "properties.title,sheets.properties(sheetId,title)";
+    private static final int REPORT_CLEAR_ROWS = 40;     // report area rewritten on every run
+    private static final int REPORT_COLUMNS = 3;
+    private static final Map<String, String> BAND_LABELS = Map.of("A", "A (90+)", "B", "B (80-89)", "C", "C (70-79)",
+            "D", "D (60-69)", "F", "F (below 60)");
+
+    // Learned from the spreadsheets.get that opens the spreadsheet, so a report needs no lookup of its own
+    private static Integer reportSheetId;                // sheetId of the Report tab; null when there is none
+    private static int freeSheetId;                      // a sheetId no tab uses yet, for creating the Report tab
 
     //Helper
     public static String getCellValue(List<Object> row, int index)
@@ -56,6 +74,7 @@ public class SheetsBot {
                 Spreadsheet sheet = service.spreadsheets().get(inputId).execute();
                 title = sheet.getProperties().getTitle();
                 spreadsheetId = inputId;
+                rememberReportTab(sheet);
                 System.out.println("? Found: " + title);
             }
             catch (GoogleJsonResponseException e)
@@ -89,6 +108,7 @@ public class SheetsBot {
 
             Spreadsheet created = service.spreadsheets().create(newSpreadsheet).execute();
             spreadsheetId = created.getSpreadsheetId();  // store for all subsequent tasks
+            rememberReportTab(created);
             String url    = created.getSpreadsheetUrl();
 
             // Now write the header row so the file isn't completely empty
@@ -114,14 +134,10 @@ public class SheetsBot {
     }
 
     public static void displayAllStudents(Sheets service) throws IOException {
-        // Read just cell B2
-        ValueRange singleCell = service.spreadsheets().values()
-                .get(spreadsheetId, "Sheet1!A:E")
-                .execute();
-
-        List<List<Object>> vals = singleCell.getValues();
+        // Cached roster: downloaded again only when the sheet has changed since the last read
+        List<List<Object>> vals = RosterCache.rows(service, spreadsheetId);
 
-        if (vals == null || vals.size() <= 1) {
+        if (vals.size() <= 1) {
             System.out.println("No student records found.");
             return;
         }
@@ -152,30 +168,23 @@ public class SheetsBot {
         String query = scanner.nextLine().trim();
 
 
-        ValueRange response = service.spreadsheets().values().get(spreadsheetId, NEW_SHEET_NAME + "!A:E").execute();
-        List<List<Object>> allRows = response.getValues();
-        List<List<Object>> matches = new ArrayList<>();
+        // Trigram index over the cached roster; each match is prefixed with its sheet row number
+        List<List<Object>> matches = RosterCache.findByName(service, spreadsheetId, query);
 
-        matches.add(allRows.get(0));
-
-        for(int i = 0; i < allRows.size(); i++)
-        {
-            if(getCellValue(allRows.get(i), 0).toLowerCase().contains(query.toLowerCase()))
-            {
-                List<Object> row = new ArrayList<>(allRows.get(i));
-                row.add(0, i + 1);
-                matches.add(row);
-            }
-        }
-
-        if(matches.size() <= 1)
+        if(matches.isEmpty())
         {
             System.out.println("? Zero matches found for: " + query);
+            return;
         }
-        else
+
+        System.out.printf("%-5s | %-16s | %-8s | %-5s | %-5s | %s%n", "Row", "Name", "ID", "Grade", "Score", "Notes");
+        System.out.println("------|----------------|--------|-------|-------|---------------------");
+        for(List<Object> row : matches)
         {
-            System.out.println( (matches.size() - 1) + " match(es) found.");
+            System.out.printf("%-5s | %-16s | %-8s | %-5s | %-5s | %s%n", row.get(0), getCellValue(row, 1),
+                    getCellValue(row, 2), getCellValue(row, 3), getCellValue(row, 4), getCellValue(row, 5));
         }
+        System.out.println(matches.size() + " match(es) found.");
     }
 
     public static void addStudent(Sheets service, Scanner scanner) throws IOException
@@ -204,17 +213,25 @@ public class SheetsBot {
         String notes = scanner.nextLine().trim();
 
 
-        List<List<Object>> newRows = List.of(List.of(name, id, grade, score, notes));
+        System.out.println("Student added at: " + appendStudent(service, name, id, grade, score, notes));
+    }
 
-        ValueRange appendBody = new ValueRange().setValues(newRows);
+    public static void importStudents(Sheets service, Scanner scanner) throws IOException
+    {
+        System.out.println("\n--- Import Students from CSV ---");
+        System.out.println("Columns: Name, Student ID, Grade, Score, Notes (header line optional)");
 
-        AppendValuesResponse appendResult = service.spreadsheets().values()
-                .append(spreadsheetId, NEW_SHEET_NAME+ "!A1", appendBody)
-                .setValueInputOption("USER_ENTERED")
-                .setInsertDataOption("INSERT_ROWS")   // INSERT_ROWS shifts existing data down; OVERWRITE replaces
-                .execute();
+        System.out.println("Enter CSV file path: ");
+        Path csv = Path.of(scanner.nextLine().trim());
+        if(!Files.isRegularFile(csv))
+        {
+            System.out.println("Error: No such file: " + csv);
+            return;
+        }
 
-        System.out.println("Student added at: " + appendResult.getUpdates().getUpdatedRange());
+        RosterImporter.Result result = RosterImporter.importCsv(service, spreadsheetId, csv, RosterImporter.DEFAULT_CHUNK_ROWS);
+        System.out.println("Imported " + result.imported() + " student(s) in " + result.chunks() + " chunk(s); skipped "
+                + result.rejected() + " invalid and " + result.duplicates() + " duplicate row(s).");
     }
 
     public static void updateGrade(Sheets service, Scanner scanner) throws IOException
@@ -225,18 +242,15 @@ public class SheetsBot {
         int rowNumber = Integer.parseInt(scanner.nextLine().trim());
 
 
-        String range = NEW_SHEET_NAME + "!A" + rowNumber + ":B" + rowNumber;
-        ValueRange checkRow = service.spreadsheets().values()
-                .get(spreadsheetId, range).execute();
-
-        List<List<Object>> rowData = checkRow.getValues();
-        if(rowData == null || rowData.isEmpty())
+        // Cached rows as they stand, queued grades included; the write itself is checked when the queue flushes
+        List<List<Object>> rows = RosterCache.snapshot(service, spreadsheetId);
+        if(rowNumber < 2 || rowNumber > rows.size() || rows.get(rowNumber - 1).isEmpty())
         {
             System.out.println("Error: No student found at row " + rowNumber);
             return;
         }
 
-        String studentName = rowData.get(0).get(0).toString();
+        String studentName = getCellValue(rows.get(rowNumber - 1), 0);
         System.out.println("Updating record for: " + studentName);
 
 
@@ -247,116 +261,378 @@ public class SheetsBot {
         int newScore = Integer.parseInt(scanner.nextLine().trim());
 
 
-        List<List<Object>> updatedValues = List.of(List.of(newGrade, newScore));
+        int pending = GradeWriteQueue.enqueue(service, spreadsheetId, rowNumber, newGrade, newScore);
 
-        ValueRange body = new ValueRange().setValues(updatedValues);
+        System.out.println("Queued " + newGrade + " / " + newScore + " for row " + rowNumber + " (" + pending + " pending)");
+    }
 
+    public static void updateGradeById(Sheets service, Scanner scanner) throws IOException
+    {
+        System.out.println("\n--- Update Grade by Student ID ---");
 
-        range = NEW_SHEET_NAME + "!C" + rowNumber + ":D" + rowNumber;
+        System.out.println("Enter the Student ID: ");
+        String studentId = scanner.nextLine().trim();
 
-        UpdateValuesResponse result = service.spreadsheets().values()
-                .update(spreadsheetId, range, body)
-                .setValueInputOption("USER_ENTERED")
-                .execute();
+        // Looked up in the cached ID index (the sheet on a miss); the row is re-checked when the queue flushes
+        int rowNumber = RosterCache.cachedRowOfStudent(service, spreadsheetId, studentId);
+        if(rowNumber < 0)
+        {
+            System.out.println("Error: No student with ID " + studentId);
+            return;
+        }
 
-        System.out.println("Updated " + result.getUpdatedCells() + " cells at " + range);
+        String studentName = getCellValue(RosterCache.snapshot(service, spreadsheetId).get(rowNumber - 1), 0);
+        System.out.println("Updating record for: " + studentName + " (row " + rowNumber + ")");
+
+
+        System.out.println("Enter new grade letter: ");
+        String newGrade = scanner.nextLine().trim().toUpperCase();
+
+        System.out.println("Enter new score: ");
+        int newScore = Integer.parseInt(scanner.nextLine().trim());
+
+
+        GradeWriteQueue.enqueueById(service, spreadsheetId, studentId, newGrade, newScore);
+
+        System.out.println("Queued " + newGrade + " / " + newScore + " for " + studentName + " ("
+                + GradeWriteQueue.size() + " pending)");
+    }
+
+    public static void flushGrades(Sheets service) throws IOException
+    {
+        System.out.println("\n--- Flush Pending Grades ---");
+
+        if(GradeWriteQueue.flush() == 0)
+            System.out.println("No pending grade updates.");
     }
 
     public static void generateReport(Sheets service, Scanner scanner) throws IOException
     {
         System.out.println("\n--- Generating Class Report ---");
 
-        String range = NEW_SHEET_NAME + "!D2:D";
+        ReportSummary summary = writeReport(service);
+        if(summary == null)
+        {
+            System.out.println("Error: No valid numeric scores found");
+            return;
+        }
 
-        ValueRange response = service.spreadsheets().values()
-                .get(spreadsheetId, range).execute();
+        System.out.println("Report written to 'Report' tab.");
+        System.out.printf("(Average: %.2f | Std Dev: %.2f | Median: %.1f | P90: %.1f | High: %d | Low: %d)%n",
+                summary.average(), summary.stddev(), summary.median(), summary.p90(), summary.high(), summary.low());
+        System.out.println("(Bands: " + summary.bands() + " | Recorded grades: " + summary.grades() + ")");
+    }
 
-        List<List<Object>> values = response.getValues();
+    /* Score statistics written to the Report tab; percentileError is 0 when median and p90 are exact */
+    public record ReportSummary(double average, int high, int low, int count, double stddev, double median, double p90,
+                                double percentileError, Map<String, Integer> bands, Map<String, Integer> grades) {
+    }
 
-        if(values == null || values.isEmpty())
+    /* Computes the class statistics and writes them to the Report tab; null when there are no numeric scores */
+    public static ReportSummary writeReport(Sheets service) throws IOException
+    {
+        GradeWriteQueue.flush();   // the report reflects every grade entered so far
+
+        // One pass over the cached roster: Score (D) feeds the statistics, Grade (C) the per-grade counts
+        ReportSummary summary = summarizeRoster(RosterCache.rows(service, spreadsheetId));
+        if(summary == null)
+            return null;
+
+        List<List<Object>> reportContent = reportLines(summary);
+
+        // Tab creation (if needed) and every report cell go out in a single spreadsheets.batchUpdate
+        try
         {
-            System.out.println("Error: No student scores found.");
-            return;
+            writeReportTab(service, reportContent);
+        }
+        catch (GoogleJsonResponseException e)
+        {
+            if (e.getStatusCode() != 400)
+                throw e;
+            // Our idea of the Report tab is out of date (deleted or added elsewhere): look again, retry once
+            rememberReportTab(service.spreadsheets().get(spreadsheetId)
+                    .setFields(SHEET_FIELDS).execute());
+            writeReportTab(service, reportContent);
         }
 
+        return summary;
+    }
 
-        double total = 0;
-        int high = Integer.MIN_VALUE;
-        int low = Integer.MAX_VALUE;
-        int count = 0;
+    private static void writeReportTab(Sheets service, List<List<Object>> reportContent) throws IOException
+    {
+        List<Request> requests = new ArrayList<>();
+        boolean creating = reportSheetId == null;
+        int sheetId = creating ? freeSheetId : reportSheetId;
+        if(creating)
+        {
+            requests.add(new Request().setAddSheet(new AddSheetRequest()
+                    .setProperties(new SheetProperties().setSheetId(sheetId).setTitle(REPORT_SHEET_NAME))));
+        }
 
-        for(List<Object> row: values)
+        List<RowData> rows = new ArrayList<>(reportContent.size());
+        for(List<Object> line: reportContent)
         {
-            if(!row.isEmpty())
+            List<CellData> cells = new ArrayList<>(line.size());
+            for(Object value: line)
             {
-                try{
-                    int score = Integer.parseInt(row.get(0).toString());
-                    total += score;
-                    if(score > high) high = score;
-                    if(score < low) low = score;
-                    count++;
-                } catch (NumberFormatException e){
-                    continue;
-                }
+                ExtendedValue cell = (value instanceof Number number)
+                        ? new ExtendedValue().setNumberValue(number.doubleValue())
+                        : new ExtendedValue().setStringValue(value.toString());
+                cells.add(new CellData().setUserEnteredValue(cell));
             }
+            rows.add(new RowData().setValues(cells));
         }
 
-        if(count == 0)
+        // The whole report area is rewritten, so lines left over from a longer earlier report are cleared
+        requests.add(new Request().setUpdateCells(new UpdateCellsRequest()
+                .setRange(new GridRange().setSheetId(sheetId)
+                        .setStartRowIndex(0).setEndRowIndex(Math.max(rows.size(), REPORT_CLEAR_ROWS))
+                        .setStartColumnIndex(0).setEndColumnIndex(REPORT_COLUMNS))
+                .setRows(rows)
+                .setFields("userEnteredValue")));
+
+        Long versionBefore = RosterCache.versionBeforeWrite(spreadsheetId);
+        service.spreadsheets().batchUpdate(spreadsheetId,
+                new BatchUpdateSpreadsheetRequest().setRequests(requests)).execute();
+        // The roster did not change, so the next report reuses it
+        RosterCache.recordOtherWrite(spreadsheetId, versionBefore);
+
+        if(creating)
         {
-            System.out.println("Error: No valid numeric scores found");
-            return;
+            reportSheetId = sheetId;
+            freeSheetId = sheetId + 1;
+            System.out.println("Created new report tab.");
+        }
+    }
+
+    /* Report tab layout: summary lines, then the score distribution by letter band, then the recorded grades */
+    static List<List<Object>> reportLines(ReportSummary summary)
+    {
+        List<List<Object>> lines = new ArrayList<>();
+        lines.add(List.of("CLASS SUMMARY REPORT", "", ""));
+        lines.add(List.of("-----------------", "-------", ""));
+        lines.add(List.of("Average Score:", round(summary.average()), ""));
+        lines.add(List.of("Std Deviation:", round(summary.stddev()), ""));
+        lines.add(List.of("Median Score:", round(summary.median()), ""));
+        lines.add(List.of("90th Percentile:", round(summary.p90()), ""));
+        lines.add(List.of("Highest Score:", summary.high(), ""));
+        lines.add(List.of("Lowest Score:", summary.low(), ""));
+        lines.add(List.of("Total Students:", summary.count(), ""));
+        lines.add(List.of("Percentiles:", summary.percentileError() == 0 ? "exact"
+                : "approximate (within " + summary.percentileError() + ")", ""));
+        lines.add(List.of("", "", ""));
+
+        lines.add(List.of("SCORE DISTRIBUTION", "Students", "Share %"));
+        for(Map.Entry<String, Integer> band: summary.bands().entrySet())
+        {
+            lines.add(List.of(BAND_LABELS.get(band.getKey()), band.getValue(),
+                    round(100.0 * band.getValue() / summary.count())));
         }
+        lines.add(List.of("", "", ""));
 
-        double average = total / count;
+        lines.add(List.of("RECORDED GRADES", "Students", ""));
+        for(Map.Entry<String, Integer> grade: summary.grades().entrySet())
+            lines.add(List.of(grade.getKey(), grade.getValue(), ""));
+        return lines;
+    }
 
-        Spreadsheet spreadsheet = service.spreadsheets().get(spreadsheetId).execute();
-        List<Sheet> sheets = spreadsheet.getSheets();
-        boolean reportExists = false;
+    private static double round(double value)
+    {
+        return Math.round(value * 100) / 100.0;
+    }
 
+    /* Statistics over the roster as values.get returns it (header first); null when no row has a numeric score */
+    static ReportSummary summarizeRoster(List<List<Object>> rows)
+    {
+        if(rows == null || rows.size() < 2)
+            return null;
 
-        for(Sheet s: sheets)
+        ScoreStats stats = ScoreStats.forCount(rows.size() - 1);
+        for(int i = 1; i < rows.size(); i++)
         {
-            if(s.getProperties().getTitle().equals("Report")){
-                reportExists = true;
-                break;
-            }
+            List<Object> row = rows.get(i);
+            if(row.size() > 3 && stats.addCell(row.get(3)))
+                stats.addGrade(getCellValue(row, 2));
         }
+        return toSummary(stats);
+    }
 
-        if(!reportExists)
+    /* Statistics over the numeric cells in the first column; null when there are none */
+    static ReportSummary summarizeScores(List<List<Object>> values)
+    {
+        if(values == null || values.isEmpty())
+            return null;
+
+        ScoreStats stats = ScoreStats.forCount(values.size());
+        for(List<Object> row: values)
         {
-            Request addSheetRequest = new Request().setAddSheet(new AddSheetRequest().setProperties(new SheetProperties().setTitle("Report")));
+            if(!row.isEmpty())
+                stats.addCell(row.get(0));
+        }
+        return toSummary(stats);
+    }
 
-            BatchUpdateSpreadsheetRequest body = new BatchUpdateSpreadsheetRequest()
-                    .setRequests(List.of(addSheetRequest));
+    private static ReportSummary toSummary(ScoreStats stats)
+    {
+        if(stats.count() == 0)
+            return null;
+        return new ReportSummary(stats.mean(), stats.high(), stats.low(), stats.count(), stats.stddev(),
+                stats.median(), stats.p90(), stats.percentileError(), stats.bands(), stats.grades());
+    }
 
-            service.spreadsheets().batchUpdate(spreadsheetId, body).execute();
-            System.out.println("Created new report tab.");
+    public static void exportFiltered(Sheets service, Scanner scanner) throws IOException
+    {
+        System.out.println("\n--- Generating Class Report ---");
+
+    }
+
+    // Prompt-free versions of the tasks above, shared by the menu and script mode
+
+    /* Selects an existing spreadsheet without prompting; returns its title */
+    public static String openSpreadsheet(Sheets service, String id) throws IOException
+    {
+        Spreadsheet sheet = service.spreadsheets().get(id).setFields(SHEET_FIELDS).execute();
+        spreadsheetId = id;
+        rememberReportTab(sheet);
+        return sheet.getProperties().getTitle();
+    }
+
+    /* Notes the Report tab's sheetId (or that there is none) from a spreadsheets.get or create response */
+    private static void rememberReportTab(Spreadsheet spreadsheet)
+    {
+        reportSheetId = null;
+        freeSheetId = 1;
+        for(Sheet s: (spreadsheet.getSheets() != null) ? spreadsheet.getSheets() : List.<Sheet>of())
+        {
+            SheetProperties properties = s.getProperties();
+            if(properties == null || properties.getSheetId() == null)
+                continue;
+            freeSheetId = Math.max(freeSheetId, properties.getSheetId() + 1);
+            if(REPORT_SHEET_NAME.equals(properties.getTitle()))
+                reportSheetId = properties.getSheetId();
         }
+    }
 
-        List<List<Object>> reportContent = List.of(
-                List.of("CLASS SUMMARY REPORT", ""),
-                List.of("-----------------", "-------"),
-                List.of("Average Score:", average),
-                List.of("Highest Score:", high),
-                List.of("Lowest Score:", low),
-                List.of("Total Students:", count)
-        );
+    /* Every row of the roster tab, header included; empty if the tab is empty */
+    public static List<List<Object>> readRoster(Sheets service) throws IOException
+    {
+        return RosterCache.rows(service, spreadsheetId);
+    }
+
+    /* Appends one student row; returns the range it was written to */
+    public static String appendStudent(Sheets service, String name, String id, String grade, String score, String notes)
+            throws IOException
+    {
+        // RAW like RosterImporter, so the sheet holds exactly what gets cached: an ID like "00123" keeps its zeros and a
+        // name starting with "=" stays text. A whole-number score is sent as a number, anything else as typed
+        Integer scoreValue = RosterImporter.parseScore(score);
+        List<List<Object>> newRows = List.of(List.of(name, id, grade, (scoreValue == null) ? score : scoreValue, notes));
 
-        ValueRange body = new ValueRange().setValues(reportContent);
+        ValueRange appendBody = new ValueRange().setValues(newRows);
 
-        service.spreadsheets().values()
-                .update(spreadsheetId, "Report!A1", body)
-                .setValueInputOption("USER_ENTERED")
+        Long versionBefore = RosterCache.versionBeforeWrite(spreadsheetId);
+        AppendValuesResponse appendResult = service.spreadsheets().values()
+                .append(spreadsheetId, NEW_SHEET_NAME+ "!A1", appendBody)
+                .setValueInputOption("RAW")
+                .setInsertDataOption("INSERT_ROWS")   // INSERT_ROWS shifts existing data down; OVERWRITE replaces
                 .execute();
 
-        System.out.println("Report written to 'Report' tab.");
-        System.out.printf("(Average: %.2f | High: %d | Low: %d)%n", average, high, low);
+        String updatedRange = appendResult.getUpdates().getUpdatedRange();
+        Matcher firstCell = APPENDED_ROW.matcher(updatedRange);
+        if(firstCell.find())
+            RosterCache.recordWrite(spreadsheetId, versionBefore, Integer.parseInt(firstCell.group(1)), 0, newRows.get(0));
+        else
+            RosterCache.invalidate();
+
+        return updatedRange;
     }
 
-    public static void exportFiltered(Sheets service, Scanner scanner) throws IOException
+    /* Commands for script mode (SheetsGradeTracker --script ... --spreadsheet ID); each returns a JSON-serializable result */
+    public static ScriptRunner scriptCommands(Sheets service)
     {
-        System.out.println("\n--- Generating Class Report ---");
+        return new ScriptRunner("Grade Tracker")
+                .register("list-students", 0, -1, args -> {
+                    List<List<Object>> rows = readRoster(service);
+                    List<Map<String, Object>> students = new ArrayList<>();
+                    for (int i = 1; i < rows.size(); i++)
+                        students.add(studentRow(i + 1, rows.get(i)));
+                    return students;
+                })
+                .register("find-student <name>", 1, -1, args -> {
+                    List<Map<String, Object>> matches = new ArrayList<>();
+                    for (List<Object> row : RosterCache.findByName(service, spreadsheetId, args.get(0)))
+                        matches.add(studentRow((Integer) row.get(0), row.subList(1, row.size())));
+                    return matches;
+                })
+                .register("find-id <studentId>", 1, -1, args -> {
+                    int rowNumber = RosterCache.rowOfStudent(service, spreadsheetId, args.get(0));
+                    if (rowNumber < 0)
+                        throw new IOException("no student with ID " + args.get(0));
+                    return studentRow(rowNumber, readRoster(service).get(rowNumber - 1));
+                })
+                .register("add-student <name> <studentId> <grade> <score> [notes]", 4, -1, args -> Map.of("range",
+                        appendStudent(service, args.get(0), args.get(1), args.get(2).toUpperCase(), args.get(3),
+                                (args.size() > 4) ? args.get(4) : "")))
+                .register("import-csv <file> [chunkRows]", 1, -1, args -> {
+                    int chunkRows = (args.size() > 1) ? Integer.parseInt(args.get(1)) : RosterImporter.DEFAULT_CHUNK_ROWS;
+                    RosterImporter.Result result = RosterImporter.importCsv(service, spreadsheetId, Path.of(args.get(0)), chunkRows);
+                    return Map.of("imported", result.imported(), "rejected", result.rejected(),
+                            "duplicates", result.duplicates(), "chunks", result.chunks(), "resumed", result.resumed());
+                })
+                .register("update-grade <row> <grade> <score>", 3, 0, args -> {
+                    int rowNumber = Integer.parseInt(args.get(0));
+                    // Same check as the menu, against the cached rows; the write itself is checked when the queue flushes
+                    List<List<Object>> rows = RosterCache.snapshot(service, spreadsheetId);
+                    if (rowNumber < 2 || rowNumber > rows.size() || rows.get(rowNumber - 1).isEmpty())
+                        throw new IOException("no student at row " + rowNumber);
+                    int pending = GradeWriteQueue.enqueue(service, spreadsheetId, rowNumber, args.get(1).toUpperCase(),
+                            Integer.parseInt(args.get(2)));
+                    return Map.of("row", rowNumber, "queued", true, "pending", pending);
+                })
+                .register("update-grade-id <studentId> <grade> <score>", 3, 0, args -> {
+                    int rowNumber = GradeWriteQueue.enqueueById(service, spreadsheetId, args.get(0),
+                            args.get(1).toUpperCase(), Integer.parseInt(args.get(2)));
+                    if (rowNumber < 0)
+                        throw new IOException("no student with ID " + args.get(0));
+                    return Map.of("row", rowNumber, "queued", true, "pending", GradeWriteQueue.size());
+                })
+                .register("flush-grades", 0, -1, args -> {
+                    int written = GradeWriteQueue.flush();
+                    List<String> dropped = GradeWriteQueue.takeDropped();
+                    if (!dropped.isEmpty())
+                        throw new ScriptRunner.Failures(dropped);   // one error line per grade that was not written
+                    return Map.of("written", written);
+                })
+                .register("report", 0, -1, args -> {
+                    ReportSummary summary = writeReport(service);
+                    if (summary == null)
+                        throw new IOException("no valid numeric scores found");
+                    Map<String, Object> report = new LinkedHashMap<>();
+                    report.put("average", summary.average());
+                    report.put("stddev", summary.stddev());
+                    report.put("median", summary.median());
+                    report.put("p90", summary.p90());
+                    report.put("high", summary.high());
+                    report.put("low", summary.low());
+                    report.put("count", summary.count());
+                    report.put("percentileError", summary.percentileError());
+                    report.put("bands", summary.bands());
+                    report.put("grades", summary.grades());
+                    return report;
+                })
+                .finishWith("flush-grades");   // grades still queued when the script ends
+    }
 
+    private static Map<String, Object> studentRow(int rowNumber, List<Object> row)
+    {
+        Map<String, Object> student = new LinkedHashMap<>();
+        student.put("row", rowNumber);
+        student.put("name", getCellValue(row, 0));
+        student.put("id", getCellValue(row, 1));
+        student.put("grade", getCellValue(row, 2));
+        student.put("score", getCellValue(row, 3));
+        student.put("notes", getCellValue(row, 4));
+        return student;
     }
 
     public static void runMenu(Sheets service, Scanner scanner) throws IOException
@@ -374,6 +650,9 @@ public class SheetsBot {
             System.out.println("4. Update");
             System.out.println("5. Report");
             System.out.println("6. Export");
+            System.out.println("7. Import CSV");
+            System.out.println("8. Flush pending grades");
+            System.out.println("9. Update by Student ID");
             System.out.println("0. Exit");
             System.out.println("Selection: ");
             String choice = scanner.nextLine().trim();
@@ -385,7 +664,11 @@ public class SheetsBot {
             else if (choice.equals("4")) updateGrade(service, scanner);
             else if (choice.equals("5")) generateReport(service, scanner);
             else if (choice.equals("6")) exportFiltered(service, scanner);
+            else if (choice.equals("7")) importStudents(service, scanner);
+            else if (choice.equals("8")) flushGrades(service);
+            else if (choice.equals("9")) updateGradeById(service, scanner);
             else if (choice.equals("0")) {
+                GradeWriteQueue.flush();
                 running = false;
                 System.out.println("Exiting Program.");
             }
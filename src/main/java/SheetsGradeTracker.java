@@ -22,15 +22,27 @@ public class SheetsGradeTracker {
     private static String sheetName = "Sheet1"; // default tab name
 
     public static void main(String[] args) throws Exception {
+        // "--transport live|record[:DIR]|replay[:DIR]|synthetic[:SPEC]", "--latency MS[+JITTER]", "--error-rate P"
+        args = GoogleServices.configure(args);
 
-        // Full read+write access (for updating, appending, or creating sheets)
-        List<String> scopes = Collections.singletonList(SheetsScopes.SPREADSHEETS);
-        final var httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-        Sheets service = new Sheets.Builder(httpTransport,
-                GsonFactory.getDefaultInstance(),
-                GoogleAuthHelper.getCredentials(httpTransport,
-                        Collections.singletonList(SheetsScopes.SPREADSHEETS)))
-                .setApplicationName("Grade Tracker").build();
+        // Shared factory: pooled transport and one credential (full Sheets read+write plus Gmail and Calendar)
+        GoogleServices services = GoogleServices.get();
+        Sheets service = services.sheets();
+        RosterCache.useDrive(services.drive());   // roster reads revalidate against the Drive file version
+        StartupTimer.mark("clients");
+        StartupTimer.report();
+
+        // "--script [FILE] --spreadsheet ID [--workers N]" runs commands from a file or stdin and exits non-zero if any failed
+        if (ScriptRunner.isScriptMode(args)) {
+            String id = ScriptRunner.option(args, "--spreadsheet");
+            if (id == null) {
+                System.err.println("Script mode needs --spreadsheet <ID>");
+                System.exit(2);
+            }
+            System.err.println("Working with spreadsheet: " + SheetsBot.openSpreadsheet(service, id));
+            int failed = SheetsBot.scriptCommands(service).runFromArgs(args);   // ends with an implicit flush-grades
+            System.exit(failed == 0 ? 0 : 1);
+        }
 
         Scanner scanner = new Scanner(System.in);
         SheetsBot.initializeSpreadsheet(service, scanner);
@@ -0,0 +1,25 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/* Wall-clock timing of startup phases (process start to ready), reported once on stderr */
+public class StartupTimer {
+
+    private static final List<String> phases = new ArrayList<>();
+    private static long total;
+    private static long last = ProcessHandle.current().info().startInstant()
+            .map(start -> start.toEpochMilli())
+            .orElse(System.currentTimeMillis());
+
+    /* Ends the current phase; the first one also covers JVM start and class loading */
+    public static synchronized void mark(String phase) {
+        long now = System.currentTimeMillis();
+        phases.add(phase + " " + (now - last));
+        total += now - last;
+        last = now;
+    }
+
+    // stderr so script mode's stdout stays machine-readable
+    public static synchronized void report() {
+        System.err.println("Startup: " + total + " ms (" + String.join(" | ", phases) + ")");
+    }
+}
@@ -0,0 +1,208 @@
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.CalendarList;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Error;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.calendar.model.Events;
+import com.google.api.services.calendar.model.FreeBusyCalendar;
+import com.google.api.services.calendar.model.FreeBusyRequest;
+import com.google.api.services.calendar.model.FreeBusyRequestItem;
+import com.google.api.services.calendar.model.FreeBusyResponse;
+import com.google.api.services.calendar.model.TimePeriod;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/*
+ * Calendar account behind SyntheticTransport: a primary calendar with the configured number of events spread over
+ * working hours from 30 days ago to 180 days ahead, plus two empty secondary calendars. Events are kept sorted by
+ * start time; inserts and deletes change them in memory.
+ */
+class SyntheticCalendar {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    private static final int DEFAULT_PAGE_SIZE = 250;
+    private static final int MAX_PAGE_SIZE = 2_500;
+
+    private static final String[] SUMMARIES = {"Customer call", "Team standup", "1:1", "Sprint planning",
+            "Office hours", "Escalation review", "Vendor demo", "Quarterly review", "Onboarding session"};
+
+    private static final List<CalendarListEntry> CALENDARS = List.of(
+            new CalendarListEntry().setId(SyntheticGmail.ADDRESS).setSummary(SyntheticGmail.ADDRESS).setPrimary(true)
+                    .setAccessRole("owner").setTimeZone("UTC"),
+            new CalendarListEntry().setId("support-rota@group.calendar.example.com").setSummary("Support rota")
+                    .setAccessRole("writer").setTimeZone("UTC"),
+            new CalendarListEntry().setId("holidays@group.calendar.example.com").setSummary("Team holidays")
+                    .setAccessRole("reader").setTimeZone("UTC"));
+
+    private final List<Event> events;
+    private int nextId;
+
+    SyntheticCalendar(SyntheticTransport.Spec spec, long now) {
+        long today = now - now % DAY;
+        long first = today - 30 * DAY;
+        long span = 210 * DAY;
+        Random random = new Random(spec.seed());
+
+        events = new ArrayList<>(spec.events());
+        for (int j = 0; j < spec.events(); j++) {
+            long day = first + (span * j / Math.max(1, spec.events())) / DAY * DAY;
+            long start = day + (9 + random.nextInt(8)) * HOUR + (random.nextBoolean() ? HOUR / 2 : 0);
+            long end = start + (1 + random.nextInt(3)) * HOUR / 2;
+            events.add(new Event().setId("evt" + j).setStatus("confirmed")
+                    .setSummary(SUMMARIES[random.nextInt(SUMMARIES.length)])
+                    .setStart(new EventDateTime().setDateTime(new DateTime(start)).setTimeZone("UTC"))
+                    .setEnd(new EventDateTime().setDateTime(new DateTime(end)).setTimeZone("UTC")));
+        }
+        events.sort(Comparator.comparingLong(SyntheticCalendar::startOf));
+        nextId = spec.events();
+    }
+
+    synchronized MockLowLevelHttpResponse handle(String method, GenericUrl url, String body) throws IOException {
+        List<String> parts = url.getPathParts();                       // "", calendar, v3, ...
+        List<String> rest = parts.subList(Math.min(3, parts.size()), parts.size());
+
+        if (rest.size() == 1 && rest.get(0).equals("freeBusy") && method.equals("POST"))
+            return freeBusy(OfflineTransport.parse(body, FreeBusyRequest.class));
+        if (rest.size() == 3 && rest.get(0).equals("users") && rest.get(2).equals("calendarList"))
+            return OfflineTransport.ok(new CalendarList().setItems(CALENDARS));
+        if (rest.size() < 3 || !rest.get(0).equals("calendars") || !rest.get(2).equals("events"))
+            return OfflineTransport.notFound(method + " " + url.getRawPath());
+
+        String calendarId = rest.get(1);
+        if (!isPrimary(calendarId) && CALENDARS.stream().noneMatch(c -> c.getId().equals(calendarId)))
+            return OfflineTransport.notFound("calendar " + calendarId);
+        List<Event> calendar = isPrimary(calendarId) ? events : List.of();
+
+        if (rest.size() == 3) {
+            if (method.equals("GET"))
+                return list(calendar, url);
+            if (method.equals("POST"))
+                return OfflineTransport.ok(insert(OfflineTransport.parse(body, Event.class)));
+        } else if (rest.size() == 4) {
+            int index = indexOf(calendar, rest.get(3));
+            if (index < 0)
+                return OfflineTransport.notFound("event " + rest.get(3));
+            if (method.equals("GET"))
+                return OfflineTransport.ok(calendar.get(index));
+            if (method.equals("DELETE")) {
+                events.remove(index);
+                return OfflineTransport.noContent();
+            }
+        }
+        return OfflineTransport.notFound(method + " " + url.getRawPath());
+    }
+
+    // Like the API: an event is in [timeMin, timeMax) when it ends after timeMin and starts before timeMax
+    private MockLowLevelHttpResponse list(List<Event> calendar, GenericUrl url) throws IOException {
+        long timeMin = time(url.getFirst("timeMin"), Long.MIN_VALUE);
+        long timeMax = time(url.getFirst("timeMax"), Long.MAX_VALUE);
+        Object max = url.getFirst("maxResults");
+        int pageSize = (max == null) ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.parseInt(max.toString())));
+        int skip = (url.getFirst("pageToken") != null) ? Integer.parseInt((String) url.getFirst("pageToken")) : 0;
+
+        List<Event> page = new ArrayList<>();
+        int matched = 0;
+        boolean more = false;
+        for (Event event : calendar) {
+            if (startOf(event) >= timeMax)
+                break;
+            if (endOf(event) <= timeMin)
+                continue;
+            if (matched++ < skip)
+                continue;
+            if (page.size() == pageSize) {
+                more = true;
+                break;
+            }
+            page.add(event);
+        }
+
+        return OfflineTransport.ok(new Events().setItems(page).setTimeZone("UTC").setSummary(SyntheticGmail.ADDRESS)
+                .setNextPageToken(more ? String.valueOf(skip + page.size()) : null));
+    }
+
+    private Event insert(Event request) {
+        if (request.getStart() == null || request.getEnd() == null)
+            throw new IllegalArgumentException("Missing start or end time");
+        if (endOf(request) < startOf(request))
+            throw new IllegalArgumentException("The specified time range is empty");
+
+        Event event = request.clone().setId("evt" + nextId++).setStatus("confirmed")
+                .setHtmlLink("https://calendar.example.com/event?eid=evt" + (nextId - 1))
+                .setCreated(new DateTime(System.currentTimeMillis()));
+
+        // Insertion point keeps the list sorted by start time
+        int at = events.size();
+        while (at > 0 && startOf(events.get(at - 1)) > startOf(event))
+            at--;
+        events.add(at, event);
+        return event;
+    }
+
+    private MockLowLevelHttpResponse freeBusy(FreeBusyRequest request) throws IOException {
+        if (request.getTimeMin() == null || request.getTimeMax() == null)
+            throw new IllegalArgumentException("timeMin and timeMax are required");
+        long from = request.getTimeMin().getValue();
+        long to = request.getTimeMax().getValue();
+
+        Map<String, FreeBusyCalendar> calendars = new LinkedHashMap<>();
+        for (FreeBusyRequestItem item : (request.getItems() != null) ? request.getItems() : List.<FreeBusyRequestItem>of()) {
+            String id = item.getId();
+            if (isPrimary(id)) {
+                List<TimePeriod> busy = new ArrayList<>();
+                for (Event event : events) {
+                    if (startOf(event) >= to)
+                        break;
+                    if (endOf(event) > from)
+                        busy.add(new TimePeriod().setStart(event.getStart().getDateTime()).setEnd(event.getEnd().getDateTime()));
+                }
+                calendars.put(id, new FreeBusyCalendar().setBusy(busy));
+            } else if (CALENDARS.stream().anyMatch(c -> c.getId().equals(id))) {
+                calendars.put(id, new FreeBusyCalendar().setBusy(List.of()));
+            } else {
+                calendars.put(id, new FreeBusyCalendar().setBusy(List.of())
+                        .setErrors(List.of(new Error().setDomain("global").setReason("notFound"))));
+            }
+        }
+
+        return OfflineTransport.ok(new FreeBusyResponse().setKind("calendar#freeBusy")
+                .setTimeMin(request.getTimeMin()).setTimeMax(request.getTimeMax()).setCalendars(calendars));
+    }
+
+    private static boolean isPrimary(String calendarId) {
+        return calendarId.equals("primary") || calendarId.equals(SyntheticGmail.ADDRESS);
+    }
+
+    private static int indexOf(List<Event> calendar, String eventId) {
+        for (int i = 0; i < calendar.size(); i++) {
+            if (calendar.get(i).getId().equals(eventId))
+                return i;
+        }
+        return -1;
+    }
+
+    private static long time(Object rfc3339, long fallback) {
+        return (rfc3339 == null) ? fallback : DateTime.parseRfc3339(rfc3339.toString()).getValue();
+    }
+
+    // All-day events carry a date instead of a dateTime
+    private static long startOf(Event event) {
+        EventDateTime start = event.getStart();
+        return (start.getDateTime() != null) ? start.getDateTime().getValue() : start.getDate().getValue();
+    }
+
+    private static long endOf(Event event) {
+        EventDateTime end = event.getEnd();
+        return (end.getDateTime() != null) ? end.getDateTime().getValue() : end.getDate().getValue();
+    }
+}
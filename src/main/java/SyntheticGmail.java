@@ -0,0 +1,664 @@
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.gmail.model.BatchModifyMessagesRequest;
+import com.google.api.services.gmail.model.History;
+import com.google.api.services.gmail.model.HistoryLabelAdded;
+import com.google.api.services.gmail.model.HistoryLabelRemoved;
+import com.google.api.services.gmail.model.HistoryMessageAdded;
+import com.google.api.services.gmail.model.Label;
+import com.google.api.services.gmail.model.ListHistoryResponse;
+import com.google.api.services.gmail.model.ListLabelsResponse;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.ListThreadsResponse;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import com.google.api.services.gmail.model.ModifyMessageRequest;
+import com.google.api.services.gmail.model.Profile;
+import com.google.api.services.gmail.model.Thread;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/*
+ * Gmail mailbox behind SyntheticTransport. Message i (0 = oldest) is generated from the seed whenever it is asked
+ * for, so a 100,000-message inbox costs little until it is read; only label changes, sent replies and arrivals are
+ * stored. Every change gets a history record, so incremental sync and the inbox watcher behave as against Gmail.
+ *
+ * Search (q) understands is:unread/read/starred, in:inbox/sent/trash/anywhere, label:NAME, from:TEXT, subject:TEXT,
+ * plain words (Subject, From and snippet) and a leading '-' for negation; other operators match everything.
+ */
+class SyntheticGmail {
+
+    static final String ADDRESS = "support@example.com";
+
+    private static final long ID_BASE = 0x18f0000000000000L;
+    private static final long BASE_HISTORY_ID = 1_000_000;
+    private static final long MESSAGE_SPACING_MILLIS = 7 * 60_000;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final List<String> SYSTEM_LABELS = List.of("INBOX", "SENT", "TRASH", "SPAM", "UNREAD", "STARRED",
+            "IMPORTANT", "DRAFT", "CATEGORY_PERSONAL", "CATEGORY_UPDATES", "CATEGORY_PROMOTIONS");
+
+    private static final String[] TOPICS = {"Order has not arrived", "Refund request", "Cannot log in to my account",
+            "Invoice is wrong", "Password reset link expired", "App crashes on startup", "Billing question",
+            "Change of delivery address", "Urgent: service outage", "Feature request", "Damaged item received",
+            "Subscription cancellation"};
+    private static final String[] NAMES = {"Ada Lovelace", "Alan Turing", "Grace Hopper", "Edsger Dijkstra",
+            "Barbara Liskov", "Donald Knuth", "Frances Allen", "Ken Thompson", "Margaret Hamilton", "John Backus"};
+    private static final String[] SENTENCES = {"I ordered this two weeks ago and the tracking page has not changed.",
+            "Could you please look into it as soon as possible?", "I have attached the order number below.",
+            "This is the second time I am writing about this.", "The error message says my session has expired.",
+            "Thanks in advance for your help.", "Please let me know if you need any more details.",
+            "I was charged twice for the same month.", "It worked fine until the last update.",
+            "My colleague has the same problem on a different device."};
+
+    private static final DateTimeFormatter RFC_2822 = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    /* Header fields every query and listing needs, kept once a message has been looked at */
+    private record Meta(String threadId, String subject, String from, String snippet, long internalDate) {
+    }
+
+    private final SyntheticTransport.Spec spec;
+    private final long createdAt;
+
+    private int total;                                                 // generated + arrived + sent
+    private int arrived;
+    private final List<Meta> meta = new ArrayList<>();
+    private final Map<Integer, List<String>> labelChanges = new HashMap<>();
+    private final Map<Integer, Long> changedAt = new HashMap<>();      // history ID of a message's last change
+    private final Map<Integer, Message> stored = new HashMap<>();      // sent replies
+    private final Map<Integer, Long> arrivedAt = new HashMap<>();
+    private final Map<String, List<Integer>> threadExtras = new HashMap<>();
+    private final Map<String, Label> labels = new LinkedHashMap<>();
+    private final List<History> history = new ArrayList<>();
+    private long historyId = BASE_HISTORY_ID;
+
+    SyntheticGmail(SyntheticTransport.Spec spec, long now) {
+        this.spec = spec;
+        this.createdAt = now;
+        this.total = spec.messages();
+        for (String id : SYSTEM_LABELS)
+            labels.put(id, new Label().setId(id).setName(id).setType("system"));
+    }
+
+    synchronized MockLowLevelHttpResponse handle(String method, GenericUrl url, String body) throws IOException {
+        advanceArrivals();
+
+        List<String> parts = url.getPathParts();                       // "", gmail, v1, users, me, ...
+        List<String> rest = parts.subList(Math.min(5, parts.size()), parts.size());
+        String resource = rest.isEmpty() ? "" : rest.get(0);
+        String id = (rest.size() > 1) ? rest.get(1) : null;
+        String action = (rest.size() > 2) ? rest.get(2) : null;
+
+        switch (resource) {
+            case "profile":
+                return OfflineTransport.ok(new Profile().setEmailAddress(ADDRESS).setMessagesTotal(total)
+                        .setThreadsTotal(total / spec.threadSize()).setHistoryId(BigInteger.valueOf(historyId)));
+            case "history":
+                return listHistory(url);
+            case "labels":
+                return labels(method, id, body);
+            case "threads":
+                if (id == null)
+                    return listThreads(url);
+                return getThread(id, url);
+            case "messages":
+                break;
+            default:
+                return OfflineTransport.notFound(method + " " + url.getRawPath());
+        }
+
+        if (id == null)
+            return listMessages(url);
+        if (id.equals("send") && method.equals("POST"))
+            return send(body);
+        if (id.equals("batchModify") && method.equals("POST")) {
+            BatchModifyMessagesRequest request = OfflineTransport.parse(body, BatchModifyMessagesRequest.class);
+            List<Integer> indexes = new ArrayList<>();
+            for (String messageId : nullToEmpty(request.getIds())) {
+                int i = indexOf(messageId);
+                if (i < 0)
+                    return OfflineTransport.notFound("message " + messageId);
+                indexes.add(i);
+            }
+            MockLowLevelHttpResponse invalid = checkLabels(request.getAddLabelIds(), request.getRemoveLabelIds());
+            if (invalid != null)
+                return invalid;
+            for (int i : indexes)
+                modify(i, request.getAddLabelIds(), request.getRemoveLabelIds());
+            return OfflineTransport.noContent();
+        }
+
+        int i = indexOf(id);
+        if (i < 0)
+            return OfflineTransport.notFound("message " + id);
+
+        if (action == null && method.equals("GET"))
+            return OfflineTransport.ok(message(i, url.getFirst("format"), url.getAll("metadataHeaders")));
+        if ("attachments".equals(action))
+            return OfflineTransport.notFound("attachment");   // generated messages have none
+        if (!method.equals("POST"))
+            return OfflineTransport.notFound(method + " " + url.getRawPath());
+
+        switch (String.valueOf(action)) {
+            case "modify": {
+                ModifyMessageRequest request = OfflineTransport.parse(body, ModifyMessageRequest.class);
+                MockLowLevelHttpResponse invalid = checkLabels(request.getAddLabelIds(), request.getRemoveLabelIds());
+                if (invalid != null)
+                    return invalid;
+                modify(i, request.getAddLabelIds(), request.getRemoveLabelIds());
+                break;
+            }
+            case "trash":
+                modify(i, List.of("TRASH"), List.of("INBOX"));
+                break;
+            case "untrash":
+                modify(i, List.of("INBOX"), List.of("TRASH"));
+                break;
+            default:
+                return OfflineTransport.notFound(method + " " + url.getRawPath());
+        }
+        return OfflineTransport.ok(message(i, "minimal", null));
+    }
+
+    // ---- messages ------------------------------------------------------------------------------------------------
+
+    private MockLowLevelHttpResponse listMessages(GenericUrl url) throws IOException {
+        IntPredicate matches = query(url);
+        int pageSize = pageSize(url);
+        int from = (url.getFirst("pageToken") != null) ? Integer.parseInt((String) url.getFirst("pageToken")) : total - 1;
+
+        List<Message> page = new ArrayList<>();
+        int i = from;
+        for (; i >= 0 && page.size() < pageSize; i--) {
+            if (matches.test(i))
+                page.add(new Message().setId(idOf(i)).setThreadId(meta(i).threadId()));
+        }
+
+        return OfflineTransport.ok(new ListMessagesResponse()
+                .setMessages(page.isEmpty() ? null : page)
+                .setNextPageToken((i >= 0) ? String.valueOf(i) : null)
+                .setResultSizeEstimate((long) page.size()));
+    }
+
+    /* A message in the requested format: minimal (no payload), metadata (headers) or full (headers and body) */
+    private Message message(int i, Object format, Object metadataHeaders) {
+        Message message = stored.containsKey(i) ? stored.get(i).clone() : generate(i, !"minimal".equals(format)
+                && !"metadata".equals(format));
+        message.setLabelIds(labelsOf(i));
+        message.setHistoryId(BigInteger.valueOf(changedAt.getOrDefault(i, BASE_HISTORY_ID)));
+
+        if ("minimal".equals(format)) {
+            message.setPayload(null);
+        } else if ("metadata".equals(format) && message.getPayload() != null) {
+            MessagePart payload = message.getPayload().clone();
+            if (metadataHeaders instanceof Collection<?> wanted && !wanted.isEmpty()) {
+                List<MessagePartHeader> kept = new ArrayList<>();
+                for (MessagePartHeader header : payload.getHeaders()) {
+                    for (Object name : wanted) {
+                        if (header.getName().equalsIgnoreCase(String.valueOf(name)))
+                            kept.add(header);
+                    }
+                }
+                payload.setHeaders(kept);
+            }
+            payload.setParts(null);
+            payload.setBody(null);
+            message.setPayload(payload);
+        }
+        return message;
+    }
+
+    private Message generate(int i, boolean withBody) {
+        Meta m = meta(i);
+        int threadRoot = threadRoot(i);
+        Random random = random(i);
+
+        List<MessagePartHeader> headers = new ArrayList<>();
+        headers.add(header("Delivered-To", ADDRESS));
+        headers.add(header("Received", "from mail.example.net by mx.google.com with ESMTPS id s" + i));
+        headers.add(header("Date", RFC_2822.format(Instant.ofEpochMilli(m.internalDate()))));
+        headers.add(header("From", m.from()));
+        headers.add(header("To", ADDRESS));
+        headers.add(header("Subject", m.subject()));
+        headers.add(header("Message-ID", messageIdHeader(i)));
+        if (i != threadRoot) {
+            headers.add(header("In-Reply-To", messageIdHeader(i - 1)));
+            headers.add(header("References", messageIdHeader(threadRoot) + (i - 1 > threadRoot ? " " + messageIdHeader(i - 1) : "")));
+        }
+        headers.add(header("MIME-Version", "1.0"));
+        headers.add(header("Content-Type", "multipart/alternative; boundary=\"b" + i + "\""));
+
+        MessagePart payload = new MessagePart().setPartId("").setMimeType("multipart/alternative").setHeaders(headers)
+                .setFilename("").setBody(new MessagePartBody().setSize(0));
+        if (withBody) {
+            String text = body(random);
+            String html = "<html><body><div dir=\"ltr\"><p>" + text.replace("\n\n", "</p><p>") + "</p></div></body></html>";
+            payload.setParts(List.of(textPart("0", "text/plain", text), textPart("1", "text/html", html)));
+        }
+
+        return new Message().setId(idOf(i)).setThreadId(m.threadId()).setSnippet(m.snippet())
+                .setInternalDate(m.internalDate()).setSizeEstimate(2_000 + random.nextInt(6_000)).setPayload(payload);
+    }
+
+    private MockLowLevelHttpResponse send(String body) throws IOException {
+        Message request = OfflineTransport.parse(body, Message.class);
+        if (request.getRaw() == null)
+            throw new IllegalArgumentException("'raw' RFC822 payload is required");
+
+        // Only the top-level headers are needed; the body is kept as the snippet
+        String raw = new String(Base64.getUrlDecoder().decode(request.getRaw()), StandardCharsets.UTF_8);
+        int split = raw.indexOf("\r\n\r\n");
+        String head = (split < 0) ? raw : raw.substring(0, split);
+        String text = (split < 0) ? "" : raw.substring(split + 4);
+
+        int i = total++;
+        String threadId = (request.getThreadId() != null && indexOf(request.getThreadId()) >= 0)
+                ? request.getThreadId() : idOf(i);
+        long now = System.currentTimeMillis();
+
+        List<MessagePartHeader> headers = new ArrayList<>();
+        headers.add(header("From", ADDRESS));
+        for (String line : head.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && !Character.isWhitespace(line.charAt(0))) {
+                String name = line.substring(0, colon);
+                if (name.equalsIgnoreCase("To") || name.equalsIgnoreCase("Subject") || name.equalsIgnoreCase("In-Reply-To")
+                        || name.equalsIgnoreCase("References"))
+                    headers.add(header(name, line.substring(colon + 1).trim()));
+            }
+        }
+        headers.add(header("Date", RFC_2822.format(Instant.ofEpochMilli(now))));
+        headers.add(header("Message-ID", messageIdHeader(i)));
+
+        String snippet = text.length() > 100 ? text.substring(0, 100) : text;
+        Message message = new Message().setId(idOf(i)).setThreadId(threadId).setSnippet(snippet).setInternalDate(now)
+                .setSizeEstimate(raw.length())
+                .setPayload(new MessagePart().setPartId("").setMimeType("text/plain").setHeaders(headers).setFilename("")
+                        .setBody(new MessagePartBody().setSize(text.length())
+                                .setData(Base64.getUrlEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8)))));
+        stored.put(i, message);
+        labelChanges.put(i, List.of("SENT"));
+        if (!threadId.equals(idOf(i)))
+            threadExtras.computeIfAbsent(threadId, k -> new ArrayList<>()).add(i);
+        recordAdded(i);
+
+        return OfflineTransport.ok(new Message().setId(idOf(i)).setThreadId(threadId).setLabelIds(List.of("SENT")));
+    }
+
+    // ---- labels --------------------------------------------------------------------------------------------------
+
+    private MockLowLevelHttpResponse labels(String method, String id, String body) throws IOException {
+        if (id != null) {
+            Label label = labels.get(id);
+            return (label != null) ? OfflineTransport.ok(label) : OfflineTransport.notFound("label " + id);
+        }
+        if (method.equals("GET"))
+            return OfflineTransport.ok(new ListLabelsResponse().setLabels(new ArrayList<>(labels.values())));
+
+        Label request = OfflineTransport.parse(body, Label.class);
+        if (request.getName() == null || request.getName().isBlank())
+            throw new IllegalArgumentException("Label name is required");
+        for (Label existing : labels.values()) {
+            if (existing.getName().equalsIgnoreCase(request.getName()))
+                return OfflineTransport.error(409, "duplicate", "Label name exists or conflicts");
+        }
+
+        Label label = request.clone().setId("Label_" + (labels.size() - SYSTEM_LABELS.size() + 1)).setType("user");
+        labels.put(label.getId(), label);
+        return OfflineTransport.ok(label);
+    }
+
+    private MockLowLevelHttpResponse checkLabels(List<String> add, List<String> remove) {
+        for (String id : nullToEmpty(add)) {
+            if (!labels.containsKey(id))
+                return OfflineTransport.error(400, "invalidArgument", "Invalid label: " + id);
+        }
+        for (String id : nullToEmpty(remove)) {
+            if (!labels.containsKey(id))
+                return OfflineTransport.error(400, "invalidArgument", "Invalid label: " + id);
+        }
+        return null;
+    }
+
+    private void modify(int i, List<String> add, List<String> remove) {
+        List<String> before = labelsOf(i);
+        Set<String> after = new LinkedHashSet<>(before);
+        after.removeAll(nullToEmpty(remove));
+        after.addAll(nullToEmpty(add));
+
+        List<String> added = new ArrayList<>(after);
+        added.removeAll(before);
+        List<String> removed = new ArrayList<>(before);
+        removed.removeAll(after);
+        if (added.isEmpty() && removed.isEmpty())
+            return;
+
+        List<String> current = List.copyOf(after);
+        labelChanges.put(i, current);
+
+        // Like Gmail, label history carries the message's full current label set
+        Message changed = new Message().setId(idOf(i)).setThreadId(meta(i).threadId()).setLabelIds(current);
+        History h = newHistory(i, changed);
+        if (!added.isEmpty())
+            h.setLabelsAdded(List.of(new HistoryLabelAdded().setMessage(changed).setLabelIds(added)));
+        if (!removed.isEmpty())
+            h.setLabelsRemoved(List.of(new HistoryLabelRemoved().setMessage(changed).setLabelIds(removed)));
+    }
+
+    // ---- threads -------------------------------------------------------------------------------------------------
+
+    private MockLowLevelHttpResponse listThreads(GenericUrl url) throws IOException {
+        IntPredicate matches = query(url);
+        int pageSize = pageSize(url);
+        int from = (url.getFirst("pageToken") != null) ? Integer.parseInt((String) url.getFirst("pageToken")) : total - 1;
+
+        // A thread is listed at its newest matching message, so it never shows up on two pages
+        List<Thread> page = new ArrayList<>();
+        int i = from;
+        for (; i >= 0 && page.size() < pageSize; i--) {
+            if (!matches.test(i))
+                continue;
+            List<Integer> members = threadMembers(meta(i).threadId());
+            int newest = -1;
+            for (int member : members) {
+                if (member > newest && matches.test(member))
+                    newest = member;
+            }
+            if (newest == i)
+                page.add(new Thread().setId(meta(i).threadId()).setSnippet(meta(i).snippet())
+                        .setHistoryId(threadHistoryId(members)));
+        }
+
+        return OfflineTransport.ok(new ListThreadsResponse()
+                .setThreads(page.isEmpty() ? null : page)
+                .setNextPageToken((i >= 0) ? String.valueOf(i) : null)
+                .setResultSizeEstimate((long) page.size()));
+    }
+
+    private MockLowLevelHttpResponse getThread(String threadId, GenericUrl url) throws IOException {
+        if (indexOf(threadId) < 0)
+            return OfflineTransport.notFound("thread " + threadId);
+
+        List<Integer> members = threadMembers(threadId);
+        List<Message> messages = new ArrayList<>(members.size());
+        for (int i : members)
+            messages.add(message(i, url.getFirst("format"), url.getAll("metadataHeaders")));
+        return OfflineTransport.ok(new Thread().setId(threadId).setHistoryId(threadHistoryId(members)).setMessages(messages)
+                .setSnippet(messages.get(messages.size() - 1).getSnippet()));
+    }
+
+    // Oldest first, as threads.get returns them
+    private List<Integer> threadMembers(String threadId) {
+        int root = indexOf(threadId);
+        List<Integer> members = new ArrayList<>();
+        if (root < spec.messages()) {
+            for (int i = root; i < Math.min(root + spec.threadSize(), spec.messages()); i++)
+                members.add(i);
+        } else {
+            members.add(root);
+        }
+        members.addAll(threadExtras.getOrDefault(threadId, Collections.emptyList()));
+        return members;
+    }
+
+    private BigInteger threadHistoryId(List<Integer> members) {
+        long max = BASE_HISTORY_ID;
+        for (int i : members)
+            max = Math.max(max, changedAt.getOrDefault(i, BASE_HISTORY_ID));
+        return BigInteger.valueOf(max);
+    }
+
+    // ---- history -------------------------------------------------------------------------------------------------
+
+    private MockLowLevelHttpResponse listHistory(GenericUrl url) throws IOException {
+        Object start = url.getFirst("startHistoryId");
+        if (start == null)
+            throw new IllegalArgumentException("startHistoryId is required");
+        long startId = Long.parseLong(start.toString());
+        if (startId < BASE_HISTORY_ID || startId > historyId)
+            return OfflineTransport.notFound("history " + startId);   // unknown here: clients fall back to a full sync
+
+        int offset = (url.getFirst("pageToken") != null) ? Integer.parseInt((String) url.getFirst("pageToken")) : 0;
+        int first = (int) (startId - BASE_HISTORY_ID) + offset;        // record k has ID BASE_HISTORY_ID + k + 1
+        int end = Math.min(history.size(), first + MAX_PAGE_SIZE);
+
+        List<History> page = new ArrayList<>(history.subList(first, end));
+        return OfflineTransport.ok(new ListHistoryResponse()
+                .setHistory(page.isEmpty() ? null : page)
+                .setHistoryId(BigInteger.valueOf(historyId))
+                .setNextPageToken((end < history.size()) ? String.valueOf(offset + page.size()) : null));
+    }
+
+    private History newHistory(int i, Message message) {
+        History h = new History().setId(BigInteger.valueOf(++historyId)).setMessages(List.of(message));
+        history.add(h);
+        changedAt.put(i, historyId);
+        return h;
+    }
+
+    private void recordAdded(int i) {
+        Message added = new Message().setId(idOf(i)).setThreadId(meta(i).threadId()).setLabelIds(labelsOf(i));
+        newHistory(i, added).setMessagesAdded(List.of(new HistoryMessageAdded().setMessage(added)));
+    }
+
+    // New inbound mail at the configured rate, materialized whenever the mailbox is next asked for anything
+    private void advanceArrivals() {
+        if (spec.arrivalsPerMinute() <= 0)
+            return;
+        long due = (long) ((System.currentTimeMillis() - createdAt) / 60_000.0 * spec.arrivalsPerMinute());
+        while (arrived < due) {
+            int i = total++;
+            arrivedAt.put(i, createdAt + (long) (++arrived * 60_000 / spec.arrivalsPerMinute()));
+            recordAdded(i);
+        }
+    }
+
+    // ---- search --------------------------------------------------------------------------------------------------
+
+    private IntPredicate query(GenericUrl url) {
+        boolean includeSpamTrash = "true".equals(String.valueOf(url.getFirst("includeSpamTrash")));
+        IntPredicate matches = i -> true;
+
+        Object labelIds = url.getAll("labelIds");
+        if (labelIds instanceof Collection<?> required && !required.isEmpty()) {
+            for (Object id : required) {
+                String labelId = String.valueOf(id);
+                matches = matches.and(i -> labelsOf(i).contains(labelId));
+                includeSpamTrash |= labelId.equals("TRASH") || labelId.equals("SPAM");
+            }
+        }
+
+        Object q = url.getFirst("q");
+        if (q != null) {
+            for (String term : q.toString().trim().split("\\s+")) {
+                if (term.isEmpty())
+                    continue;
+                boolean negate = term.startsWith("-") && term.length() > 1;
+                String t = negate ? term.substring(1) : term;
+                String lower = t.toLowerCase(Locale.ROOT);
+                includeSpamTrash |= lower.equals("in:trash") || lower.equals("in:spam") || lower.equals("in:anywhere")
+                        || lower.equals("label:trash") || lower.equals("label:spam");
+
+                IntPredicate p = term(lower);
+                matches = matches.and(negate ? p.negate() : p);
+            }
+        }
+
+        if (!includeSpamTrash)
+            matches = matches.and(i -> !labelsOf(i).contains("TRASH") && !labelsOf(i).contains("SPAM"));
+        return matches;
+    }
+
+    private IntPredicate term(String term) {
+        int colon = term.indexOf(':');
+        String operator = (colon > 0) ? term.substring(0, colon) : "";
+        String value = (colon > 0) ? term.substring(colon + 1) : term;
+
+        switch (operator) {
+            case "is":
+                return switch (value) {
+                    case "unread" -> i -> labelsOf(i).contains("UNREAD");
+                    case "read" -> i -> !labelsOf(i).contains("UNREAD");
+                    case "starred" -> i -> labelsOf(i).contains("STARRED");
+                    default -> i -> true;
+                };
+            case "in":
+                return value.equals("anywhere") ? i -> true : hasLabelNamed(value);
+            case "label":
+                return hasLabelNamed(value);
+            case "from":
+                return i -> meta(i).from().toLowerCase(Locale.ROOT).contains(value);
+            case "subject":
+                return i -> meta(i).subject().toLowerCase(Locale.ROOT).contains(value);
+            case "":
+                return i -> {
+                    Meta m = meta(i);
+                    return m.subject().toLowerCase(Locale.ROOT).contains(value)
+                            || m.from().toLowerCase(Locale.ROOT).contains(value)
+                            || m.snippet().toLowerCase(Locale.ROOT).contains(value);
+                };
+            default:
+                return i -> true;   // after:, newer_than:, has:, ... are not modelled
+        }
+    }
+
+    // Gmail writes "Priority/1" as label:priority-1 in queries; both spellings are accepted
+    private IntPredicate hasLabelNamed(String name) {
+        String wanted = name.replace('/', '-').replace(' ', '-');
+        String id = null;
+        for (Label label : labels.values()) {
+            if (label.getName().toLowerCase(Locale.ROOT).replace('/', '-').replace(' ', '-').equals(wanted))
+                id = label.getId();
+        }
+        if (id == null)
+            return i -> false;
+        String labelId = id;
+        return i -> labelsOf(i).contains(labelId);
+    }
+
+    // ---- generation ----------------------------------------------------------------------------------------------
+
+    private Meta meta(int i) {
+        while (meta.size() <= i)
+            meta.add(null);
+        Meta m = meta.get(i);
+        if (m != null)
+            return m;
+
+        Message sent = stored.get(i);
+        if (sent != null) {
+            Ticket t = Ticket.from(sent);
+            m = new Meta(sent.getThreadId(), t.subject(), t.from(), sent.getSnippet(), sent.getInternalDate());
+        } else {
+            int root = threadRoot(i);
+            Random thread = random(root);
+            String topic = TOPICS[thread.nextInt(TOPICS.length)];
+            String name = NAMES[thread.nextInt(NAMES.length)];
+            String from = (thread.nextInt(10) == 0)
+                    ? "Notifications <no-reply@notifications.example.com>"
+                    : name + " <" + name.toLowerCase(Locale.ROOT).replace(' ', '.') + root + "@example.net>";
+            String subject = ((i == root) ? "" : "Re: ") + topic + " (#" + (10_000 + root) + ")";
+            String snippet = body(random(i)).replace('\n', ' ');
+            m = new Meta(idOf(root), subject, from, snippet.substring(0, Math.min(100, snippet.length())), dateOf(i));
+        }
+        meta.set(i, m);
+        return m;
+    }
+
+    private List<String> labelsOf(int i) {
+        List<String> changed = labelChanges.get(i);
+        if (changed != null)
+            return changed;
+
+        boolean unread = random(i).nextDouble() < spec.unreadShare() || arrivedAt.containsKey(i);
+        return unread ? List.of("INBOX", "UNREAD", "CATEGORY_PERSONAL") : List.of("INBOX", "CATEGORY_PERSONAL");
+    }
+
+    private long dateOf(int i) {
+        Long arrival = arrivedAt.get(i);
+        if (arrival != null)
+            return arrival;
+        return createdAt - (long) (spec.messages() - i) * MESSAGE_SPACING_MILLIS;
+    }
+
+    private int threadRoot(int i) {
+        return (i < spec.messages()) ? i - i % spec.threadSize() : i;
+    }
+
+    // Mixed (murmur3 finalizer) so neighbouring messages get unrelated streams
+    private Random random(int i) {
+        long z = spec.seed() * 0x9E3779B97F4A7C15L + i;
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return new Random(z ^ (z >>> 33));
+    }
+
+    private static String body(Random random) {
+        StringBuilder text = new StringBuilder("Hello,\n\n");
+        int sentences = 2 + random.nextInt(12);
+        for (int s = 0; s < sentences; s++) {
+            text.append(SENTENCES[random.nextInt(SENTENCES.length)]).append(' ');
+            if (random.nextInt(4) == 0)
+                text.append("\n\n");
+        }
+        return text.append("\n\nOrder number: ").append(100_000 + random.nextInt(900_000)).append("\n\nBest regards").toString();
+    }
+
+    private static MessagePart textPart(String partId, String mimeType, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return new MessagePart().setPartId(partId).setMimeType(mimeType).setFilename("")
+                .setHeaders(List.of(header("Content-Type", mimeType + "; charset=\"UTF-8\"")))
+                .setBody(new MessagePartBody().setSize(bytes.length).setData(Base64.getUrlEncoder().encodeToString(bytes)));
+    }
+
+    private static MessagePartHeader header(String name, String value) {
+        return new MessagePartHeader().setName(name).setValue(value);
+    }
+
+    private static String messageIdHeader(int i) {
+        return "<synthetic-" + i + "@mail.example.net>";
+    }
+
+    private static String idOf(int i) {
+        return Long.toHexString(ID_BASE + i);
+    }
+
+    private int indexOf(String id) {
+        try {
+            long i = Long.parseLong(id, 16) - ID_BASE;
+            return (i >= 0 && i < total) ? (int) i : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int pageSize(GenericUrl url) {
+        Object max = url.getFirst("maxResults");
+        return (max == null) ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.parseInt(max.toString())));
+    }
+
+    private static <T> List<T> nullToEmpty(List<T> list) {
+        return (list == null) ? Collections.emptyList() : list;
+    }
+}
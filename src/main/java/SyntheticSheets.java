@@ -0,0 +1,481 @@
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.drive.model.File;
+import com.google.api.services.sheets.v4.model.AddSheetRequest;
+import com.google.api.services.sheets.v4.model.AddSheetResponse;
+import com.google.api.services.sheets.v4.model.AppendValuesResponse;
+import com.google.api.services.sheets.v4.model.BatchGetValuesResponse;
+import com.google.api.services.sheets.v4.model.BatchUpdateSpreadsheetRequest;
+import com.google.api.services.sheets.v4.model.BatchUpdateSpreadsheetResponse;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesRequest;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesResponse;
+import com.google.api.services.sheets.v4.model.CellData;
+import com.google.api.services.sheets.v4.model.ExtendedValue;
+import com.google.api.services.sheets.v4.model.GridCoordinate;
+import com.google.api.services.sheets.v4.model.GridProperties;
+import com.google.api.services.sheets.v4.model.GridRange;
+import com.google.api.services.sheets.v4.model.Request;
+import com.google.api.services.sheets.v4.model.Response;
+import com.google.api.services.sheets.v4.model.RowData;
+import com.google.api.services.sheets.v4.model.Sheet;
+import com.google.api.services.sheets.v4.model.SheetProperties;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
+import com.google.api.services.sheets.v4.model.SpreadsheetProperties;
+import com.google.api.services.sheets.v4.model.UpdateCellsRequest;
+import com.google.api.services.sheets.v4.model.UpdateValuesResponse;
+import com.google.api.services.sheets.v4.model.ValueRange;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Sheets backend for SyntheticTransport. Spreadsheet "synthetic-roster" holds a generated class roster (header plus
+ * the configured number of rows) in Sheet1; spreadsheets.create makes new empty ones. Cells are stored and returned
+ * as strings, the way values.get returns formatted values, and trailing empty cells and rows are left out.
+ * A1 ranges may be open-ended ("Sheet1!A:E", "Sheet1!D2:D"); a range without a sheet name means the first tab.
+ * Drive files.get reports a version that goes up with every write, like the real file version.
+ * spreadsheets.batchUpdate understands addSheet (with or without a sheetId) and updateCells; other requests are ignored.
+ */
+class SyntheticSheets {
+
+    static final String ROSTER_ID = "synthetic-roster";
+
+    private static final Pattern CELL = Pattern.compile("([A-Za-z]*)(\\d*)");
+    private static final String[] FIRST = {"Ada", "Alan", "Grace", "Edsger", "Barbara", "Donald", "Frances", "John",
+            "Margaret", "Ken", "Radia", "Tim"};
+    private static final String[] LAST = {"Lovelace", "Turing", "Hopper", "Dijkstra", "Liskov", "Knuth", "Allen",
+            "Backus", "Hamilton", "Thompson", "Perlman", "Berners-Lee"};
+
+    private static final class Tab {
+        final int sheetId;
+        final String title;
+        final List<List<Object>> rows = new ArrayList<>();
+
+        Tab(int sheetId, String title) {
+            this.sheetId = sheetId;
+            this.title = title;
+        }
+    }
+
+    private static final class Book {
+        final String id;
+        final String title;
+        final Map<String, Tab> tabs = new LinkedHashMap<>();
+        int nextSheetId;
+        long version = 1;
+        long modifiedAt = System.currentTimeMillis();
+
+        void changed() {
+            version++;
+            modifiedAt = System.currentTimeMillis();
+        }
+
+        Book(String id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+
+        Tab addTab(String title) {
+            return addTab(nextSheetId, title);
+        }
+
+        Tab addTab(int sheetId, String title) {
+            Tab tab = new Tab(sheetId, title);
+            tabs.put(title, tab);
+            nextSheetId = Math.max(nextSheetId, sheetId + 1);
+            return tab;
+        }
+
+        Tab tab(int sheetId) {
+            for (Tab tab : tabs.values()) {
+                if (tab.sheetId == sheetId)
+                    return tab;
+            }
+            return null;
+        }
+    }
+
+    /* Zero-based, inclusive cell rectangle; open ends are Integer.MAX_VALUE */
+    private record Range(Tab tab, int firstRow, int lastRow, int firstCol, int lastCol) {
+    }
+
+    private final Map<String, Book> books = new HashMap<>();
+    private int created;
+
+    SyntheticSheets(SyntheticTransport.Spec spec) {
+        Book roster = new Book(ROSTER_ID, "Synthetic roster (" + spec.rows() + " students)");
+        Tab sheet = roster.addTab("Sheet1");
+        sheet.rows.add(new ArrayList<>(List.of("Name", "Student ID", "Grade", "Score", "Notes")));
+
+        Random random = new Random(spec.seed());
+        for (int i = 0; i < spec.rows(); i++) {
+            int score = 40 + random.nextInt(61);
+            List<Object> row = new ArrayList<>(5);
+            row.add(FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)]);
+            row.add(String.valueOf(100_000 + i));
+            row.add(score >= 90 ? "A" : score >= 80 ? "B" : score >= 70 ? "C" : score >= 60 ? "D" : "F");
+            row.add(String.valueOf(score));
+            if (random.nextInt(5) == 0)
+                row.add("Missed assignment " + (1 + random.nextInt(12)));
+            sheet.rows.add(row);
+        }
+        books.put(ROSTER_ID, roster);
+    }
+
+    synchronized MockLowLevelHttpResponse handle(String method, GenericUrl url, String body) throws IOException {
+        List<String> parts = url.getPathParts();                       // "", v4, spreadsheets, ...
+        List<String> rest = parts.subList(Math.min(3, parts.size()), parts.size());
+
+        if (rest.isEmpty() || (rest.size() == 1 && rest.get(0).isEmpty())) {
+            if (method.equals("POST"))
+                return OfflineTransport.ok(create(OfflineTransport.parse(body, Spreadsheet.class)));
+            return OfflineTransport.notFound(method + " " + url.getRawPath());
+        }
+
+        String id = rest.get(0);
+        boolean batchUpdate = id.endsWith(":batchUpdate");
+        if (batchUpdate)
+            id = id.substring(0, id.length() - ":batchUpdate".length());
+        Book book = books.get(id);
+        if (book == null)
+            return OfflineTransport.notFound("spreadsheet " + id);
+
+        if (rest.size() == 1) {
+            if (batchUpdate && method.equals("POST"))
+                return batchUpdate(book, OfflineTransport.parse(body, BatchUpdateSpreadsheetRequest.class));
+            if (method.equals("GET"))
+                return OfflineTransport.ok(describe(book));
+        } else if (rest.size() == 2 && rest.get(1).equals("values:batchGet") && method.equals("GET")) {
+            Object ranges = url.getAll("ranges");
+            List<ValueRange> valueRanges = new ArrayList<>();
+            if (ranges instanceof Collection<?> requested) {
+                for (Object range : requested)
+                    valueRanges.add(read(book, String.valueOf(range)));
+            }
+            return OfflineTransport.ok(new BatchGetValuesResponse().setSpreadsheetId(book.id).setValueRanges(valueRanges));
+        } else if (rest.size() == 2 && rest.get(1).equals("values:batchUpdate") && method.equals("POST")) {
+            return batchUpdateValues(book, OfflineTransport.parse(body, BatchUpdateValuesRequest.class));
+        } else if (rest.size() == 3 && rest.get(1).equals("values")) {
+            String range = rest.get(2);
+            if (range.endsWith(":append") && method.equals("POST"))
+                return append(book, range.substring(0, range.length() - ":append".length()), url, body);
+            if (method.equals("GET"))
+                return OfflineTransport.ok(read(book, range));
+            if (method.equals("PUT")) {
+                requireInputOption(url.getFirst("valueInputOption"));
+                ValueRange values = OfflineTransport.parse(body, ValueRange.class);
+                return OfflineTransport.ok(write(book, parseRange(book, range), values.getValues()));
+            }
+        }
+        return OfflineTransport.notFound(method + " " + url.getRawPath());
+    }
+
+    /* Drive files.get for a spreadsheet: id, name, version and modifiedTime */
+    synchronized MockLowLevelHttpResponse handleDrive(String method, GenericUrl url) throws IOException {
+        List<String> parts = url.getPathParts();                       // "", drive, v3, files, {id}
+        Book book = (parts.size() == 5 && method.equals("GET")) ? books.get(parts.get(4)) : null;
+        if (book == null)
+            return OfflineTransport.notFound(method + " " + url.getRawPath());
+        return OfflineTransport.ok(new File().setId(book.id).setName(book.title).setVersion(book.version)
+                .setMimeType("application/vnd.google-apps.spreadsheet").setModifiedTime(new DateTime(book.modifiedAt)));
+    }
+
+    private Spreadsheet create(Spreadsheet request) {
+        String title = (request.getProperties() != null && request.getProperties().getTitle() != null)
+                ? request.getProperties().getTitle() : "Untitled spreadsheet";
+        Book book = new Book("synthetic-" + (++created), title);
+        if (request.getSheets() != null) {
+            for (Sheet sheet : request.getSheets())
+                book.addTab(sheet.getProperties().getTitle());
+        }
+        if (book.tabs.isEmpty())
+            book.addTab("Sheet1");
+        books.put(book.id, book);
+        return describe(book);
+    }
+
+    private static Spreadsheet describe(Book book) {
+        List<Sheet> sheets = new ArrayList<>();
+        int index = 0;
+        for (Tab tab : book.tabs.values()) {
+            sheets.add(new Sheet().setProperties(new SheetProperties().setSheetId(tab.sheetId).setTitle(tab.title)
+                    .setIndex(index++).setSheetType("GRID")
+                    .setGridProperties(new GridProperties().setRowCount(Math.max(1000, tab.rows.size())).setColumnCount(26))));
+        }
+        return new Spreadsheet().setSpreadsheetId(book.id).setSheets(sheets)
+                .setProperties(new SpreadsheetProperties().setTitle(book.title))
+                .setSpreadsheetUrl("https://docs.example.com/spreadsheets/d/" + book.id + "/edit");
+    }
+
+    private MockLowLevelHttpResponse batchUpdate(Book book, BatchUpdateSpreadsheetRequest request) throws IOException {
+        List<Response> replies = new ArrayList<>();
+        List<Request> requests = (request.getRequests() != null) ? request.getRequests() : List.of();
+        for (int i = 0; i < requests.size(); i++) {
+            Request r = requests.get(i);
+            if (r.getUpdateCells() != null) {
+                String problem = updateCells(book, r.getUpdateCells());
+                if (problem != null)
+                    return OfflineTransport.error(400, "badRequest", "Invalid requests[" + i + "].updateCells: " + problem);
+                replies.add(new Response());
+                continue;
+            }
+            AddSheetRequest addSheet = r.getAddSheet();
+            if (addSheet == null) {
+                replies.add(new Response());   // other request kinds are accepted and ignored
+                continue;
+            }
+
+            SheetProperties properties = (addSheet.getProperties() != null) ? addSheet.getProperties() : new SheetProperties();
+            String title = (properties.getTitle() != null) ? properties.getTitle() : "Sheet" + (book.nextSheetId + 1);
+            if (book.tabs.containsKey(title))
+                return OfflineTransport.error(400, "badRequest",
+                        "Invalid requests[" + i + "].addSheet: A sheet with the name \"" + title + "\" already exists.");
+            if (properties.getSheetId() != null && book.tab(properties.getSheetId()) != null)
+                return OfflineTransport.error(400, "badRequest", "Invalid requests[" + i + "].addSheet: A sheet with id "
+                        + properties.getSheetId() + " already exists.");
+            Tab tab = (properties.getSheetId() != null) ? book.addTab(properties.getSheetId(), title) : book.addTab(title);
+            book.changed();
+            replies.add(new Response().setAddSheet(new AddSheetResponse()
+                    .setProperties(new SheetProperties().setSheetId(tab.sheetId).setTitle(tab.title))));
+        }
+        return OfflineTransport.ok(new BatchUpdateSpreadsheetResponse().setSpreadsheetId(book.id).setReplies(replies));
+    }
+
+    // Writes userEnteredValue cells; with a range, the cells of the range not given are cleared. Null when it worked
+    private String updateCells(Book book, UpdateCellsRequest request) {
+        GridRange range = request.getRange();
+        GridCoordinate start = request.getStart();
+        Integer sheetId = (range != null) ? range.getSheetId() : (start != null) ? start.getSheetId() : null;
+        Tab tab = book.tab((sheetId != null) ? sheetId : 0);
+        if (tab == null)
+            return "No grid with id: " + sheetId;
+
+        int firstRow = (range != null) ? zeroIfNull(range.getStartRowIndex()) : zeroIfNull(start.getRowIndex());
+        int firstCol = (range != null) ? zeroIfNull(range.getStartColumnIndex()) : zeroIfNull(start.getColumnIndex());
+        List<RowData> data = (request.getRows() != null) ? request.getRows() : List.of();
+
+        if (range != null) {
+            int endRow = (range.getEndRowIndex() != null) ? range.getEndRowIndex() : tab.rows.size();
+            int endCol = (range.getEndColumnIndex() != null) ? range.getEndColumnIndex() : Integer.MAX_VALUE;
+            for (int r = firstRow; r < Math.min(endRow, tab.rows.size()); r++) {
+                List<Object> row = tab.rows.get(r);
+                for (int c = firstCol; c < Math.min(endCol, row.size()); c++)
+                    row.set(c, "");
+            }
+        }
+
+        for (int i = 0; i < data.size(); i++) {
+            List<CellData> cells = (data.get(i).getValues() != null) ? data.get(i).getValues() : List.of();
+            int r = firstRow + i;
+            while (tab.rows.size() <= r)
+                tab.rows.add(new ArrayList<>());
+            List<Object> row = tab.rows.get(r);
+            for (int j = 0; j < cells.size(); j++) {
+                int c = firstCol + j;
+                while (row.size() <= c)
+                    row.add("");
+                row.set(c, cell(cells.get(j).getUserEnteredValue()));
+            }
+        }
+        book.changed();
+        return null;
+    }
+
+    private static int zeroIfNull(Integer index) {
+        return (index == null) ? 0 : index;
+    }
+
+    private MockLowLevelHttpResponse batchUpdateValues(Book book, BatchUpdateValuesRequest request) throws IOException {
+        requireInputOption(request.getValueInputOption());
+        List<UpdateValuesResponse> responses = new ArrayList<>();
+        int rows = 0;
+        int columns = 0;
+        int cells = 0;
+        for (ValueRange data : (request.getData() != null) ? request.getData() : List.<ValueRange>of()) {
+            UpdateValuesResponse response = write(book, parseRange(book, data.getRange()), data.getValues());
+            responses.add(response);
+            rows += response.getUpdatedRows();
+            columns = Math.max(columns, response.getUpdatedColumns());
+            cells += response.getUpdatedCells();
+        }
+        return OfflineTransport.ok(new BatchUpdateValuesResponse().setSpreadsheetId(book.id).setResponses(responses)
+                .setTotalUpdatedRows(rows).setTotalUpdatedColumns(columns).setTotalUpdatedCells(cells)
+                .setTotalUpdatedSheets(responses.isEmpty() ? 0 : 1));
+    }
+
+    // Writes below the last non-empty row of the range's tab
+    private MockLowLevelHttpResponse append(Book book, String a1, GenericUrl url, String body) throws IOException {
+        requireInputOption(url.getFirst("valueInputOption"));
+        Range range = parseRange(book, a1);
+        ValueRange values = OfflineTransport.parse(body, ValueRange.class);
+
+        int last = range.tab().rows.size() - 1;
+        while (last >= 0 && isEmpty(range.tab().rows.get(last)))
+            last--;
+        Range target = new Range(range.tab(), last + 1, Integer.MAX_VALUE, range.firstCol(), Integer.MAX_VALUE);
+        UpdateValuesResponse updates = write(book, target, values.getValues());
+
+        return OfflineTransport.ok(new AppendValuesResponse().setSpreadsheetId(book.id).setUpdates(updates)
+                .setTableRange(range.tab().title + "!" + a1(range.firstCol(), 0) + ":" + a1(range.firstCol() + 4, last)));
+    }
+
+    private ValueRange read(Book book, String a1) {
+        Range range = parseRange(book, a1);
+        List<List<Object>> rows = range.tab().rows;
+
+        List<List<Object>> values = new ArrayList<>();
+        int lastRow = (int) Math.min(range.lastRow(), rows.size() - 1L);
+        for (int r = range.firstRow(); r <= lastRow; r++) {
+            List<Object> row = rows.get(r);
+            int lastCol = (int) Math.min(range.lastCol(), row.size() - 1L);
+            List<Object> cells = new ArrayList<>();
+            for (int c = range.firstCol(); c <= lastCol; c++)
+                cells.add(row.get(c));
+            while (!cells.isEmpty() && "".equals(cells.get(cells.size() - 1)))
+                cells.remove(cells.size() - 1);
+            values.add(cells);
+        }
+        while (!values.isEmpty() && values.get(values.size() - 1).isEmpty())
+            values.remove(values.size() - 1);
+
+        return new ValueRange().setRange(a1.contains("!") ? a1 : range.tab().title + "!" + a1).setMajorDimension("ROWS")
+                .setValues(values.isEmpty() ? null : values);
+    }
+
+    private UpdateValuesResponse write(Book book, Range range, List<List<Object>> values) {
+        if (values == null || values.isEmpty())
+            return new UpdateValuesResponse().setSpreadsheetId(book.id).setUpdatedRows(0).setUpdatedColumns(0).setUpdatedCells(0);
+
+        // A single cell only anchors the write; a larger range has to hold all of the values, as with the API
+        if (range.firstRow() == range.lastRow() && range.firstCol() == range.lastCol())
+            range = new Range(range.tab(), range.firstRow(), Integer.MAX_VALUE, range.firstCol(), Integer.MAX_VALUE);
+        int widest = 0;
+        for (List<Object> row : values)
+            widest = Math.max(widest, row.size());
+        if (range.firstRow() + values.size() - 1L > range.lastRow() || range.firstCol() + widest - 1L > range.lastCol())
+            throw new IllegalArgumentException("Requested writing within range " + range.tab().title + "!"
+                    + a1(range.firstCol(), range.firstRow()) + ", but the values do not fit in it");
+
+        book.changed();
+        List<List<Object>> rows = range.tab().rows;
+        int width = 0;
+        int cells = 0;
+        for (int i = 0; i < values.size(); i++) {
+            int r = range.firstRow() + i;
+            while (rows.size() <= r)
+                rows.add(new ArrayList<>());
+            List<Object> row = rows.get(r);
+
+            List<Object> source = values.get(i);
+            for (int j = 0; j < source.size(); j++) {
+                int c = range.firstCol() + j;
+                while (row.size() <= c)
+                    row.add("");
+                row.set(c, cell(source.get(j)));
+                cells++;
+                width = Math.max(width, j + 1);
+            }
+        }
+
+        int height = values.size();
+        return new UpdateValuesResponse().setSpreadsheetId(book.id).setUpdatedRows(height).setUpdatedColumns(width)
+                .setUpdatedCells(cells).setUpdatedRange(range.tab().title + "!" + a1(range.firstCol(), range.firstRow())
+                        + ":" + a1(range.firstCol() + Math.max(width, 1) - 1, range.firstRow() + height - 1));
+    }
+
+    private static Range parseRange(Book book, String a1) {
+        if (a1 == null || a1.isBlank())
+            throw new IllegalArgumentException("Missing range");
+
+        String sheetName;
+        String cells;
+        int bang = a1.lastIndexOf('!');
+        if (bang >= 0) {
+            sheetName = a1.substring(0, bang);
+            if (sheetName.length() >= 2 && sheetName.startsWith("'") && sheetName.endsWith("'"))
+                sheetName = sheetName.substring(1, sheetName.length() - 1).replace("''", "'");
+            cells = a1.substring(bang + 1);
+        } else if (book.tabs.containsKey(a1)) {
+            sheetName = a1;
+            cells = "";
+        } else {
+            sheetName = book.tabs.keySet().iterator().next();
+            cells = a1;
+        }
+
+        Tab tab = book.tabs.get(sheetName);
+        if (tab == null)
+            throw new IllegalArgumentException("Unable to parse range: " + a1);
+        if (cells.isEmpty())
+            return new Range(tab, 0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE);
+
+        String[] ends = cells.split(":", 2);
+        Matcher start = CELL.matcher(ends[0]);
+        Matcher end = CELL.matcher((ends.length > 1) ? ends[1] : ends[0]);
+        if (!start.matches() || !end.matches() || ends[0].isEmpty())
+            throw new IllegalArgumentException("Unable to parse range: " + a1);
+
+        int firstCol = start.group(1).isEmpty() ? 0 : column(start.group(1));
+        int firstRow = start.group(2).isEmpty() ? 0 : Integer.parseInt(start.group(2)) - 1;
+        int lastCol = end.group(1).isEmpty() ? Integer.MAX_VALUE : column(end.group(1));
+        int lastRow = end.group(2).isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(end.group(2)) - 1;
+        if (firstRow < 0 || lastRow < firstRow || lastCol < firstCol)
+            throw new IllegalArgumentException("Unable to parse range: " + a1);
+        return new Range(tab, firstRow, lastRow, firstCol, lastCol);
+    }
+
+    private static void requireInputOption(Object valueInputOption) {
+        if (valueInputOption == null)
+            throw new IllegalArgumentException("'valueInputOption' is required but not specified");
+    }
+
+    // Numbers come in as BigDecimal; stored the way the sheet would display them
+    private static Object cell(Object value) {
+        if (value == null)
+            return "";
+        if (value instanceof ExtendedValue extended) {
+            if (extended.getNumberValue() != null)
+                return cell(BigDecimal.valueOf(extended.getNumberValue()));
+            if (extended.getBoolValue() != null)
+                return extended.getBoolValue() ? "TRUE" : "FALSE";
+            if (extended.getFormulaValue() != null)
+                return extended.getFormulaValue();
+            return (extended.getStringValue() != null) ? extended.getStringValue() : "";
+        }
+        if (value instanceof BigDecimal number)
+            return number.stripTrailingZeros().toPlainString();
+        return value.toString();
+    }
+
+    private static boolean isEmpty(List<Object> row) {
+        for (Object cell : row) {
+            if (!"".equals(cell))
+                return false;
+        }
+        return true;
+    }
+
+    private static int column(String letters) {
+        int column = 0;
+        for (char c : letters.toUpperCase().toCharArray())
+            column = column * 26 + (c - 'A' + 1);
+        return column - 1;
+    }
+
+    private static String a1(int column, int row) {
+        StringBuilder letters = new StringBuilder();
+        for (int c = column + 1; c > 0; c = (c - 1) / 26)
+            letters.insert(0, (char) ('A' + (c - 1) % 26));
+        return letters.toString() + (row + 1);
+    }
+}
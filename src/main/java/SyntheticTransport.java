@@ -0,0 +1,170 @@
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpMediaType;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/*
+ * Synthetic Gmail, Calendar and Sheets backends of any size, for load and soak tests without a Google account.
+ *
+ * Mailbox, calendar and roster are generated from a seed, so the same spec always produces the same data; changes
+ * made through the API (labels, replies, new events, grade updates, ...) are kept in memory for the life of the
+ * process. Only the endpoints the bots call are implemented, including Gmail batch requests and Drive files.get for
+ * spreadsheet versions; anything else is 404.
+ *
+ * Spec (--transport synthetic:SPEC), comma-separated and all optional, e.g. "messages=100000,rows=200000":
+ *     messages   inbox size (default 10000)          thread     messages per thread (default 3)
+ *     unread     share of unread messages (0.3)      arrivals   new inbound messages per minute (0)
+ *     events     calendar events (2000)              rows       roster rows in spreadsheet "synthetic-roster" (1000)
+ *     seed       generator seed (42)
+ */
+public class SyntheticTransport extends OfflineTransport {
+
+    public record Spec(int messages, int threadSize, double unreadShare, double arrivalsPerMinute, int events,
+                       int rows, long seed) {
+        public static final Spec DEFAULT = new Spec(10_000, 3, 0.3, 0, 2_000, 1_000, 42);
+
+        public Spec {
+            if (messages < 0 || events < 0 || rows < 0 || arrivalsPerMinute < 0)
+                throw new IllegalArgumentException("Synthetic sizes must not be negative");
+            if (threadSize < 1)
+                throw new IllegalArgumentException("thread must be at least 1");
+            if (unreadShare < 0 || unreadShare > 1)
+                throw new IllegalArgumentException("unread must be between 0 and 1");
+        }
+
+        /* "key=value,key=value"; null or empty gives the defaults */
+        public static Spec parse(String spec) {
+            Spec s = DEFAULT;
+            if (spec == null || spec.isBlank())
+                return s;
+
+            for (String pair : spec.split(",")) {
+                String[] kv = pair.split("=", 2);
+                if (kv.length != 2)
+                    throw new IllegalArgumentException("Expected key=value in synthetic spec: " + pair);
+                String value = kv[1].trim();
+                s = switch (kv[0].trim()) {
+                    case "messages" -> new Spec(Integer.parseInt(value), s.threadSize, s.unreadShare, s.arrivalsPerMinute, s.events, s.rows, s.seed);
+                    case "thread" -> new Spec(s.messages, Integer.parseInt(value), s.unreadShare, s.arrivalsPerMinute, s.events, s.rows, s.seed);
+                    case "unread" -> new Spec(s.messages, s.threadSize, Double.parseDouble(value), s.arrivalsPerMinute, s.events, s.rows, s.seed);
+                    case "arrivals" -> new Spec(s.messages, s.threadSize, s.unreadShare, Double.parseDouble(value), s.events, s.rows, s.seed);
+                    case "events" -> new Spec(s.messages, s.threadSize, s.unreadShare, s.arrivalsPerMinute, Integer.parseInt(value), s.rows, s.seed);
+                    case "rows" -> new Spec(s.messages, s.threadSize, s.unreadShare, s.arrivalsPerMinute, s.events, Integer.parseInt(value), s.seed);
+                    case "seed" -> new Spec(s.messages, s.threadSize, s.unreadShare, s.arrivalsPerMinute, s.events, s.rows, Long.parseLong(value));
+                    default -> throw new IllegalArgumentException("Unknown synthetic spec key: " + kv[0].trim());
+                };
+            }
+            return s;
+        }
+    }
+
+    private final Spec spec;
+    private final SyntheticGmail gmail;
+    private final SyntheticCalendar calendar;
+    private final SyntheticSheets sheets;
+
+    public SyntheticTransport(Spec spec, Faults faults) {
+        super(faults);
+        this.spec = spec;
+        long now = System.currentTimeMillis();
+        this.gmail = new SyntheticGmail(spec, now);
+        this.calendar = new SyntheticCalendar(spec, now);
+        this.sheets = new SyntheticSheets(spec);
+    }
+
+    public Spec spec() {
+        return spec;
+    }
+
+    @Override
+    protected MockLowLevelHttpResponse respond(String method, GenericUrl url, String contentType, String body)
+            throws IOException {
+        String path = url.getRawPath();
+        if (isBatch(url))
+            return batch(contentType, body);
+        if (path.startsWith("/gmail/v1/users/"))
+            return gmail.handle(method, url, body);
+        if (path.startsWith("/calendar/v3/"))
+            return calendar.handle(method, url, body);
+        if (path.startsWith("/v4/spreadsheets"))
+            return sheets.handle(method, url, body);
+        if (path.startsWith("/drive/v3/files/"))
+            return sheets.handleDrive(method, url);
+        return notFound(method + " " + path);
+    }
+
+    /*
+     * Batch endpoint: every part is an embedded HTTP request ("GET <url> HTTP/1.1", headers, blank line, body).
+     * Parts are answered in request order, which is how the client matches them up, and each part can be failed on
+     * its own so partial-batch retries get exercised too.
+     */
+    private MockLowLevelHttpResponse batch(String contentType, String body) throws IOException {
+        String boundary = (contentType != null) ? new HttpMediaType(contentType).getParameter("boundary") : null;
+        if (boundary == null)
+            throw new IllegalArgumentException("Batch request without a multipart boundary");
+
+        String responseBoundary = "batch_" + UUID.randomUUID().toString().replace("-", "");
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length() * 4);
+
+        String[] parts = body.split("--" + Pattern.quote(boundary));
+        for (int p = 1; p < parts.length; p++) {
+            String part = parts[p];
+            if (part.startsWith("--"))
+                break;   // closing delimiter
+
+            int headersEnd = part.indexOf("\r\n\r\n");
+            if (headersEnd < 0)
+                throw new IllegalArgumentException("Malformed batch part " + p);
+            String embedded = part.substring(headersEnd + 4);
+
+            int requestLineEnd = embedded.indexOf("\r\n");
+            String[] requestLine = embedded.substring(0, requestLineEnd).split(" ");
+            int innerHeadersEnd = embedded.indexOf("\r\n\r\n");
+            String innerBody = (innerHeadersEnd < 0) ? "" : embedded.substring(innerHeadersEnd + 4);
+            if (innerBody.endsWith("\r\n"))
+                innerBody = innerBody.substring(0, innerBody.length() - 2);
+
+            MockLowLevelHttpResponse response;
+            if (injectFault()) {
+                response = injectedError();
+            } else {
+                try {
+                    response = respond(requestLine[0], new GenericUrl(requestLine[1]), "application/json", innerBody);
+                } catch (IllegalArgumentException e) {
+                    response = error(400, "badRequest", e.getMessage());
+                }
+            }
+
+            byte[] content;
+            try (InputStream in = response.getContent()) {
+                content = (in == null) ? new byte[0] : in.readAllBytes();
+            }
+
+            StringBuilder head = new StringBuilder()
+                    .append("--").append(responseBoundary).append("\r\n")
+                    .append("Content-Type: application/http\r\n")
+                    .append("Content-ID: response-").append(p).append("\r\n\r\n")
+                    .append("HTTP/1.1 ").append(response.getStatusCode()).append(' ')
+                    .append(response.getStatusCode() < 300 ? "OK" : "Error").append("\r\n");
+            if (response.getContentType() != null)
+                head.append("Content-Type: ").append(response.getContentType()).append("\r\n");
+            head.append("Content-Length: ").append(content.length).append("\r\n\r\n");
+
+            out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+            out.write(content);
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(("--" + responseBoundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return new MockLowLevelHttpResponse()
+                .setStatusCode(200)
+                .setContentType("multipart/mixed; boundary=" + responseBoundary)
+                .setContent(out.toByteArray());
+    }
+}
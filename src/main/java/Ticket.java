@@ -0,0 +1,73 @@
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePartHeader;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Immutable view of one Gmail message as a help-desk ticket.
+ * Built with a single pass over the payload headers and shared by every operation that needs them.
+ */
+public record Ticket(String id, String threadId, Set<String> labelIds, String subject, String from,
+                     String messageIdHeader, String date, String references, String snippet, long internalDate) {
+
+    public static final String NO_SUBJECT = "(no subject)";
+    public static final String NO_SENDER = "(no sender)";
+
+    public Ticket {
+        labelIds = (labelIds == null) ? Collections.emptySet() : Set.copyOf(labelIds);
+        subject = (subject == null) ? NO_SUBJECT : subject;
+        from = (from == null) ? NO_SENDER : from;
+        snippet = (snippet == null) ? "" : snippet;
+    }
+
+    /* Reads Subject, From, Message-ID, Date and References in one scan; absent headers keep their defaults */
+    public static Ticket from(Message message) {
+        String subject = null;
+        String from = null;
+        String messageIdHeader = null;
+        String date = null;
+        String references = null;
+
+        List<MessagePartHeader> headers = (message.getPayload() != null) ? message.getPayload().getHeaders() : null;
+        if (headers != null) {
+            for (MessagePartHeader header : headers) {
+                String name = header.getName();
+                if (name == null)
+                    continue;
+
+                // First occurrence wins, as with the stream().findFirst() scans this replaces
+                if (subject == null && name.equalsIgnoreCase("Subject"))
+                    subject = header.getValue();
+                else if (from == null && name.equalsIgnoreCase("From"))
+                    from = header.getValue();
+                else if (messageIdHeader == null && name.equalsIgnoreCase("Message-ID"))
+                    messageIdHeader = header.getValue();
+                else if (date == null && name.equalsIgnoreCase("Date"))
+                    date = header.getValue();
+                else if (references == null && name.equalsIgnoreCase("References"))
+                    references = header.getValue();
+            }
+        }
+
+        Set<String> labelIds = (message.getLabelIds() != null) ? Set.copyOf(message.getLabelIds()) : null;
+        long internalDate = (message.getInternalDate() != null) ? message.getInternalDate() : 0L;
+
+        return new Ticket(message.getId(), message.getThreadId(), labelIds, subject, from,
+                messageIdHeader, date, references, message.getSnippet(), internalDate);
+    }
+
+    public boolean isUnread() {
+        return labelIds.contains("UNREAD");
+    }
+
+    public boolean hasSender() {
+        return !NO_SENDER.equals(from);
+    }
+
+    /* Same ticket with a different label set, e.g. after a history labelsAdded/labelsRemoved record */
+    public Ticket withLabels(Set<String> newLabelIds) {
+        return new Ticket(id, threadId, newLabelIds, subject, from, messageIdHeader, date, references, snippet, internalDate);
+    }
+}
@@ -0,0 +1,565 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/*
+ * Local inverted index over ticket text (Subject, From, snippet and decoded body).
+ *
+ * Scope: the index lives in memory only and is not saved. Each session rebuilds it from the ticket store's
+ * metadata, and a body is added only when that ticket is opened (HelpDeskBot.readTicket), so body text is
+ * searchable only for tickets read in the current session.
+ *
+ * Each term's postings list is two byte arrays of varints: docId delta and term frequency per doc, and separately
+ * the position deltas, so queries without phrases never decode (or even skip over) positions.
+ * Doc IDs only ever grow, so new tickets are appended to the end of each list; re-indexing a ticket
+ * tombstones its old doc ID and adds it again under a new one. Once a quarter of the doc IDs are tombstones
+ * (and at least COMPACT_MIN_DELETED of them), every list is rewritten without them and the doc IDs renumbered.
+ * Document frequencies for BM25 count only live documents, so scores do not drift as tickets are re-indexed.
+ *
+ * Query syntax: words are ANDed, OR between two items makes either one match,
+ * a leading '-' excludes, and "quoted words" must appear as a phrase.
+ */
+public class TicketIndex {
+
+    public record Hit(String messageId, double score) { }
+
+    // BM25 ranking parameters (the usual defaults)
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final int COMPACT_MIN_DELETED = 1024;
+
+    private final Map<String, PostingsList> postings = new HashMap<>();
+    private final List<String> messageIds = new ArrayList<>();       // doc ID -> message ID
+    private final Map<String, Integer> liveDocIds = new HashMap<>();  // message ID -> current doc ID
+    private final BitSet deleted = new BitSet();
+    private int deletedCount = 0;
+    private int[] docLengths = new int[1024];
+    private long totalLength = 0;
+
+    /* Indexes (or re-indexes) a ticket; each text is a separate field so phrases never span two fields */
+    public synchronized void add(String messageId, String... texts) {
+        remove(messageId);
+
+        int docId = messageIds.size();
+        messageIds.add(messageId);
+        liveDocIds.put(messageId, docId);
+
+        // Group this document's positions by term before appending, so each list gets one entry per doc
+        Map<String, int[]> termPositions = new HashMap<>();
+        int position = 0;
+        for (String text : texts) {
+            if (text == null)
+                continue;
+            for (String term : tokenize(text)) {
+                int[] positions = termPositions.get(term);   // slot 0 holds the count
+                if (positions == null) {
+                    positions = new int[4];
+                    termPositions.put(term, positions);
+                } else if (positions[0] + 1 == positions.length) {
+                    positions = Arrays.copyOf(positions, positions.length * 2);
+                    termPositions.put(term, positions);
+                }
+                positions[0]++;
+                positions[positions[0]] = position++;
+            }
+            position++;   // gap between fields
+        }
+
+        for (Map.Entry<String, int[]> e : termPositions.entrySet())
+            postings.computeIfAbsent(e.getKey(), t -> new PostingsList()).append(docId, e.getValue());
+
+        if (docId == docLengths.length)
+            docLengths = Arrays.copyOf(docLengths, docLengths.length * 2);
+        docLengths[docId] = position;
+        totalLength += position;
+    }
+
+    /* Indexes metadata for a ticket that is not indexed yet, leaving an already indexed body alone */
+    public synchronized void addIfAbsent(String messageId, String... texts) {
+        if (!liveDocIds.containsKey(messageId))
+            add(messageId, texts);
+    }
+
+    public synchronized void remove(String messageId) {
+        Integer docId = liveDocIds.remove(messageId);
+        if (docId != null) {
+            deleted.set(docId);
+            deletedCount++;
+            totalLength -= docLengths[docId];
+            if (deletedCount >= COMPACT_MIN_DELETED && deletedCount * 4L >= messageIds.size())
+                compact();
+        }
+    }
+
+    /* Rewrites every postings list without tombstoned docs and renumbers the live docs from 0, keeping their order */
+    private void compact() {
+        int[] newIds = new int[messageIds.size()];
+        List<String> liveMessageIds = new ArrayList<>(liveDocIds.size());
+        int[] liveLengths = new int[Math.max(1024, liveDocIds.size() * 2)];
+        for (int doc = 0; doc < messageIds.size(); doc++) {
+            if (deleted.get(doc)) {
+                newIds[doc] = -1;
+                continue;
+            }
+            newIds[doc] = liveMessageIds.size();
+            liveLengths[liveMessageIds.size()] = docLengths[doc];
+            liveMessageIds.add(messageIds.get(doc));
+        }
+
+        Map<String, PostingsList> livePostings = new HashMap<>();
+        int[] positions = new int[16];
+        for (Map.Entry<String, PostingsList> e : postings.entrySet()) {
+            Decoded d = e.getValue().decode(true);
+            PostingsList list = new PostingsList();
+            for (int i = 0; i < d.size; i++) {
+                int doc = newIds[d.docs[i]];
+                if (doc < 0)
+                    continue;
+                if (positions.length < d.tfs[i] + 1)
+                    positions = new int[d.tfs[i] + 1];
+                positions[0] = d.tfs[i];
+                System.arraycopy(d.positions, d.posStart[i], positions, 1, d.tfs[i]);
+                list.append(doc, positions);
+            }
+            if (list.docFreq > 0)
+                livePostings.put(e.getKey(), list);   // terms only deleted tickets had are dropped
+        }
+
+        postings.clear();
+        postings.putAll(livePostings);
+        messageIds.clear();
+        messageIds.addAll(liveMessageIds);
+        liveDocIds.replaceAll((messageId, doc) -> newIds[doc]);
+        docLengths = liveLengths;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    public synchronized boolean contains(String messageId) {
+        return liveDocIds.containsKey(messageId);
+    }
+
+    public synchronized int size() {
+        return liveDocIds.size();
+    }
+
+    /* Returns the k best-scoring tickets for the query, best first */
+    public synchronized List<Hit> search(String query, int k) {
+        if (k < 1)
+            return new ArrayList<>();
+
+        List<Clause> clauses = parse(query);
+        ScoredDocs result = null;
+        List<ScoredDocs> excluded = new ArrayList<>();
+
+        for (Clause clause : clauses) {
+            ScoredDocs matches = null;
+            for (String[] phrase : clause.alternatives)
+                matches = (matches == null) ? match(phrase) : matches.union(match(phrase));
+
+            if (clause.negated)
+                excluded.add(matches);
+            else
+                result = (result == null) ? matches : result.intersect(matches);
+        }
+
+        if (result == null)
+            return new ArrayList<>();   // nothing to rank against when every clause is negated
+        for (ScoredDocs ex : excluded)
+            result = result.subtract(ex);
+
+        return topK(result, k);
+    }
+
+    private List<Hit> topK(ScoredDocs docs, int k) {
+        // Min-heap on score keeps only the k best while scanning
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(docs.scores[a], docs.scores[b]));
+        for (int i = 0; i < docs.size; i++) {
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (docs.scores[i] > docs.scores[heap.peek()]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+
+        Hit[] hits = new Hit[heap.size()];
+        for (int i = hits.length - 1; i >= 0; i--) {
+            int idx = heap.poll();
+            hits[i] = new Hit(messageIds.get(docs.docs[idx]), docs.scores[idx]);
+        }
+        return new ArrayList<>(Arrays.asList(hits));
+    }
+
+    /*
+     * Single terms use frequencies only. Phrases first intersect the doc lists, then read positions only for docs
+     * holding every term and check they are consecutive; the positions of other docs are skipped, not decoded.
+     */
+    private ScoredDocs match(String[] phrase) {
+        if (phrase.length == 1)
+            return matchTerm(phrase[0]);
+
+        PostingsList[] postingsLists = new PostingsList[phrase.length];
+        Decoded[] lists = new Decoded[phrase.length];
+        double idf = 0;
+        for (int i = 0; i < phrase.length; i++) {
+            postingsLists[i] = postings.get(phrase[i]);
+            if (postingsLists[i] == null)
+                return ScoredDocs.EMPTY;
+            lists[i] = postingsLists[i].decode(false);
+            idf += idf(liveDocFreq(lists[i]));
+        }
+
+        ScoredDocs out = new ScoredDocs(lists[0].size);
+        int[] cursors = new int[phrase.length];
+        int[] positionEntry = new int[phrase.length];    // next entry whose positions start at positionOffset
+        int[] positionOffset = new int[phrase.length];
+        int[][] positions = new int[phrase.length][8];
+        for (int i0 = 0; i0 < lists[0].size; i0++) {
+            int doc = lists[0].docs[i0];
+            if (deleted.get(doc))
+                continue;
+
+            // Advance every other list to this doc; skip the doc if any term is missing
+            boolean all = true;
+            for (int t = 1; t < phrase.length && all; t++) {
+                Decoded d = lists[t];
+                while (cursors[t] < d.size && d.docs[cursors[t]] < doc)
+                    cursors[t]++;
+                all = cursors[t] < d.size && d.docs[cursors[t]] == doc;
+            }
+            if (!all)
+                continue;
+
+            cursors[0] = i0;
+            for (int t = 0; t < phrase.length; t++) {
+                Decoded d = lists[t];
+                int skipped = 0;
+                for (; positionEntry[t] < cursors[t]; positionEntry[t]++)
+                    skipped += d.tfs[positionEntry[t]];
+                PostingsList list = postingsLists[t];
+                int tf = d.tfs[cursors[t]];
+                if (positions[t].length < tf)
+                    positions[t] = new int[Math.max(positions[t].length * 2, tf)];
+                positionOffset[t] = list.readPositions(list.skipPositions(positionOffset[t], skipped), tf, positions[t]);
+                positionEntry[t]++;
+            }
+
+            int phraseCount = 0;
+            for (int p = 0; p < lists[0].tfs[i0]; p++) {
+                int start = positions[0][p];
+                boolean consecutive = true;
+                for (int t = 1; t < phrase.length && consecutive; t++)
+                    consecutive = Arrays.binarySearch(positions[t], 0, lists[t].tfs[cursors[t]], start + t) >= 0;
+                if (consecutive)
+                    phraseCount++;
+            }
+
+            if (phraseCount > 0)
+                out.add(doc, bm25(idf, phraseCount, doc));
+        }
+        return out;
+    }
+
+    private ScoredDocs matchTerm(String term) {
+        PostingsList list = postings.get(term);
+        if (list == null)
+            return ScoredDocs.EMPTY;
+
+        Decoded d = list.decode(false);
+        double idf = idf(liveDocFreq(d));
+        ScoredDocs out = new ScoredDocs(d.size);
+        for (int i = 0; i < d.size; i++) {
+            if (!deleted.get(d.docs[i]))
+                out.add(d.docs[i], bm25(idf, d.tfs[i], d.docs[i]));
+        }
+        return out;
+    }
+
+    // Entries of tombstoned docs stay in the lists until the next compaction, so they are left out here
+    private int liveDocFreq(Decoded d) {
+        if (deletedCount == 0)
+            return d.size;
+        int live = 0;
+        for (int i = 0; i < d.size; i++) {
+            if (!deleted.get(d.docs[i]))
+                live++;
+        }
+        return live;
+    }
+
+    private double idf(int docFreq) {
+        int n = Math.max(liveDocIds.size(), 1);
+        return Math.log(1 + (n - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    private double bm25(double idf, int tf, int doc) {
+        double avgLength = liveDocIds.isEmpty() ? 1 : (double) totalLength / liveDocIds.size();
+        double norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+        return idf * tf * (K1 + 1) / (tf + norm);
+    }
+
+    /* Lowercased runs of letters and digits; "john.doe@school.edu" becomes john, doe, school, edu */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static final class Clause {
+        final boolean negated;
+        final List<String[]> alternatives = new ArrayList<>();
+
+        Clause(boolean negated) {
+            this.negated = negated;
+        }
+    }
+
+    private static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        boolean orPending = false;
+        int i = 0;
+
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            boolean negated = false;
+            if (c == '-') {
+                negated = true;
+                i++;
+                if (i == query.length())
+                    break;
+            }
+
+            String item;
+            if (query.charAt(i) == '"') {
+                int close = query.indexOf('"', i + 1);
+                if (close < 0)
+                    close = query.length();
+                item = query.substring(i + 1, close);
+                i = close + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end)))
+                    end++;
+                item = query.substring(i, end);
+                i = end;
+
+                if (item.equals("OR") && !negated && !clauses.isEmpty()) {
+                    orPending = true;
+                    continue;
+                }
+            }
+
+            List<String> terms = tokenize(item);
+            if (terms.isEmpty())
+                continue;
+
+            String[] phrase = terms.toArray(new String[0]);
+            if (orPending && !negated) {
+                clauses.get(clauses.size() - 1).alternatives.add(phrase);
+            } else {
+                Clause clause = new Clause(negated);
+                clause.alternatives.add(phrase);
+                clauses.add(clause);
+            }
+            orPending = false;
+        }
+        return clauses;
+    }
+
+    /* Postings for one term, appended in doc ID order and varint-encoded */
+    private static final class PostingsList {
+        byte[] data = new byte[16];          // docId delta, term frequency
+        int length = 0;
+        byte[] positionData = new byte[16];  // position deltas, tf of them per doc
+        int positionLength = 0;
+        int lastDoc = 0;
+        int docFreq = 0;
+
+        // positions[0] is the count, positions[1..count] are ascending positions
+        void append(int docId, int[] positions) {
+            data = writeVarint(data, length, docId - lastDoc);
+            length = written;
+            data = writeVarint(data, length, positions[0]);
+            length = written;
+            int previous = 0;
+            for (int i = 1; i <= positions[0]; i++) {
+                positionData = writeVarint(positionData, positionLength, positions[i] - previous);
+                positionLength = written;
+                previous = positions[i];
+            }
+            lastDoc = docId;
+            docFreq++;
+        }
+
+        Decoded decode(boolean withPositions) {
+            Decoded d = new Decoded(docFreq, withPositions);
+            int pos = 0;
+            int positionPos = 0;
+            int doc = 0;
+            int positionCount = 0;
+
+            for (int i = 0; i < docFreq; i++) {
+                // Inline varint reads: this loop is the hot path of every query
+                int v = 0, shift = 0, b;
+                do { b = data[pos++]; v |= (b & 0x7F) << shift; shift += 7; } while ((b & 0x80) != 0);
+                doc += v;
+
+                int tf = 0;
+                shift = 0;
+                do { b = data[pos++]; tf |= (b & 0x7F) << shift; shift += 7; } while ((b & 0x80) != 0);
+
+                d.docs[i] = doc;
+                d.tfs[i] = tf;
+
+                if (withPositions) {
+                    d.posStart[i] = positionCount;
+                    d.ensurePositions(positionCount + tf);
+
+                    int position = 0;
+                    for (int p = 0; p < tf; p++) {
+                        int delta = 0;
+                        shift = 0;
+                        do { b = positionData[positionPos++]; delta |= (b & 0x7F) << shift; shift += 7; } while ((b & 0x80) != 0);
+                        position += delta;
+                        d.positions[positionCount++] = position;
+                    }
+                }
+            }
+            d.size = docFreq;
+            return d;
+        }
+
+        // Returns the offset just past count position varints starting at offset; a varint ends on a byte below 0x80
+        int skipPositions(int offset, int count) {
+            while (count > 0) {
+                if (positionData[offset++] >= 0)
+                    count--;
+            }
+            return offset;
+        }
+
+        // Decodes count ascending positions starting at offset into into[0..count); returns the offset past them
+        int readPositions(int offset, int count, int[] into) {
+            int position = 0;
+            for (int p = 0; p < count; p++) {
+                int delta = 0, shift = 0, b;
+                do { b = positionData[offset++]; delta |= (b & 0x7F) << shift; shift += 7; } while ((b & 0x80) != 0);
+                position += delta;
+                into[p] = position;
+            }
+            return offset;
+        }
+
+        private int written;   // end offset of the last writeVarint
+
+        // Returns the (possibly grown) array; the new length is left in written
+        private byte[] writeVarint(byte[] bytes, int at, int value) {
+            if (at + 5 > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, at + 5));
+            while ((value & ~0x7F) != 0) {
+                bytes[at++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[at++] = (byte) value;
+            written = at;
+            return bytes;
+        }
+    }
+
+    private static final class Decoded {
+        final int[] docs;
+        final int[] tfs;
+        final int[] posStart;
+        int[] positions;
+        int size;
+
+        Decoded(int capacity, boolean withPositions) {
+            docs = new int[capacity];
+            tfs = new int[capacity];
+            posStart = withPositions ? new int[capacity] : null;
+            positions = withPositions ? new int[capacity * 2] : null;
+        }
+
+        void ensurePositions(int needed) {
+            if (needed > positions.length)
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, needed));
+        }
+    }
+
+    /* Matching doc IDs in ascending order with their scores */
+    private static final class ScoredDocs {
+        static final ScoredDocs EMPTY = new ScoredDocs(0);
+
+        int[] docs;
+        double[] scores;
+        int size;
+
+        ScoredDocs(int capacity) {
+            docs = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        void add(int doc, double score) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, Math.max(size * 2, 8));
+                scores = Arrays.copyOf(scores, docs.length);
+            }
+            docs[size] = doc;
+            scores[size++] = score;
+        }
+
+        ScoredDocs intersect(ScoredDocs other) {
+            ScoredDocs out = new ScoredDocs(Math.min(size, other.size));
+            int i = 0, j = 0;
+            while (i < size && j < other.size) {
+                if (docs[i] < other.docs[j]) i++;
+                else if (docs[i] > other.docs[j]) j++;
+                else out.add(docs[i], scores[i++] + other.scores[j++]);
+            }
+            return out;
+        }
+
+        ScoredDocs union(ScoredDocs other) {
+            ScoredDocs out = new ScoredDocs(size + other.size);
+            int i = 0, j = 0;
+            while (i < size || j < other.size) {
+                if (j == other.size || (i < size && docs[i] < other.docs[j])) out.add(docs[i], scores[i++]);
+                else if (i == size || docs[i] > other.docs[j]) out.add(other.docs[j], other.scores[j++]);
+                else out.add(docs[i], Math.max(scores[i++], other.scores[j++]));
+            }
+            return out;
+        }
+
+        ScoredDocs subtract(ScoredDocs other) {
+            ScoredDocs out = new ScoredDocs(size);
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                while (j < other.size && other.docs[j] < docs[i])
+                    j++;
+                if (j == other.size || other.docs[j] != docs[i])
+                    out.add(docs[i], scores[i]);
+            }
+            return out;
+        }
+    }
+}
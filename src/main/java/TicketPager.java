@@ -0,0 +1,137 @@
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/* Lazily pages through every message matching a Gmail query, one page of metadata at a time */
+public class TicketPager implements Iterator<List<Message>>, AutoCloseable {
+
+    // Daemon threads so an abandoned prefetch never keeps the JVM alive
+    private static final ExecutorService PREFETCH = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ticket-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private record Page(List<Message> messages, String nextPageToken) { }
+
+    private final Gmail service;
+    private final String query;
+    private final long pageSize;
+    private final String[] headers;
+
+    // At most two pages are held at once: the one being shown and the one being prefetched. A plain executor Future
+    // (not a CompletableFuture, whose cancel never interrupts) so close() can stop a prefetch that is still running
+    private Future<Page> nextPage;
+
+    /**
+     * Starts fetching the first page right away.
+     *
+     * @param query    Gmail search query, e.g. "is:unread label:inbox".
+     * @param pageSize Messages per page (Gmail allows up to 500).
+     * @param headers  Metadata headers to fetch for each message.
+     */
+    public TicketPager(Gmail service, String query, long pageSize, String... headers) {
+        this.service = service;
+        this.query = query;
+        this.pageSize = pageSize;
+        this.headers = headers;
+        this.nextPage = fetchAsync(null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextPage != null;
+    }
+
+    /**
+     * Returns the next page of messages and starts prefetching the one after it.
+     * The first page may be empty when nothing matches the query.
+     */
+    @Override
+    public List<Message> next() {
+        if (nextPage == null)
+            throw new NoSuchElementException();
+
+        Page page;
+        try {
+            page = nextPage.get();
+        } catch (ExecutionException e) {
+            nextPage = null;
+            if (e.getCause() instanceof IOException io)
+                throw new UncheckedIOException(io);
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            throw (Error) e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the next page"));
+        }
+
+        nextPage = (page.nextPageToken() != null) ? fetchAsync(page.nextPageToken()) : null;
+        return page.messages();
+    }
+
+    /* Flattens the pages into a lazy stream of messages; pages are only pulled as the stream is consumed */
+    public Stream<Message> stream() {
+        Spliterator<List<Message>> pages = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(pages, false)
+                .flatMap(List::stream)
+                .onClose(this::close);
+    }
+
+    /*
+     * Interrupts a prefetch that is still running. It stops at its next quota wait, backoff or page step, so at most
+     * the request already on the wire is paid for; the page's metadata batch is skipped if the list call was in flight.
+     */
+    @Override
+    public void close() {
+        if (nextPage != null)
+            nextPage.cancel(true);
+        nextPage = null;
+    }
+
+    private Future<Page> fetchAsync(String pageToken) {
+        return PREFETCH.submit(() -> fetchPage(pageToken));
+    }
+
+    private Page fetchPage(String pageToken) throws IOException {
+        ListMessagesResponse response = service.users().messages()
+                .list("me")
+                .setQ(query)
+                .setMaxResults(pageSize)
+                .setPageToken(pageToken)
+                .execute();
+
+        // getMessages() is null (not empty) when nothing matches
+        if (response.getMessages() == null)
+            return new Page(Collections.emptyList(), response.getNextPageToken());
+        if (Thread.currentThread().isInterrupted())
+            throw new InterruptedIOException("Prefetch cancelled");   // closed while listing: skip the metadata batch
+
+        List<Message> messages = new ArrayList<>(response.getMessages().size());
+        for (Message msg : MessageBatchFetcher.fetchMetadata(service, response.getMessages(), headers)) {
+            if (msg != null)
+                messages.add(msg);
+        }
+
+        return new Page(messages, response.getNextPageToken());
+    }
+}
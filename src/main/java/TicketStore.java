@@ -0,0 +1,346 @@
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.History;
+import com.google.api.services.gmail.model.HistoryLabelAdded;
+import com.google.api.services.gmail.model.HistoryLabelRemoved;
+import com.google.api.services.gmail.model.HistoryMessageAdded;
+import com.google.api.services.gmail.model.HistoryMessageDeleted;
+import com.google.api.services.gmail.model.ListHistoryResponse;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/* Local copy of inbox ticket metadata, filled by one full sync and kept current with users.history.list */
+public class TicketStore {
+
+    private static final String STORE_FILE_PATH = "tokens/ticket_store.dat";
+    private static final int FILE_VERSION = 2;
+    private static final long LIST_PAGE_SIZE = 500L;
+
+    private final Map<String, Ticket> tickets = new HashMap<>();
+    private final File file;
+    private BigInteger historyId;   // null until the first full sync
+    private TicketIndex index;      // optional full-text index kept in step with the store
+
+    public TicketStore() {
+        this(new File(STORE_FILE_PATH));
+    }
+
+    public TicketStore(File file) {
+        this.file = file;
+    }
+
+    /* Loads the saved store (if any) so a restart resumes from the saved historyId */
+    public static TicketStore open() throws IOException {
+        TicketStore store = new TicketStore();
+        store.load();
+        return store;
+    }
+
+    /* Keeps the index in step with every ticket added or removed from now on, and indexes what is already stored */
+    public synchronized void attachIndex(TicketIndex index) {
+        this.index = index;
+        for (Ticket t : tickets.values())
+            index.addIfAbsent(t.id(), t.subject(), t.from(), t.snippet());
+    }
+
+    public synchronized BigInteger getHistoryId() {
+        return historyId;
+    }
+
+    public synchronized int size() {
+        return tickets.size();
+    }
+
+    /**
+     * Brings the store up to date: a full sync the first time, afterwards only the changes since the last historyId.
+     * Falls back to a full sync when Gmail no longer has history that old (HTTP 404).
+     *
+     * @return Tickets that arrived in the inbox since the last sync; empty after a full sync, which cannot tell new from old.
+     */
+    public synchronized List<Ticket> sync(Gmail service) throws IOException {
+        if (historyId == null) {
+            fullSync(service);
+            return Collections.emptyList();
+        }
+
+        try {
+            return incrementalSync(service);
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() != 404)
+                throw e;
+
+            System.out.println("Saved history is too old, running a full sync.");
+            fullSync(service);
+            return Collections.emptyList();
+        }
+    }
+
+    public synchronized void fullSync(Gmail service) throws IOException {
+        // Record the checkpoint first so nothing that changes during the download is missed
+        BigInteger startHistoryId = service.users().getProfile("me").execute().getHistoryId();
+
+        Set<String> previousIds = new HashSet<>(tickets.keySet());
+        tickets.clear();
+        String pageToken = null;
+        do {
+            ListMessagesResponse response = service.users().messages()
+                    .list("me")
+                    .setLabelIds(Collections.singletonList("INBOX"))
+                    .setMaxResults(LIST_PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .execute();
+
+            if (response.getMessages() != null)
+                fetchAndStore(service, response.getMessages());
+
+            pageToken = response.getNextPageToken();
+        } while (pageToken != null);
+
+        if (index != null) {
+            for (String id : previousIds) {
+                if (!tickets.containsKey(id))
+                    index.remove(id);
+            }
+        }
+
+        historyId = startHistoryId;
+        save();
+        System.out.println("Full sync stored " + tickets.size() + " ticket(s).");
+    }
+
+    public synchronized List<Ticket> incrementalSync(Gmail service) throws IOException {
+        Set<String> toFetch = new LinkedHashSet<>();
+        BigInteger latestHistoryId = historyId;
+        int changes = 0;
+        String pageToken = null;
+
+        do {
+            ListHistoryResponse response = service.users().history()
+                    .list("me")
+                    .setStartHistoryId(historyId)
+                    .setPageToken(pageToken)
+                    .execute();
+
+            if (response.getHistory() != null) {
+                for (History h : response.getHistory())
+                    changes += apply(h, toFetch);
+            }
+
+            if (response.getHistoryId() != null)
+                latestHistoryId = response.getHistoryId();
+            pageToken = response.getNextPageToken();
+        } while (pageToken != null);
+
+        // New inbox messages only arrive as IDs; their headers come in batched round trips
+        List<Ticket> added = Collections.emptyList();
+        if (!toFetch.isEmpty()) {
+            List<Message> refs = new ArrayList<>(toFetch.size());
+            for (String id : toFetch)
+                refs.add(new Message().setId(id));
+            added = fetchAndStore(service, refs);
+        }
+
+        // An empty poll (the watcher's usual case) leaves the file alone instead of rewriting every ticket
+        boolean moved = !latestHistoryId.equals(historyId);
+        historyId = latestHistoryId;
+        if (changes > 0 || !added.isEmpty() || moved)
+            save();
+        if (changes > 0)
+            System.out.println("Applied " + changes + " change(s); store holds " + tickets.size() + " ticket(s).");
+        return added;
+    }
+
+    /* Unread inbox tickets, newest first */
+    public List<Ticket> unread() {
+        return filter(Ticket::isUnread);
+    }
+
+    /* Case-insensitive match on Subject, From or snippet, newest first */
+    public List<Ticket> search(String text) {
+        String needle = text.toLowerCase();
+        return filter(t -> t.subject().toLowerCase().contains(needle)
+                || t.from().toLowerCase().contains(needle)
+                || t.snippet().toLowerCase().contains(needle));
+    }
+
+    public synchronized List<Ticket> filter(Predicate<Ticket> predicate) {
+        List<Ticket> matches = new ArrayList<>();
+        for (Ticket t : tickets.values()) {
+            if (predicate.test(t))
+                matches.add(t);
+        }
+        matches.sort(Comparator.comparingLong(Ticket::internalDate).reversed());
+        return matches;
+    }
+
+    public synchronized Ticket get(String messageId) {
+        return tickets.get(messageId);
+    }
+
+    // Applies one history record; returns the number of message changes it held
+    private int apply(History h, Set<String> toFetch) {
+        int changes = 0;
+
+        if (h.getMessagesAdded() != null) {
+            for (HistoryMessageAdded added : h.getMessagesAdded()) {
+                Message msg = added.getMessage();
+                if (msg.getLabelIds() != null && msg.getLabelIds().contains("INBOX"))
+                    toFetch.add(msg.getId());
+                changes++;
+            }
+        }
+
+        if (h.getMessagesDeleted() != null) {
+            for (HistoryMessageDeleted deleted : h.getMessagesDeleted()) {
+                removeTicket(deleted.getMessage().getId());
+                toFetch.remove(deleted.getMessage().getId());
+                changes++;
+            }
+        }
+
+        if (h.getLabelsAdded() != null) {
+            for (HistoryLabelAdded added : h.getLabelsAdded()) {
+                updateLabels(added.getMessage(), toFetch);
+                changes++;
+            }
+        }
+
+        if (h.getLabelsRemoved() != null) {
+            for (HistoryLabelRemoved removed : h.getLabelsRemoved()) {
+                updateLabels(removed.getMessage(), toFetch);
+                changes++;
+            }
+        }
+
+        return changes;
+    }
+
+    // Label history carries the message's full current label set, so it replaces what is stored
+    private void updateLabels(Message msg, Set<String> toFetch) {
+        List<String> labelIds = (msg.getLabelIds() != null) ? msg.getLabelIds() : Collections.emptyList();
+        Ticket existing = tickets.get(msg.getId());
+
+        if (!labelIds.contains("INBOX")) {
+            // Archived, trashed or spammed: no longer a ticket
+            removeTicket(msg.getId());
+            toFetch.remove(msg.getId());
+        } else if (existing != null) {
+            tickets.put(msg.getId(), existing.withLabels(new HashSet<>(labelIds)));
+        } else {
+            toFetch.add(msg.getId());   // moved into the inbox; headers not known yet
+        }
+    }
+
+    // Returns the tickets that were not in the store before
+    private List<Ticket> fetchAndStore(Gmail service, List<Message> refs) throws IOException {
+        List<Ticket> added = new ArrayList<>();
+        for (Message msg : MessageBatchFetcher.fetchMetadata(service, refs, "Subject", "From", "Message-ID", "Date", "References")) {
+            if (msg == null || msg.getLabelIds() == null || !msg.getLabelIds().contains("INBOX"))
+                continue;
+
+            Ticket ticket = Ticket.from(msg);
+            if (tickets.put(ticket.id(), ticket) == null)
+                added.add(ticket);
+            if (index != null)
+                index.addIfAbsent(ticket.id(), ticket.subject(), ticket.from(), ticket.snippet());
+        }
+        return added;
+    }
+
+    private void removeTicket(String messageId) {
+        tickets.remove(messageId);
+        if (index != null)
+            index.remove(messageId);
+    }
+
+    public synchronized void load() throws IOException {
+        tickets.clear();
+        historyId = null;
+        if (!file.exists())
+            return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                System.out.println("Ticket store format changed, a full sync will run.");
+                return;
+            }
+
+            historyId = new BigInteger(in.readUTF());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                String threadId = in.readUTF();
+
+                int labelCount = in.readInt();
+                Set<String> labelIds = new HashSet<>(labelCount * 2);
+                for (int j = 0; j < labelCount; j++)
+                    labelIds.add(in.readUTF());
+
+                tickets.put(id, new Ticket(id, threadId, labelIds, in.readUTF(), in.readUTF(), readNullable(in),
+                        readNullable(in), readNullable(in), in.readUTF(), in.readLong()));
+            }
+        }
+    }
+
+    // Written to a temp file and moved into place so a crash mid-save never leaves a half-written store
+    public synchronized void save() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(historyId.toString());
+            out.writeInt(tickets.size());
+            for (Ticket t : tickets.values()) {
+                out.writeUTF(t.id());
+                out.writeUTF(t.threadId());
+                out.writeInt(t.labelIds().size());
+                for (String label : t.labelIds())
+                    out.writeUTF(label);
+                out.writeUTF(t.subject());
+                out.writeUTF(t.from());
+                writeNullable(out, t.messageIdHeader());
+                writeNullable(out, t.date());
+                writeNullable(out, t.references());
+                out.writeUTF(t.snippet());
+                out.writeLong(t.internalDate());
+            }
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,100 @@
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.ListThreadsResponse;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.Thread;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Thread-level ticket view: one row per conversation instead of one per message.
+ *
+ * threads.list returns each thread's current historyId for free, so a thread is only fetched again
+ * (threads.get, format=metadata, batched) when its historyId moved since it was last summarized.
+ */
+public class TicketThreads {
+
+    /* One conversation: subject of its first message, sender of its latest, and whether any message is unread */
+    public record ThreadSummary(String threadId, BigInteger historyId, String subject, String latestFrom,
+                                int messageCount, boolean unread, long latestInternalDate) {
+    }
+
+    /* One page of summaries; nextPageToken is null on the last page */
+    public record Page(List<ThreadSummary> threads, String nextPageToken) {
+    }
+
+    private static final String[] HEADERS = {"Subject", "From"};
+
+    private final Map<String, ThreadSummary> cache = new HashMap<>();
+    private long fetched;
+    private long reused;
+
+    /**
+     * Lists one page of threads matching the query.
+     *
+     * @param pageToken Token from the previous page, or null for the first page.
+     */
+    public synchronized Page listPage(Gmail service, String query, long pageSize, String pageToken) throws IOException {
+        ListThreadsResponse response = service.users().threads()
+                .list("me")
+                .setQ(query)
+                .setMaxResults(pageSize)
+                .setPageToken(pageToken)
+                .setFields("threads(id,historyId),nextPageToken")
+                .execute();
+
+        List<Thread> refs = (response.getThreads() != null) ? response.getThreads() : Collections.emptyList();
+
+        // Only threads that are new or changed since they were cached cost a threads.get
+        List<String> stale = new ArrayList<>();
+        for (Thread ref : refs) {
+            ThreadSummary cached = cache.get(ref.getId());
+            if (cached == null || !cached.historyId().equals(ref.getHistoryId()))
+                stale.add(ref.getId());
+        }
+
+        if (!stale.isEmpty()) {
+            for (Thread thread : MessageBatchFetcher.fetchThreadMetadata(service, stale, HEADERS)) {
+                if (thread != null && thread.getMessages() != null && !thread.getMessages().isEmpty())
+                    cache.put(thread.getId(), summarize(thread));
+            }
+        }
+        fetched += stale.size();
+        reused += refs.size() - stale.size();
+
+        List<ThreadSummary> page = new ArrayList<>(refs.size());
+        for (Thread ref : refs) {
+            ThreadSummary summary = cache.get(ref.getId());
+            if (summary != null)
+                page.add(summary);
+        }
+        return new Page(page, response.getNextPageToken());
+    }
+
+    public synchronized String stats() {
+        return "threads fetched: " + fetched + " | served from cache: " + reused + " | cached: " + cache.size();
+    }
+
+    static ThreadSummary summarize(Thread thread) {
+        List<Message> messages = thread.getMessages();
+
+        // Messages come back oldest first; the first one names the ticket, the latest one says who spoke last
+        Ticket first = Ticket.from(messages.get(0));
+        Ticket latest = first;
+        boolean unread = false;
+        for (Message message : messages) {
+            Ticket ticket = Ticket.from(message);
+            if (ticket.internalDate() >= latest.internalDate())
+                latest = ticket;
+            unread |= ticket.isUnread();
+        }
+
+        return new ThreadSummary(thread.getId(), thread.getHistoryId(), first.subject(), latest.from(),
+                messages.size(), unread, latest.internalDate());
+    }
+}
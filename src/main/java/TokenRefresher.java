@@ -0,0 +1,52 @@
+import com.google.api.client.auth.oauth2.Credential;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Refreshes the OAuth access token on a background thread ahead of its expiry, so no API call has to stop
+ * and wait for a refresh. A token that is already expired (the usual case at startup, since access tokens
+ * last an hour) is refreshed right away while the rest of startup carries on.
+ */
+public class TokenRefresher {
+
+    static final long REFRESH_AHEAD_SECONDS = 300;
+    private static final long RETRY_SECONDS = 30;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "token-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static void start(Credential credential) {
+        if (credential.getRefreshToken() == null)
+            return;   // nothing to refresh with; the credential will ask for consent again when it expires
+        schedule(credential, secondsUntilRefresh(credential));
+    }
+
+    static long secondsUntilRefresh(Credential credential) {
+        Long expiresIn = credential.getExpiresInSeconds();
+        if (expiresIn == null)
+            return 0;
+        return Math.max(0, expiresIn - REFRESH_AHEAD_SECONDS);
+    }
+
+    private static void schedule(Credential credential, long delaySeconds) {
+        SCHEDULER.schedule(() -> refresh(credential), delaySeconds, TimeUnit.SECONDS);
+    }
+
+    private static void refresh(Credential credential) {
+        long next;
+        try {
+            // Credential locks internally, so a request that needs the token meanwhile just waits for this refresh
+            next = credential.refreshToken() ? secondsUntilRefresh(credential) : RETRY_SECONDS;
+        } catch (IOException e) {
+            System.err.println("Background token refresh failed (" + e.getMessage() + "), retrying in " + RETRY_SECONDS + " s.");
+            next = RETRY_SECONDS;
+        }
+        schedule(credential, Math.max(next, RETRY_SECONDS));
+    }
+}
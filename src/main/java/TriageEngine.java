@@ -0,0 +1,339 @@
+import com.google.api.services.gmail.Gmail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/*
+ * Keyword-based auto-triage for incoming tickets.
+ *
+ * Every keyword of every rule is compiled into one Aho-Corasick automaton (a dense DFA over the characters that
+ * occur in the keywords), so Subject, From and body are each scanned exactly once no matter how many rules exist.
+ * Matching is case-insensitive substring matching.
+ *
+ * Rules file, one rule per line ('#' starts a comment):
+ *     <field> <keyword>[|<keyword>...] => <action> [argument]
+ * field is subject, from, body or any; action is "label NAME", "priority N" (1 = highest) or "trash". Example:
+ *     subject refund|invoice|billing => label Billing
+ *     any urgent|outage|asap => priority 1
+ *     from newsletter@|no-reply@promo. => trash
+ */
+public class TriageEngine {
+
+    public static final String DEFAULT_RULES_PATH = "triage_rules.txt";
+    public static final String PRIORITY_LABEL_PREFIX = "Priority/";
+
+    // Field bits: a keyword only counts when found in one of its rule's fields
+    public static final int SUBJECT = 1;
+    public static final int FROM = 2;
+    public static final int BODY = 4;
+    public static final int ANY = SUBJECT | FROM | BODY;
+
+    public enum Action { LABEL, PRIORITY, TRASH }
+
+    public record Rule(int fields, List<String> keywords, Action action, String argument) {
+    }
+
+    /* What the matched rules ask for; priority is 0 when no priority rule matched */
+    public record Decision(List<String> labels, int priority, boolean trash) {
+        public boolean isEmpty() {
+            return labels.isEmpty() && priority == 0 && !trash;
+        }
+
+        /* Label names to add: TRASH alone wins over everything else */
+        public List<String> labelsToAdd() {
+            if (trash)
+                return Collections.singletonList("TRASH");
+            List<String> all = new ArrayList<>(labels);
+            if (priority > 0)
+                all.add(PRIORITY_LABEL_PREFIX + priority);
+            return all;
+        }
+    }
+
+    private final List<Rule> rules;
+
+    // Automaton: next[state * alphabetSize + charClass[c]]; class 0 is every character no keyword uses
+    private final char[] charClass = new char[Character.MAX_VALUE + 1];
+    private final int alphabetSize;
+    private final int[] next;
+    private final int[][] outputs;       // pattern ids ending at each state, including those reached by failure links
+    private final int[] patternRule;
+    private final int[] patternFields;
+
+    public TriageEngine(List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+
+        // Flatten keywords into patterns and give each distinct character (both cases) its own class
+        List<String> patterns = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        int classes = 1;
+        int maxStates = 1;
+        for (int r = 0; r < this.rules.size(); r++) {
+            for (String keyword : this.rules.get(r).keywords()) {
+                String pattern = keyword.toLowerCase(Locale.ROOT);
+                if (pattern.isEmpty())
+                    continue;
+                patterns.add(pattern);
+                owners.add(r);
+                maxStates += pattern.length();
+
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = pattern.charAt(i);
+                    if (charClass[c] == 0) {
+                        charClass[c] = (char) classes++;
+                        // Upper and title case share the class, so the scan never has to lowercase its input
+                        shareClass(Character.toUpperCase(c), c);
+                        shareClass(Character.toTitleCase(c), c);
+                    }
+                }
+            }
+        }
+        alphabetSize = classes;
+
+        patternRule = new int[patterns.size()];
+        patternFields = new int[patterns.size()];
+        for (int p = 0; p < patterns.size(); p++) {
+            patternRule[p] = owners.get(p);
+            patternFields[p] = this.rules.get(owners.get(p)).fields();
+        }
+
+        // Trie over the pattern characters; -1 marks a missing edge until the failure pass fills it
+        int[] trie = new int[maxStates * alphabetSize];
+        Arrays.fill(trie, -1);
+        List<List<Integer>> ends = new ArrayList<>();
+        ends.add(new ArrayList<>());
+        int states = 1;
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int slot = state * alphabetSize + charClass[pattern.charAt(i)];
+                if (trie[slot] < 0) {
+                    trie[slot] = states++;
+                    ends.add(new ArrayList<>());
+                }
+                state = trie[slot];
+            }
+            ends.get(state).add(p);
+        }
+
+        // Breadth-first failure links turn the trie into a DFA: a missing edge follows the failure state's edge
+        next = Arrays.copyOf(trie, states * alphabetSize);
+        outputs = new int[states][];
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < alphabetSize; c++) {
+            if (next[c] < 0) {
+                next[c] = 0;
+            } else {
+                fail[next[c]] = 0;
+                queue.add(next[c]);
+            }
+        }
+        outputs[0] = toArray(ends.get(0));
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> out = ends.get(state);
+            if (outputs[fail[state]] != null) {
+                for (int p : outputs[fail[state]])
+                    out.add(p);
+            }
+            outputs[state] = toArray(out);
+
+            for (int c = 0; c < alphabetSize; c++) {
+                int slot = state * alphabetSize + c;
+                int child = next[slot];
+                if (child < 0) {
+                    next[slot] = next[fail[state] * alphabetSize + c];
+                } else {
+                    fail[child] = next[fail[state] * alphabetSize + c];
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    /* Loads and compiles a rules file */
+    public static TriageEngine load(Path path) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                if (comment >= 0)
+                    line = line.substring(0, comment);
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+
+                try {
+                    rules.add(parseRule(line));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(path + " line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return new TriageEngine(rules);
+    }
+
+    public static Rule parseRule(String line) {
+        int arrow = line.indexOf("=>");
+        if (arrow < 0)
+            throw new IllegalArgumentException("missing '=>'");
+
+        String[] match = line.substring(0, arrow).trim().split("\\s+", 2);
+        if (match.length < 2)
+            throw new IllegalArgumentException("expected '<field> <keywords> => <action>'");
+
+        int fields = switch (match[0].toLowerCase()) {
+            case "subject" -> SUBJECT;
+            case "from" -> FROM;
+            case "body" -> BODY;
+            case "any" -> ANY;
+            default -> throw new IllegalArgumentException("unknown field '" + match[0] + "'");
+        };
+
+        List<String> keywords = new ArrayList<>();
+        for (String keyword : match[1].split("\\|")) {
+            if (!keyword.trim().isEmpty())
+                keywords.add(keyword.trim());
+        }
+        if (keywords.isEmpty())
+            throw new IllegalArgumentException("no keywords");
+
+        String[] action = line.substring(arrow + 2).trim().split("\\s+", 2);
+        String argument = (action.length > 1) ? action[1].trim() : null;
+        switch (action[0].toLowerCase()) {
+            case "label":
+                if (argument == null)
+                    throw new IllegalArgumentException("label needs a name");
+                return new Rule(fields, keywords, Action.LABEL, argument);
+            case "priority":
+                try {
+                    if (argument == null || Integer.parseInt(argument) < 1)
+                        throw new IllegalArgumentException("priority needs a number from 1");
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("priority needs a number from 1");
+                }
+                return new Rule(fields, keywords, Action.PRIORITY, argument);
+            case "trash":
+                return new Rule(fields, keywords, Action.TRASH, null);
+            default:
+                throw new IllegalArgumentException("unknown action '" + action[0] + "'");
+        }
+    }
+
+    public int ruleCount() {
+        return rules.size();
+    }
+
+    public int stateCount() {
+        return outputs.length;
+    }
+
+    /* Body is matched against the snippet, the only body text the ticket store keeps */
+    public Decision classify(Ticket ticket) {
+        return classify(ticket.subject(), ticket.from(), ticket.snippet());
+    }
+
+    public Decision classify(String subject, String from, String body) {
+        BitSet matched = new BitSet(rules.size());
+        scan(subject, SUBJECT, matched);
+        scan(from, FROM, matched);
+        scan(body, BODY, matched);
+
+        List<String> labels = new ArrayList<>();
+        int priority = 0;
+        boolean trash = false;
+        for (int r = matched.nextSetBit(0); r >= 0; r = matched.nextSetBit(r + 1)) {
+            Rule rule = rules.get(r);
+            switch (rule.action()) {
+                case LABEL -> {
+                    if (!labels.contains(rule.argument()))
+                        labels.add(rule.argument());
+                }
+                case PRIORITY -> {
+                    int level = Integer.parseInt(rule.argument());
+                    priority = (priority == 0) ? level : Math.min(priority, level);
+                }
+                case TRASH -> trash = true;
+            }
+        }
+        return new Decision(labels, priority, trash);
+    }
+
+    /**
+     * Classifies the tickets and applies the results with one batchModify call per distinct label set
+     * (split at 1,000 IDs). Labels a ticket already carries are left out, so re-running is a no-op.
+     *
+     * @return Number of tickets modified.
+     */
+    public int apply(Gmail service, List<Ticket> tickets) throws IOException {
+        Map<List<String>, List<String>> groups = new LinkedHashMap<>();
+        for (Ticket ticket : tickets) {
+            Decision decision = classify(ticket);
+            if (decision.isEmpty())
+                continue;
+
+            // Sorted IDs make tickets needing the same change share a group
+            TreeSet<String> labelIds = new TreeSet<>();
+            for (String name : decision.labelsToAdd())
+                labelIds.add(decision.trash() ? name : LabelCache.getLabelId(service, name));
+            labelIds.removeAll(ticket.labelIds());
+            if (!labelIds.isEmpty())
+                groups.computeIfAbsent(new ArrayList<>(labelIds), k -> new ArrayList<>()).add(ticket.id());
+        }
+
+        int modified = 0;
+        for (Map.Entry<List<String>, List<String>> group : groups.entrySet()) {
+            BulkModifier.modifyIds(service, group.getValue(), group.getKey(), null);
+            modified += group.getValue().size();
+            System.out.println("Triage: " + group.getValue().size() + " ticket(s) -> " + group.getKey());
+        }
+        System.out.println("Triage finished: " + modified + " of " + tickets.size() + " ticket(s) modified.");
+        return modified;
+    }
+
+    private void scan(String text, int field, BitSet matched) {
+        if (text == null)
+            return;
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = next[state * alphabetSize + charClass[text.charAt(i)]];
+            int[] out = outputs[state];
+            for (int p : out) {
+                if ((patternFields[p] & field) != 0)
+                    matched.set(patternRule[p]);
+            }
+        }
+    }
+
+    private void shareClass(char variant, char c) {
+        if (charClass[variant] == 0)
+            charClass[variant] = charClass[c];
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = values.get(i);
+        return array;
+    }
+}
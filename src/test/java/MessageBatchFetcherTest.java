@@ -0,0 +1,184 @@
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/* Round trips of a list-then-fetch page, counted on a mock HTTP transport */
+class MessageBatchFetcherTest {
+
+    private static final Pattern PART_URL = Pattern.compile("GET (\\S*/messages/([^?\\s]+)\\S*) HTTP/1\\.1");
+
+    @AfterEach
+    void restoreBatchSize() {
+        MessageBatchFetcher.setBatchSize(50);
+    }
+
+    @Test
+    void listPlusOneBatchPerBatchSize() throws IOException {
+        CountingGmail gmail = new CountingGmail(45, Set.of());
+        MessageBatchFetcher.setBatchSize(20);
+
+        List<Message> fetched = listAndFetch(gmail);
+
+        assertEquals(1, gmail.listCalls);
+        assertEquals(3, gmail.batchCalls);                    // ceil(45 / 20)
+        assertEquals(List.of(20, 20, 5), gmail.partsPerBatch);
+        assertEquals(45, fetched.size());
+    }
+
+    @Test
+    void resultsComeBackInListOrder() throws IOException {
+        CountingGmail gmail = new CountingGmail(30, Set.of());
+        MessageBatchFetcher.setBatchSize(7);
+
+        List<Message> fetched = listAndFetch(gmail);
+
+        for (int i = 0; i < 30; i++)
+            assertEquals("m" + i, fetched.get(i).getId());
+        assertEquals(1 + 5, gmail.listCalls + gmail.batchCalls);
+    }
+
+    @Test
+    void failedPartIsSkippedWithoutAnotherRoundTrip() throws IOException {
+        CountingGmail gmail = new CountingGmail(10, Set.of("m3"));
+        MessageBatchFetcher.setBatchSize(50);
+
+        List<Message> fetched = listAndFetch(gmail);
+
+        assertNull(fetched.get(3));
+        assertEquals("m2", fetched.get(2).getId());
+        assertEquals("m4", fetched.get(4).getId());
+        assertEquals(1, gmail.batchCalls);                    // a 404 is final, so the part is not sent again
+    }
+
+    @Test
+    void throttledPartsAreRetriedOnlyByTheFetcher() throws IOException {
+        // Same request initializer as the bot, so every part would carry ApiExecutor's RetryHandler
+        CountingGmail gmail = new CountingGmail(10, Set.of(), Set.of("m2", "m7"),
+                ApiExecutor.initializer(request -> {
+                }));
+        MessageBatchFetcher.setBatchSize(50);
+        long retriesBefore = handlerRetries();
+
+        List<Message> fetched = listAndFetch(gmail);
+
+        for (int i = 0; i < 10; i++)
+            assertEquals("m" + i, fetched.get(i).getId());
+        assertEquals(List.of(10, 2), gmail.partsPerBatch);   // one re-batch of just the throttled parts
+        assertEquals(retriesBefore, handlerRetries());       // RetryHandler never saw the parts
+    }
+
+    private static long handlerRetries() {
+        long retries = 0;
+        for (ApiMetrics.MethodStats stats : ApiMetrics.snapshot())
+            retries += stats.getRetries();
+        return retries;
+    }
+
+    private static List<Message> listAndFetch(CountingGmail gmail) throws IOException {
+        List<Message> refs = gmail.client.users().messages().list("me").setQ("is:unread").execute().getMessages();
+        return MessageBatchFetcher.fetchMetadata(gmail.client, refs, "Subject", "From");
+    }
+
+    /*
+     * Gmail stand-in: answers messages.list with n IDs and batch parts with metadata, 404 for the missing IDs, and
+     * 429 (Retry-After: 30) the first time a throttled ID is asked for
+     */
+    private static final class CountingGmail extends MockHttpTransport {
+        final Gmail client;
+        final int messages;
+        final Set<String> missing;
+        final Set<String> throttled;
+        final List<Integer> partsPerBatch = new ArrayList<>();
+        int listCalls;
+        int batchCalls;
+
+        CountingGmail(int messages, Set<String> missing) {
+            this(messages, missing, Set.of(), request -> {
+            });
+        }
+
+        CountingGmail(int messages, Set<String> missing, Set<String> throttledOnce, HttpRequestInitializer initializer) {
+            this.messages = messages;
+            this.missing = missing;
+            this.throttled = new HashSet<>(throttledOnce);
+            this.client = new Gmail.Builder(this, GsonFactory.getDefaultInstance(), initializer)
+                    .setApplicationName("test").build();
+        }
+
+        @Override
+        public LowLevelHttpRequest buildRequest(String method, String url) {
+            return new MockLowLevelHttpRequest(url) {
+                @Override
+                public LowLevelHttpResponse execute() throws IOException {
+                    if (method.equals("POST") && url.contains("/batch"))
+                        return batch(this);
+                    listCalls++;
+                    StringBuilder json = new StringBuilder("{\"messages\":[");
+                    for (int i = 0; i < messages; i++)
+                        json.append(i == 0 ? "" : ",").append("{\"id\":\"m").append(i).append("\",\"threadId\":\"t").append(i).append("\"}");
+                    return new MockLowLevelHttpResponse().setContentType("application/json")
+                            .setContent(json.append("]}").toString());
+                }
+            };
+        }
+
+        // Multipart response with one part per embedded request, in request order as Gmail sends them
+        private LowLevelHttpResponse batch(MockLowLevelHttpRequest request) throws IOException {
+            batchCalls++;
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            request.getStreamingContent().writeTo(body);
+
+            List<String> ids = new ArrayList<>();
+            Matcher m = PART_URL.matcher(body.toString(StandardCharsets.UTF_8));
+            while (m.find())
+                ids.add(m.group(2));
+            partsPerBatch.add(ids.size());
+
+            List<String> parts = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                String status;
+                String json;
+                String extraHeaders = "";
+                if (throttled.remove(id)) {
+                    status = "429 Too Many Requests";
+                    json = "{\"error\":{\"code\":429,\"message\":\"Rate limit exceeded\"}}";
+                    extraHeaders = "Retry-After: 30\r\n";
+                } else if (missing.contains(id)) {
+                    status = "404 Not Found";
+                    json = "{\"error\":{\"code\":404,\"message\":\"Requested entity was not found.\"}}";
+                } else {
+                    status = "200 OK";
+                    json = "{\"id\":\"" + id + "\",\"snippet\":\"ticket " + id + "\"}";
+                }
+                parts.add("--END\r\nContent-Type: application/http\r\nContent-ID: <response-" + (i + 1) + ">\r\n\r\n"
+                        + "HTTP/1.1 " + status + "\r\nContent-Type: application/json\r\n" + extraHeaders
+                        + "Content-Length: " + json.length() + "\r\n\r\n" + json + "\r\n");
+            }
+
+            return new MockLowLevelHttpResponse().setContentType("multipart/mixed; boundary=END")
+                    .setContent(String.join("", parts) + "--END--\r\n");
+        }
+    }
+}